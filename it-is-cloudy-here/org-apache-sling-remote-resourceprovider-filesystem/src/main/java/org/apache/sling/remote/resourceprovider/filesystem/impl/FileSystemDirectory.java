@@ -0,0 +1,68 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.filesystem.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.sling.remote.resourceprovider.Directory;
+import org.apache.sling.remote.resourceprovider.RemoteResourceReference;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class FileSystemDirectory extends FileSystemResourceReference implements Directory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSystemDirectory.class);
+
+    private final FileSystemStorageProvider remoteStorageProvider;
+
+    FileSystemDirectory(FileSystemStorageProvider remoteStorageProvider, FileSystemResourceReference reference) {
+        super(remoteStorageProvider, reference.getFile(), reference.getPath(), reference.getAttributes());
+        this.remoteStorageProvider = remoteStorageProvider;
+    }
+
+    @Override
+    public @NotNull List<RemoteResourceReference> getChildren() {
+        ArrayList<RemoteResourceReference> children = new ArrayList<>();
+        try {
+            remoteStorageProvider.getSimulator().call("listFolder");
+            List<Path> entries;
+            try (Stream<Path> stream = Files.list(getFile())) {
+                entries = stream.sorted().collect(Collectors.toList());
+            }
+            for (Path entry : entries) {
+                FileSystemResourceReference child = remoteStorageProvider.reference(entry);
+                if (child != null) {
+                    children.add(child);
+                }
+            }
+        } catch (RemoteCallSimulator.SimulatedRemoteException e) {
+            LOGGER.warn("Cannot read the children of folder {}: {}", getPath(), e.getMessage());
+        } catch (IOException e) {
+            LOGGER.error(String.format("Cannot read all children of folder %s.", getPath()), e);
+        }
+        return children;
+    }
+}
@@ -0,0 +1,60 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.filesystem.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import org.apache.sling.remote.resourceprovider.File;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class FileSystemFile extends FileSystemResourceReference implements File {
+
+    private final FileSystemStorageProvider remoteStorageProvider;
+    private String mimeType;
+
+    FileSystemFile(FileSystemStorageProvider remoteStorageProvider, FileSystemResourceReference reference) {
+        super(remoteStorageProvider, reference.getFile(), reference.getPath(), reference.getAttributes());
+        this.remoteStorageProvider = remoteStorageProvider;
+    }
+
+    @Override
+    public @NotNull InputStream getInputStream() throws IOException {
+        try {
+            remoteStorageProvider.getSimulator().call("download");
+        } catch (RemoteCallSimulator.SimulatedRemoteException e) {
+            throw new IOException(String.format("Unable to download file %s.", getPath()), e);
+        }
+        return remoteStorageProvider.getSimulator().throttle(Files.newInputStream(getFile()));
+    }
+
+    @Override
+    public @Nullable String getMimeType() {
+        if (mimeType == null) {
+            try {
+                mimeType = Files.probeContentType(getFile());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return mimeType;
+    }
+}
@@ -0,0 +1,339 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.filesystem.impl;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.remote.resourceprovider.Directory;
+import org.apache.sling.remote.resourceprovider.File;
+import org.apache.sling.remote.resourceprovider.RemoteResourceEvent;
+import org.apache.sling.remote.resourceprovider.RemoteResourceEventHandler;
+import org.apache.sling.remote.resourceprovider.RemoteResourceEventType;
+import org.apache.sling.remote.resourceprovider.RemoteResourceReference;
+import org.apache.sling.remote.resourceprovider.RemoteStorageProvider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.metatype.annotations.Designate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link RemoteStorageProvider} backed by a local directory. Every metadata lookup, folder listing and download goes through a
+ * {@link RemoteCallSimulator}, which adds the configured latency, failures and throughput limits, so that the caching and threading
+ * behaviour of the Remote Resource Provider can be load-tested without an account on a real remote storage. Changes to the directory
+ * are reported through a {@link WatchService}.
+ */
+@Component(
+        service = RemoteStorageProvider.class,
+        configurationPolicy = ConfigurationPolicy.REQUIRE
+)
+@Designate(
+        ocd = FileSystemStorageProviderConfiguration.class,
+        factory = true
+)
+public class FileSystemStorageProvider implements RemoteStorageProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSystemStorageProvider.class);
+    private static final long EVENT_BATCH_WINDOW_MILLIS = 100;
+
+    private Path directory;
+    private org.apache.sling.api.resource.path.Path slingMountPoint;
+    private String storageRootPath;
+    private RemoteCallSimulator simulator;
+
+    private RemoteResourceEventHandler eventHandler;
+    private WatchService watchService;
+    private volatile boolean watching;
+
+    @Activate
+    private void activate(FileSystemStorageProviderConfiguration configuration) {
+        if (StringUtils.isEmpty(configuration.directory())) {
+            throw new IllegalStateException("The directory cannot be empty.");
+        }
+        directory = Paths.get(configuration.directory()).toAbsolutePath().normalize();
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalStateException(String.format("%s is not a directory.", directory));
+        }
+        storageRootPath = configuration.remote_storage_provider_root();
+        if (StringUtils.isEmpty(storageRootPath)) {
+            storageRootPath = "/";
+        }
+        slingMountPoint = new org.apache.sling.api.resource.path.Path(configuration.resource_provider_root());
+        simulator = new RemoteCallSimulator(configuration.latency(), configuration.latencyJitter(), configuration.errorRate(),
+                configuration.maxCallsPerSecond(), configuration.maxBytesPerSecond());
+        LOGGER.info("Initialised a File System provider for {}, mapped at {}.", directory, slingMountPoint.getPath());
+    }
+
+    @Deactivate
+    private void deactivate() {
+        synchronized (this) {
+            watching = false;
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to close the watch service.", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public @Nullable RemoteResourceReference findResource(@NotNull String slingPath, @NotNull Map<String, Object> authenticationInfo) {
+        String storagePath = storagePath(slingPath);
+        if (storagePath == null || "/".equals(storagePath)) {
+            return null;
+        }
+        while (storagePath != null && !"/".equals(storagePath)) {
+            try {
+                simulator.call("getMetadata");
+                Path file = toLocalPath(storagePath);
+                if (file != null) {
+                    FileSystemResourceReference reference = reference(file);
+                    if (reference != null) {
+                        return reference;
+                    }
+                }
+                storagePath = ResourceUtil.getParent(storagePath);
+            } catch (RemoteCallSimulator.SimulatedRemoteException e) {
+                LOGGER.warn("Unable to retrieve resource from {}: {}", storagePath, e.getMessage());
+                return null;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public @Nullable File getFile(@NotNull RemoteResourceReference reference, @NotNull Map<String, Object> authenticationInfo) {
+        if (reference instanceof FileSystemResourceReference && reference.getType() == RemoteResourceReference.Type.FILE) {
+            if (reference instanceof File) {
+                return (File) reference;
+            }
+            return new FileSystemFile(this, (FileSystemResourceReference) reference);
+        }
+        return null;
+    }
+
+    @Override
+    public @Nullable Directory getDirectory(@NotNull RemoteResourceReference reference, @NotNull Map<String, Object> authenticationInfo) {
+        if (reference instanceof FileSystemResourceReference && reference.getType() == RemoteResourceReference.Type.DIRECTORY) {
+            if (reference instanceof Directory) {
+                return (Directory) reference;
+            }
+            return new FileSystemDirectory(this, (FileSystemResourceReference) reference);
+        }
+        return null;
+    }
+
+    @Override
+    public String slingPath(@NotNull String storagePath) {
+        if (storageRootPath.equals(storagePath) ||
+                storagePath.startsWith(storageRootPath.endsWith("/") ? storageRootPath : storageRootPath + "/")) {
+            return ResourceUtil.normalize(slingMountPoint.getPath() + "/" + storagePath.substring(storageRootPath.length()));
+        }
+        return null;
+    }
+
+    @Override
+    public String storagePath(@NotNull String slingPath) {
+        if (slingMountPoint.matches(slingPath)) {
+            return ResourceUtil.normalize(storageRootPath.concat(slingPath.substring(slingMountPoint.getPath().length())));
+        }
+        return null;
+    }
+
+    @Override
+    public void registerEventHandler(RemoteResourceEventHandler handler) {
+        synchronized (this) {
+            if (eventHandler == null) {
+                eventHandler = handler;
+                try {
+                    watchService = FileSystems.getDefault().newWatchService();
+                    register(directory);
+                } catch (IOException e) {
+                    LOGGER.error(String.format("Unable to watch directory %s; changes will not be reported.", directory), e);
+                    return;
+                }
+                watching = true;
+                Thread watcher = new Thread(this::watch, this.getClass().getName() + "-watcher");
+                watcher.setDaemon(true);
+                watcher.start();
+            }
+        }
+    }
+
+    @NotNull
+    RemoteCallSimulator getSimulator() {
+        return simulator;
+    }
+
+    /**
+     * Builds a reference for a local file, reading its attributes as the metadata a remote storage would provide.
+     */
+    @Nullable
+    FileSystemResourceReference reference(@NotNull Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            FileSystemResourceReference reference = new FileSystemResourceReference(this, file, toStoragePath(file), attributes);
+            if (attributes.isDirectory()) {
+                return new FileSystemDirectory(this, reference);
+            }
+            return new FileSystemFile(this, reference);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.error(String.format("Unable to read the attributes of file %s.", file), e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private Path toLocalPath(@NotNull String storagePath) {
+        Path file = directory.resolve(storagePath.substring(1)).normalize();
+        if (!file.startsWith(directory)) {
+            return null;
+        }
+        return file;
+    }
+
+    @NotNull
+    private String toStoragePath(@NotNull Path file) {
+        Path relative = directory.relativize(file);
+        StringBuilder storagePath = new StringBuilder();
+        for (Path segment : relative) {
+            if (!segment.toString().isEmpty()) {
+                storagePath.append('/').append(segment);
+            }
+        }
+        return storagePath.length() == 0 ? "/" : storagePath.toString();
+    }
+
+    private void register(@NotNull Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void watch() {
+        while (watching) {
+            try {
+                WatchKey key = watchService.take();
+                Set<String> changedPaths = new TreeSet<>();
+                Set<String> deletedPaths = new TreeSet<>();
+                // coalesce bursts of file system events into a single notification per type
+                while (key != null) {
+                    Path dir = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            changedPaths.add(toStoragePath(dir));
+                            continue;
+                        }
+                        Path file = dir.resolve((Path) event.context());
+                        String storagePath = toStoragePath(file);
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                            deletedPaths.add(storagePath);
+                            changedPaths.add(toStoragePath(dir));
+                        } else {
+                            changedPaths.add(storagePath);
+                            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                                changedPaths.add(toStoragePath(dir));
+                                if (Files.isDirectory(file)) {
+                                    register(file);
+                                }
+                            }
+                        }
+                    }
+                    key.reset();
+                    key = watchService.poll(EVENT_BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                changedPaths.removeAll(deletedPaths);
+                if (!changedPaths.isEmpty()) {
+                    eventHandler.handleEvent(new FileSystemChangeEvent(RemoteResourceEventType.CHANGED, changedPaths));
+                }
+                if (!deletedPaths.isEmpty()) {
+                    eventHandler.handleEvent(new FileSystemChangeEvent(RemoteResourceEventType.DELETED, deletedPaths));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                watching = false;
+            } catch (ClosedWatchServiceException e) {
+                watching = false;
+            } catch (IOException e) {
+                LOGGER.error("Unable to watch a newly created directory.", e);
+            }
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Stopping watcher thread for {}.", directory);
+        }
+    }
+
+    static final class FileSystemChangeEvent implements RemoteResourceEvent {
+
+        private final RemoteResourceEventType type;
+        private final Set<String> paths;
+
+        FileSystemChangeEvent(RemoteResourceEventType type, Set<String> paths) {
+            this.type = type;
+            this.paths = new TreeSet<>(paths);
+        }
+
+        @Override
+        public RemoteResourceEventType getType() {
+            return type;
+        }
+
+        @Override
+        public Set<String> getPaths() {
+            return paths;
+        }
+
+        @Override
+        public String toString() {
+            return FileSystemChangeEvent.class.getName() + "{type=" + type.toString() + "; paths=" + paths + "}";
+        }
+    }
+}
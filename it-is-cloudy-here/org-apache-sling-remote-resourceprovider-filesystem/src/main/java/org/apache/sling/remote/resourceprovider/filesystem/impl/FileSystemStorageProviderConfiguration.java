@@ -0,0 +1,91 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.filesystem.impl;
+
+import org.apache.sling.spi.resource.provider.ResourceProvider;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.osgi.service.metatype.annotations.Option;
+
+@ObjectClassDefinition(
+        name = "File System Remote Storage Provider Configuration",
+        description = "The File System Remote Storage Provider maps a local directory in the Sling Resource tree, simulating the " +
+                "behaviour of a remote storage (latency, errors, throughput limits) for load testing the Remote Resource Provider."
+)
+@interface FileSystemStorageProviderConfiguration {
+
+    @AttributeDefinition(
+            name = "Directory",
+            description = "The local directory acting as the remote storage."
+    )
+    String directory();
+
+    @AttributeDefinition(
+            name = "Resource Provider Root",
+            description = "The root of the Resource Provider where the directory's resources will be mapped into the Sling Resource tree."
+    )
+    String resource_provider_root();
+
+    @AttributeDefinition(
+            name = "Remote Storage Provider Root",
+            description = "The folder, relative to the configured directory, from which directories and files will be used to build the " +
+                    "Sling resource tree provided at the path indicated by resource.provider.root. \"/\" corresponds to the directory " +
+                    "itself."
+    )
+    String remote_storage_provider_root() default "/";
+
+    @AttributeDefinition(
+            options = {
+                    @Option(value = ResourceProvider.AUTHENTICATE_LAZY, label = "Lazy"),
+                    @Option(value = ResourceProvider.AUTHENTICATE_NO, label = "No"),
+            }
+    )
+    String resource_provider_authenticate() default ResourceProvider.AUTHENTICATE_NO;
+
+    @AttributeDefinition(
+            name = "Latency",
+            description = "The artificial latency, in milliseconds, added to every remote call."
+    )
+    int latency() default 0;
+
+    @AttributeDefinition(
+            name = "Latency Jitter",
+            description = "A random amount of milliseconds, between 0 and this value, added on top of the latency of every remote call."
+    )
+    int latencyJitter() default 0;
+
+    @AttributeDefinition(
+            name = "Error Rate",
+            description = "The probability, between 0 and 1, for a remote call to fail."
+    )
+    double errorRate() default 0;
+
+    @AttributeDefinition(
+            name = "Maximum Calls per Second",
+            description = "The maximum number of remote calls served per second; calls over this limit are delayed. 0 or a negative " +
+                    "value disable the limit."
+    )
+    int maxCallsPerSecond() default 0;
+
+    @AttributeDefinition(
+            name = "Maximum Download Throughput",
+            description = "The maximum number of bytes per second served by each file download. 0 or a negative value disable the limit."
+    )
+    int maxBytesPerSecond() default 0;
+}
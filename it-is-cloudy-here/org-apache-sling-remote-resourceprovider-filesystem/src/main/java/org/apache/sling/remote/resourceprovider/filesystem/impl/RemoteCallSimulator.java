@@ -0,0 +1,187 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.filesystem.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Simulates the behaviour of a remote service for each call made by the {@link FileSystemStorageProvider}: artificial latency, random
+ * failures and throughput limits. It also keeps count of the calls, both globally and per calling thread, so that load tests can
+ * attribute remote calls to the requests which caused them.
+ */
+class RemoteCallSimulator {
+
+    private final long latency;
+    private final int latencyJitter;
+    private final double errorRate;
+    private final long nanosPerCall;
+    private final int maxBytesPerSecond;
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private final ThreadLocal<AtomicLong> threadCalls = ThreadLocal.withInitial(AtomicLong::new);
+    private long nextCallSlot;
+
+    RemoteCallSimulator(int latency, int latencyJitter, double errorRate, int maxCallsPerSecond, int maxBytesPerSecond) {
+        this.latency = Math.max(latency, 0);
+        this.latencyJitter = Math.max(latencyJitter, 0);
+        this.errorRate = Math.min(Math.max(errorRate, 0), 1);
+        this.nanosPerCall = maxCallsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxCallsPerSecond : 0;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    /**
+     * Simulates a remote call.
+     *
+     * @param operation the name of the simulated operation
+     * @throws SimulatedRemoteException if the call randomly fails, according to the configured error rate
+     */
+    void call(@NotNull String operation) throws SimulatedRemoteException {
+        calls.computeIfAbsent(operation, key -> new LongAdder()).increment();
+        threadCalls.get().incrementAndGet();
+        long delay = TimeUnit.MILLISECONDS.toNanos(latency + (latencyJitter > 0 ? ThreadLocalRandom.current().nextInt(latencyJitter + 1) : 0));
+        if (nanosPerCall > 0) {
+            long now = System.nanoTime();
+            long slot;
+            synchronized (this) {
+                slot = Math.max(now, nextCallSlot);
+                nextCallSlot = slot + nanosPerCall;
+            }
+            delay += slot - now;
+        }
+        sleep(delay);
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            throw new SimulatedRemoteException(String.format("Simulated failure for remote operation %s.", operation));
+        }
+    }
+
+    @NotNull
+    InputStream throttle(@NotNull InputStream inputStream) {
+        if (maxBytesPerSecond <= 0) {
+            return inputStream;
+        }
+        return new ThrottledInputStream(inputStream, maxBytesPerSecond);
+    }
+
+    /**
+     * Returns the number of remote calls made so far, per operation.
+     *
+     * @return the calls per operation
+     */
+    @NotNull
+    Map<String, Long> getCalls() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        calls.forEach((operation, count) -> snapshot.put(operation, count.sum()));
+        return snapshot;
+    }
+
+    long getTotalCalls() {
+        return calls.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Returns the number of remote calls made so far by the current thread.
+     *
+     * @return the current thread's calls
+     */
+    long getThreadCalls() {
+        return threadCalls.get().get();
+    }
+
+    /**
+     * Wraps a task, so that the remote calls it makes on another thread are attributed to the thread calling this method.
+     *
+     * @param task the task
+     * @return the wrapped task
+     */
+    @NotNull
+    Runnable attributeToCurrentThread(@NotNull Runnable task) {
+        AtomicLong caller = threadCalls.get();
+        return () -> {
+            AtomicLong previous = threadCalls.get();
+            threadCalls.set(caller);
+            try {
+                task.run();
+            } finally {
+                threadCalls.set(previous);
+            }
+        };
+    }
+
+    private static void sleep(long nanos) {
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static class SimulatedRemoteException extends Exception {
+        SimulatedRemoteException(String message) {
+            super(message);
+        }
+    }
+
+    private static class ThrottledInputStream extends FilterInputStream {
+
+        private final int maxBytesPerSecond;
+        private final long start = System.nanoTime();
+        private long bytes;
+
+        ThrottledInputStream(InputStream in, int maxBytesPerSecond) {
+            super(in);
+            this.maxBytesPerSecond = maxBytesPerSecond;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0) {
+                throttle(1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, Math.min(len, maxBytesPerSecond));
+            if (read > 0) {
+                throttle(read);
+            }
+            return read;
+        }
+
+        private void throttle(int read) {
+            bytes += read;
+            long expected = TimeUnit.SECONDS.toNanos(1) * bytes / maxBytesPerSecond;
+            sleep(expected - (System.nanoTime() - start));
+        }
+    }
+}
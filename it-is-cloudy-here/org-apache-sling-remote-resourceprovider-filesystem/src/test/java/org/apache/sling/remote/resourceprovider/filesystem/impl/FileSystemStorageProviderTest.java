@@ -0,0 +1,126 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.filesystem.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.sling.remote.resourceprovider.Directory;
+import org.apache.sling.remote.resourceprovider.File;
+import org.apache.sling.remote.resourceprovider.RemoteResourceEvent;
+import org.apache.sling.remote.resourceprovider.RemoteResourceEventType;
+import org.apache.sling.remote.resourceprovider.RemoteResourceReference;
+import org.apache.sling.remote.resourceprovider.RemoteStorageProvider;
+import org.apache.sling.testing.mock.osgi.junit5.OsgiContext;
+import org.apache.sling.testing.mock.osgi.junit5.OsgiContextExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(OsgiContextExtension.class)
+class FileSystemStorageProviderTest {
+
+    private final OsgiContext context = new OsgiContext();
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        Files.createDirectories(directory.resolve("content/test-1"));
+        Files.write(directory.resolve("content/test-1/test-1.txt"), "A simple text file\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testResourceAccess() throws IOException {
+        FileSystemStorageProvider provider = register(Collections.emptyMap());
+        RemoteResourceReference reference = provider.findResource("/content/test-1/test-1.txt", Collections.emptyMap());
+        assertNotNull(reference);
+        assertEquals("/content/test-1/test-1.txt", reference.getPath());
+        File file = provider.getFile(reference, Collections.emptyMap());
+        assertNotNull(file);
+        try (InputStream inputStream = file.getInputStream()) {
+            assertEquals("A simple text file\n", new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        RemoteResourceReference missing = provider.findResource("/content/test-1/hey", Collections.emptyMap());
+        assertNotNull(missing, "Expected the closest existing parent to be returned.");
+        assertEquals("/content/test-1", missing.getPath());
+        Directory test_1 = provider.getDirectory(missing, Collections.emptyMap());
+        assertNotNull(test_1);
+        assertEquals(List.of("test-1.txt"), test_1.getChildren().stream().map(RemoteResourceReference::getName)
+                .collect(Collectors.toList()));
+        assertEquals(Map.of("download", 1L, "getMetadata", 3L, "listFolder", 1L), provider.getSimulator().getCalls());
+    }
+
+    @Test
+    void testSimulatedFailures() throws IOException {
+        FileSystemStorageProvider provider = register(Map.of("errorRate", 1.0d));
+        assertNull(provider.findResource("/content/test-1/test-1.txt", Collections.emptyMap()));
+        File file = provider.getFile(provider.reference(directory.resolve("content/test-1/test-1.txt")), Collections.emptyMap());
+        assertNotNull(file);
+        assertThrows(IOException.class, file::getInputStream);
+    }
+
+    @Test
+    void testLatency() {
+        FileSystemStorageProvider provider = register(Map.of("latency", 50));
+        long start = System.nanoTime();
+        assertNotNull(provider.findResource("/content/test-1", Collections.emptyMap()));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50, "Expected the call to be delayed.");
+    }
+
+    @Test
+    void testEvents() throws Exception {
+        FileSystemStorageProvider provider = register(Collections.emptyMap());
+        BlockingQueue<RemoteResourceEvent> events = new LinkedBlockingQueue<>();
+        provider.registerEventHandler(events::add);
+        Files.write(directory.resolve("content/test-1/test-2.txt"), "Another text file\n".getBytes(StandardCharsets.UTF_8));
+        RemoteResourceEvent event = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event, "Expected an event for the new file.");
+        assertEquals(RemoteResourceEventType.CHANGED, event.getType());
+        assertTrue(event.getPaths().contains("/content/test-1/test-2.txt"));
+        assertTrue(event.getPaths().contains("/content/test-1"), "Expected the parent folder to be reported as changed.");
+    }
+
+    private FileSystemStorageProvider register(Map<String, Object> configuration) {
+        Map<String, Object> properties = new HashMap<>(configuration);
+        properties.put("directory", directory.toString());
+        properties.put(RemoteStorageProvider.PROP_RESOURCE_PROVIDER_ROOT, "/");
+        return context.registerInjectActivateService(new FileSystemStorageProvider(), properties);
+    }
+}
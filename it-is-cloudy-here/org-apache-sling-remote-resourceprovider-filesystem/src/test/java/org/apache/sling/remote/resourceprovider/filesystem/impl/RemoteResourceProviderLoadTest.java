@@ -0,0 +1,264 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.filesystem.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.threads.ThreadPool;
+import org.apache.sling.commons.threads.ThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolManager;
+import org.apache.sling.contentparser.api.ContentParser;
+import org.apache.sling.contentparser.json.internal.JSONContentParser;
+import org.apache.sling.remote.resourceprovider.RemoteStorageProvider;
+import org.apache.sling.remote.resourceprovider.impl.RemoteResourceProviderFactory;
+import org.apache.sling.spi.resource.provider.ResolveContext;
+import org.apache.sling.spi.resource.provider.ResourceContext;
+import org.apache.sling.spi.resource.provider.ResourceProvider;
+import org.apache.sling.testing.mock.osgi.junit5.OsgiContext;
+import org.apache.sling.testing.mock.osgi.junit5.OsgiContextExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Load test harness for the Remote Resource Provider, driving {@code getResource}, {@code listChildren} and binary read calls
+ * concurrently against a {@link FileSystemStorageProvider}. Run it with {@code mvn test -DloadTest=true}; the workload can be tuned with
+ * the {@code loadTest.threads}, {@code loadTest.requests} (per thread), {@code loadTest.folders}, {@code loadTest.files} (per folder),
+ * {@code loadTest.latency} (milliseconds), {@code loadTest.errorRate} and {@code loadTest.poolSize} system properties.
+ * <p>
+ * The Remote Resource Provider gets a real thread pool, so folder children are resolved in parallel. Remote calls made by the pool's
+ * threads are attributed to the request thread which submitted the task, so that cache hits can still be counted per request; calls
+ * made by background refreshes are attributed to the request which triggered them.
+ */
+@ExtendWith(OsgiContextExtension.class)
+@EnabledIfSystemProperty(named = "loadTest", matches = "true")
+class RemoteResourceProviderLoadTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteResourceProviderLoadTest.class);
+
+    private final OsgiContext context = new OsgiContext();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void run() throws Exception {
+        int threads = Integer.getInteger("loadTest.threads", 8);
+        int requests = Integer.getInteger("loadTest.requests", 1000);
+        int folders = Integer.getInteger("loadTest.folders", 20);
+        int files = Integer.getInteger("loadTest.files", 10);
+        int poolSize = Integer.getInteger("loadTest.poolSize", 16);
+        Path content = Files.createDirectories(directory.resolve("content"));
+        List<String> paths = generateContent(content, folders, files);
+
+        Map<String, Object> configuration = new HashMap<>();
+        configuration.put("directory", content.toString());
+        configuration.put(RemoteStorageProvider.PROP_RESOURCE_PROVIDER_ROOT, "/content");
+        configuration.put(RemoteStorageProvider.PROP_RESOURCE_PROVIDER_AUTHENTICATE, ResourceProvider.AUTHENTICATE_NO);
+        configuration.put("latency", Integer.getInteger("loadTest.latency", 20));
+        configuration.put("errorRate", Double.parseDouble(System.getProperty("loadTest.errorRate", "0")));
+        ExecutorThreadPool threadPool = new ExecutorThreadPool(poolSize);
+        ThreadPoolManager threadPoolManager = mock(ThreadPoolManager.class);
+        Mockito.when(threadPoolManager.get(ArgumentMatchers.anyString())).thenReturn(threadPool);
+        context.registerService(ThreadPoolManager.class, threadPoolManager);
+        context.registerService(ContentParser.class, new JSONContentParser());
+        context.registerInjectActivateService(new RemoteResourceProviderFactory(), "binaryCacheDirectory",
+                Files.createDirectories(directory.resolve("binaries")).toString());
+        FileSystemStorageProvider storageProvider = context.registerInjectActivateService(new FileSystemStorageProvider(),
+                configuration);
+        threadPool.simulator = storageProvider.getSimulator();
+        ResourceProvider<Object> resourceProvider = context.getService(ResourceProvider.class);
+        assertNotNull(resourceProvider);
+
+        ResolveContext<Object> resolveContext = mock(ResolveContext.class);
+        ResourceContext resourceContext = mock(ResourceContext.class);
+        RemoteCallSimulator simulator = storageProvider.getSimulator();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        LongAdder binaryReads = new LongAdder();
+        LongAdder binaryBytes = new LongAdder();
+        List<Future<long[][]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                // [0] = latencies in nanoseconds, [1] = remote calls per request
+                long[][] samples = new long[2][requests];
+                for (int i = 0; i < requests; i++) {
+                    String path = paths.get(ThreadLocalRandom.current().nextInt(paths.size()));
+                    long calls = simulator.getThreadCalls();
+                    long requestStart = System.nanoTime();
+                    Resource resource = resourceProvider.getResource(resolveContext, path, resourceContext, null);
+                    if (resource != null && ThreadLocalRandom.current().nextInt(10) < 3) {
+                        Iterator<Resource> children = resourceProvider.listChildren(resolveContext, resource);
+                        if (children != null) {
+                            children.forEachRemaining(child -> {});
+                        }
+                    }
+                    if (resource != null && path.endsWith(".txt") && ThreadLocalRandom.current().nextInt(10) < 5) {
+                        try (InputStream inputStream = resource.adaptTo(InputStream.class)) {
+                            if (inputStream != null) {
+                                binaryBytes.add(drain(inputStream));
+                                binaryReads.increment();
+                            }
+                        }
+                    }
+                    samples[0][i] = System.nanoTime() - requestStart;
+                    samples[1][i] = simulator.getThreadCalls() - calls;
+                }
+                return samples;
+            }));
+        }
+        long[] latencies = new long[threads * requests];
+        long hits = 0;
+        int index = 0;
+        for (Future<long[][]> result : results) {
+            long[][] samples = result.get();
+            for (int i = 0; i < requests; i++) {
+                latencies[index++] = samples[0][i];
+                if (samples[1][i] == 0) {
+                    hits++;
+                }
+            }
+        }
+        long duration = System.nanoTime() - start;
+        executor.shutdown();
+        threadPool.executor.shutdown();
+        Arrays.sort(latencies);
+        int total = latencies.length;
+        StringBuilder report = new StringBuilder("Remote Resource Provider load test\n");
+        report.append(String.format("  threads: %d, requests: %d, resources: %d, duration: %d ms, throughput: %.1f requests/s%n", threads,
+                total, paths.size(), TimeUnit.NANOSECONDS.toMillis(duration), total / (duration / 1e9)));
+        report.append(String.format("  cache hit ratio: %.2f%%%n", 100.0 * hits / total));
+        report.append(String.format("  binary reads: %d (%d bytes)%n", binaryReads.sum(), binaryBytes.sum()));
+        report.append(String.format("  remote calls: %d (%.3f per request) %s%n", simulator.getTotalCalls(),
+                (double) simulator.getTotalCalls() / total, simulator.getCalls()));
+        report.append(String.format("  latency (ms): p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n", percentile(latencies, 50),
+                percentile(latencies, 90), percentile(latencies, 99), latencies[total - 1] / 1e6));
+        LOGGER.info("{}", report);
+    }
+
+    private List<String> generateContent(Path content, int folders, int files) throws IOException {
+        List<String> paths = new ArrayList<>();
+        for (int f = 0; f < folders; f++) {
+            Path folder = Files.createDirectories(content.resolve("folder-" + f));
+            paths.add("/content/folder-" + f);
+            for (int i = 0; i < files; i++) {
+                StringBuilder text = new StringBuilder();
+                for (int line = 0; line < 100 * (i + 1); line++) {
+                    text.append("File ").append(i).append(", line ").append(line).append('\n');
+                }
+                Files.write(folder.resolve("file-" + i + ".txt"), text.toString().getBytes(StandardCharsets.UTF_8));
+                paths.add("/content/folder-" + f + "/file-" + i + ".txt");
+            }
+            Files.write(folder.resolve(RemoteStorageProvider.SLING_META_FILE), ("{\"sling:resourceType\": \"folder\", " +
+                    "\"page\": {\"sling:resourceType\": \"page\", \"par\": {\"sling:resourceType\": \"paragraph\"}}}")
+                    .getBytes(StandardCharsets.UTF_8));
+            paths.add("/content/folder-" + f + "/page");
+            paths.add("/content/folder-" + f + "/page/par");
+        }
+        return paths;
+    }
+
+    private static long drain(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    /**
+     * A {@link ThreadPool} backed by a fixed size executor, attributing the remote calls of its tasks to the submitting thread.
+     */
+    private static class ExecutorThreadPool implements ThreadPool {
+
+        private final ExecutorService executor;
+        private volatile RemoteCallSimulator simulator;
+
+        ExecutorThreadPool(int size) {
+            executor = Executors.newFixedThreadPool(size);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executor.execute(attribute(command));
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            FutureTask<T> future = new FutureTask<>(task);
+            execute(future);
+            return future;
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return submit(Executors.callable(task));
+        }
+
+        @Override
+        public String getName() {
+            return "load-test";
+        }
+
+        @Override
+        public ThreadPoolConfig getConfiguration() {
+            return null;
+        }
+
+        private Runnable attribute(Runnable task) {
+            RemoteCallSimulator current = simulator;
+            return current == null ? task : current.attributeToCurrentThread(task);
+        }
+    }
+}
@@ -18,6 +18,8 @@
  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
 package org.apache.sling.remote.resourceprovider;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.jetbrains.annotations.NotNull;
@@ -116,6 +118,46 @@ public interface RemoteStorageProvider {
     @Nullable
     Directory getDirectory(@NotNull RemoteResourceReference reference, @NotNull Map<String, Object> authenticationInfo);
 
+    /**
+     * Resolves a batch of {@link RemoteResourceReference}s, usually the children of a {@link Directory}, to their {@link File} or
+     * {@link Directory} representations.
+     * <br><br>
+     * <p>The returned list must have the same size and order as {@code references}; a {@code null} element marks a reference which
+     * could not be resolved. The default implementation delegates to {@link #getFile(RemoteResourceReference, Map)} and
+     * {@link #getDirectory(RemoteResourceReference, Map)} for each reference. Providers that can fetch many references (or a whole
+     * directory together with its metadata) with a single remote call should override this method and
+     * {@link #supportsBatchRetrieval()}.
+     *
+     * @param references         the references to resolve
+     * @param authenticationInfo the authentication information of the current user
+     * @return the resolved references
+     */
+    @NotNull
+    default List<RemoteResourceReference> getReferences(@NotNull List<RemoteResourceReference> references,
+                                                        @NotNull Map<String, Object> authenticationInfo) {
+        List<RemoteResourceReference> resolved = new ArrayList<>(references.size());
+        for (RemoteResourceReference reference : references) {
+            if (reference.getType() == RemoteResourceReference.Type.FILE) {
+                resolved.add(getFile(reference, authenticationInfo));
+            } else if (reference.getType() == RemoteResourceReference.Type.DIRECTORY) {
+                resolved.add(getDirectory(reference, authenticationInfo));
+            } else {
+                resolved.add(null);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Indicates if {@code this RemoteStorageProvider} resolves {@link #getReferences(List, Map)} with a single remote call. When this
+     * method returns {@code false}, callers are free to resolve the references of a batch in parallel.
+     *
+     * @return {@code true} if batch retrieval is supported, {@code false} otherwise
+     */
+    default boolean supportsBatchRetrieval() {
+        return false;
+    }
+
     /**
      * Indicates if {@code this RemoteStorageProvider} is read only or not. If a
      * {@link org.apache.sling.spi.resource.provider.ResourceProvider} should be associated to {@code this} {@code RemoteStorageProvider},
@@ -0,0 +1,249 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.sling.remote.resourceprovider.File;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local disk cache for the binary contents of remote {@link File}s. Each cached binary is stored in a file named after the SHA-256
+ * digest of the remote file's path and version, so a new revision of a remote file never hits a stale entry. The least recently used
+ * entries are evicted once the total size of the cache grows beyond its limit. The index is rebuilt from the cache directory on
+ * start-up, so cached binaries survive restarts.
+ */
+class BinaryCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinaryCache.class);
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final long TRANSFER_CHUNK_SIZE = 1024 * 1024;
+
+    private final Path directory;
+    private final long maxSize;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<Boolean>> downloads = new ConcurrentHashMap<>();
+    private long size;
+
+    BinaryCache(@NotNull Path directory, long maxSize) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        files.sort(Comparator.comparing(BinaryCache::lastModified));
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(TMP_SUFFIX)) {
+                // left-over from an interrupted download
+                Files.deleteIfExists(file);
+            } else {
+                long fileSize = Files.size(file);
+                entries.put(name, fileSize);
+                size += fileSize;
+            }
+        }
+        synchronized (this) {
+            evict();
+        }
+    }
+
+    /**
+     * Returns a channel over the locally cached copy of {@code file}'s binary contents, downloading them first if needed.
+     *
+     * @param file the remote file
+     * @return a channel positioned at the beginning of the binary, or {@code null} if the file cannot be cached
+     * @throws IOException if the remote file cannot be downloaded
+     */
+    @Nullable
+    FileChannel getChannel(@NotNull File file) throws IOException {
+        if (file.getSize() > maxSize) {
+            return null;
+        }
+        String key = key(file);
+        Path cached = directory.resolve(key);
+        boolean hit;
+        synchronized (this) {
+            hit = entries.get(key) != null;
+        }
+        if (hit) {
+            try {
+                // touch before opening, so that a failure does not leak the channel
+                Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis()));
+                return FileChannel.open(cached, StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                synchronized (this) {
+                    Long removed = entries.remove(key);
+                    if (removed != null) {
+                        size -= removed;
+                    }
+                }
+            }
+        }
+        if (!download(file, key, cached)) {
+            return null;
+        }
+        try {
+            return FileChannel.open(cached, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            // evicted by a concurrent download before we could open it
+            return null;
+        }
+    }
+
+    /**
+     * Downloads {@code file} into the cache, making sure that concurrent requests for the same binary share a single download.
+     */
+    private boolean download(@NotNull File file, @NotNull String key, @NotNull Path cached) throws IOException {
+        CompletableFuture<Boolean> download = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = downloads.putIfAbsent(key, download);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            boolean stored = store(file, key, cached);
+            download.complete(stored);
+            return stored;
+        } catch (IOException | RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            downloads.remove(key, download);
+        }
+    }
+
+    private boolean store(@NotNull File file, @NotNull String key, @NotNull Path cached) throws IOException {
+        Path tmp = Files.createTempFile(directory, key, TMP_SUFFIX);
+        try {
+            long position = 0;
+            try (InputStream inputStream = file.getInputStream();
+                 ReadableByteChannel source = Channels.newChannel(inputStream);
+                 FileChannel target = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                long transferred;
+                while ((transferred = target.transferFrom(source, position, TRANSFER_CHUNK_SIZE)) > 0) {
+                    position += transferred;
+                    if (position > maxSize) {
+                        LOGGER.debug("Remote file {} is larger than the binary cache; it will not be cached.", file.getPath());
+                        return false;
+                    }
+                }
+            }
+            Files.move(tmp, cached, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (this) {
+                Long previous = entries.put(key, position);
+                size += position - (previous == null ? 0 : previous);
+                evict();
+            }
+            return true;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    synchronized void clear() {
+        for (String key : entries.keySet()) {
+            delete(directory.resolve(key));
+        }
+        entries.clear();
+        size = 0;
+    }
+
+    synchronized long getSize() {
+        return size;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            delete(directory.resolve(eldest.getKey()));
+            size -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private static void delete(@NotNull Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Unable to delete cached binary %s.", path), e);
+        }
+    }
+
+    @NotNull
+    private static FileTime lastModified(@NotNull Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    @NotNull
+    static String key(@NotNull File file) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(file.getPath().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(ReferenceVersions.of(file).getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM.", e);
+        }
+    }
+}
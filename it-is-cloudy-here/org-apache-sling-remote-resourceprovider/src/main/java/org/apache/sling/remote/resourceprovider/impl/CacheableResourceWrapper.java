@@ -20,6 +20,8 @@ package org.apache.sling.remote.resourceprovider.impl;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
@@ -33,6 +35,7 @@ import org.apache.sling.remote.resourceprovider.File;
 import org.apache.sling.remote.resourceprovider.RemoteResourceReference;
 import org.apache.sling.spi.resource.provider.ResolveContext;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,11 +46,14 @@ class CacheableResourceWrapper extends ResourceWrapper {
     private final ResolveContext<RemoteResourceProviderContext> context;
     private final CacheableResource resource;
     private final ResourceMetadata resourceMetadata;
+    private final BinaryCache binaryCache;
 
-    CacheableResourceWrapper(@NotNull ResolveContext<RemoteResourceProviderContext> context, @NotNull CacheableResource resource) {
+    CacheableResourceWrapper(@NotNull ResolveContext<RemoteResourceProviderContext> context, @NotNull CacheableResource resource,
+                             @Nullable BinaryCache binaryCache) {
         super(resource);
         this.context = context;
         this.resource = resource;
+        this.binaryCache = binaryCache;
         resourceMetadata = (ResourceMetadata) resource.getResourceMetadata().clone();
     }
 
@@ -82,13 +88,27 @@ class CacheableResourceWrapper extends ResourceWrapper {
         if (type == ValueMap.class || type == Map.class) {
             return (AdapterType) getValueMap();
         }
-        if (type == InputStream.class && remoteResourceReference.getType() == RemoteResourceReference.Type.FILE) {
+        if ((type == InputStream.class || type == FileChannel.class) &&
+                remoteResourceReference.getType() == RemoteResourceReference.Type.FILE) {
             Map<String, Object> authenticationInfo = context.getProviderState() == null ? Collections.emptyMap() :
                     context.getProviderState().getAuthenticationInfo();
             File file = resource.getRemoteStorageProvider().getFile(remoteResourceReference, authenticationInfo);
             if (file != null) {
                 try {
-                    return (AdapterType) file.getInputStream();
+                    /*
+                     * binaries served from the local cache are exposed as FileChannels as well, so that callers can stream them with
+                     * FileChannel#transferTo
+                     */
+                    FileChannel channel = binaryCache == null ? null : binaryCache.getChannel(file);
+                    if (type == FileChannel.class) {
+                        if (channel != null) {
+                            return (AdapterType) channel;
+                        }
+                    } else if (channel != null) {
+                        return (AdapterType) Channels.newInputStream(channel);
+                    } else {
+                        return (AdapterType) file.getInputStream();
+                    }
                 } catch (IOException e) {
                     LOGGER.error(String.format("Unable to convert resource %s to an InputStream.", getPath()), e);
                 }
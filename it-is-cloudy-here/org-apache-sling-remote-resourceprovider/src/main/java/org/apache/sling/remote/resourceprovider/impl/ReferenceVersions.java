@@ -0,0 +1,43 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.impl;
+
+import org.apache.sling.remote.resourceprovider.RemoteResourceReference;
+import org.jetbrains.annotations.NotNull;
+
+final class ReferenceVersions {
+
+    private ReferenceVersions() {}
+
+    /**
+     * Returns a string identifying the version of a {@link RemoteResourceReference}: its revision, if the remote storage provides one,
+     * or a combination of its last modified date and size otherwise.
+     *
+     * @param reference the reference
+     * @return the reference's version
+     */
+    @NotNull
+    static String of(@NotNull RemoteResourceReference reference) {
+        String revision = reference.getRevision();
+        if (revision != null) {
+            return revision;
+        }
+        return reference.getLastModified() + ":" + reference.getSize();
+    }
+}
@@ -19,15 +19,22 @@
 package org.apache.sling.remote.resourceprovider.impl;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -65,11 +72,14 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
     private final ThreadPool threadPool;
     private final ContentParser jsonParser;
     private final InMemoryResourceCache cache;
+    private final SlingMetaFileCache metaFiles;
+    private final BinaryCache binaryCache;
     private final ShallowReferenceTree tree;
     private final RemoteStorageProvider remoteStorageProvider;
     private final boolean requiresAuthentication;
     private final Map<String, Set<String>> accessMappings;
     private final Map<String, Set<String>> negativeHits;
+    private final int remoteCallsConcurrency;
 
     private static final ParserOptions JSON_PARSER_OPTIONS = new JSONParserOptions().detectCalendarValues(true).defaultPrimaryType(null);
     private static final Map<String, Object> FILE_RESOURCE_PROPERTIES = new HashMap<>();
@@ -78,14 +88,18 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
     }
 
     RemoteResourceProvider(ThreadPoolManager threadPoolManager, ContentParser jsonParser, InMemoryResourceCache cache,
+                           SlingMetaFileCache metaFiles, @Nullable BinaryCache binaryCache,
                            RemoteStorageProvider remoteStorageProvider,
-                           boolean requiresAuthentication) {
+                           boolean requiresAuthentication, int remoteCallsConcurrency) {
         this.threadPoolManager = threadPoolManager;
         this.threadPool = threadPoolManager.get(remoteStorageProvider.getClass().getName() + "-" + System.currentTimeMillis());
         this.jsonParser = jsonParser;
         this.cache = cache;
+        this.metaFiles = metaFiles;
+        this.binaryCache = binaryCache;
         negativeHits = new ConcurrentHashMap<>();
         tree = new ShallowReferenceTree(removed -> {
+            this.metaFiles.remove(removed.getPath());
             for (String resourceRemoved : removed.getProvidedResourcePaths()) {
                 this.cache.remove(resourceRemoved);
                 if (!requiresAuthentication) {
@@ -110,7 +124,7 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
         this.remoteStorageProvider.registerEventHandler(this);
         this.requiresAuthentication = requiresAuthentication;
         accessMappings = new ConcurrentHashMap<>();
-
+        this.remoteCallsConcurrency = remoteCallsConcurrency;
     }
 
     void cleanup() {
@@ -118,6 +132,7 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
             threadPoolManager.release(threadPool);
         }
         cache.clear();
+        metaFiles.clear();
         accessMappings.clear();
         negativeHits.clear();
     }
@@ -148,7 +163,7 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
                 ctx.getProviderState().getAuthenticationInfo();
         CacheableResource cacheableResource = getOrBuildResource(path, authenticationInfo);
         if (cacheableResource != null) {
-            return new CacheableResourceWrapper(ctx, cacheableResource);
+            return new CacheableResourceWrapper(ctx, cacheableResource, binaryCache);
         }
         return null;
     }
@@ -169,38 +184,26 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
                 if (remoteResourceReference.getType() == RemoteResourceReference.Type.FILE) {
                     if (SLING_META_FILE.equals(remoteResourceReference.getName())) {
                         final LinkedHashSet<CacheableResource> children = new LinkedHashSet<>();
-                        try {
-                            String storagePath = _parent.getRemoteResourceReference().getPath();
-                            String storageParentPath = ResourceUtil.getParent(storagePath);
-                            if (storageParentPath != null) {
-                                File file = remoteStorageProvider.getFile(remoteResourceReference, authenticationInfo);
-                                if (file == null) {
-                                    throw new IOException(String.format("Cannot retrieve file %s.", remoteResourceReference.getPath()));
+                        String storageParentPath = ResourceUtil.getParent(remoteResourceReference.getPath());
+                        String slingParentPath = storageParentPath == null ? null : remoteStorageProvider.slingPath(storageParentPath);
+                        if (slingParentPath != null && parent.getPath().startsWith(slingParentPath)) {
+                            SlingMetaFile metaFile = getMetaFile(remoteResourceReference, authenticationInfo);
+                            if (metaFile != null) {
+                                String relativePath = "/".equals(slingParentPath) ? parent.getPath() :
+                                        parent.getPath().substring(slingParentPath.length());
+                                for (String childPath : metaFile.getChildren(relativePath)) {
+                                    String slingPath = ResourceUtil.normalize(slingParentPath + childPath);
+                                    if (slingPath != null) {
+                                        CacheableResource child = queryCaches(slingPath, user);
+                                        if (child == null) {
+                                            child = new CacheableResource(remoteStorageProvider, remoteResourceReference, slingPath,
+                                                    metaFile.getProperties(childPath));
+                                            populateCaches(child, user);
+                                        }
+                                        children.add(child);
+                                    }
                                 }
-                                jsonParser.parse(
-                                        (path, properties) -> {
-                                            String slingParentPath = remoteStorageProvider.slingPath(storageParentPath);
-                                            if (slingParentPath != null) {
-                                                String slingPath = ResourceUtil.normalize(slingParentPath + path);
-                                                if (!"/".equals(path) && slingPath != null &&
-                                                        slingPath.startsWith(parent.getPath() + "/")) {
-                                                    CacheableResource child = queryCaches(slingPath, user);
-                                                    if (child == null) {
-                                                        child = new CacheableResource(remoteStorageProvider, remoteResourceReference,
-                                                                slingPath, properties);
-                                                        populateCaches(child, user);
-                                                    }
-                                                    children.add(child);
-
-                                                }
-                                            }
-                                        },
-                                        file.getInputStream(),
-                                        JSON_PARSER_OPTIONS);
                             }
-                        } catch (IOException e) {
-                            LOGGER.error(String.format("Unable to parse file %s provided by %s.", remoteResourceReference.getPath(),
-                                    remoteResourceReference.getProvider()), e);
                         }
                         _parent.setChildren(children);
                     } else {
@@ -210,60 +213,7 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
                     LinkedHashSet<CacheableResource> children = new LinkedHashSet<>();
                     Directory directory = remoteStorageProvider.getDirectory(remoteResourceReference, authenticationInfo);
                     if (directory != null) {
-                        for (RemoteResourceReference child : directory.getChildren()) {
-                            String slingPath = remoteStorageProvider.slingPath(child.getPath());
-                            if (slingPath != null) {
-                                if (child.getType() == RemoteResourceReference.Type.FILE) {
-                                    if (SLING_META_FILE.equals(child.getName())) {
-                                        try {
-                                            File file = remoteStorageProvider.getFile(child, authenticationInfo);
-                                            if (file != null) {
-                                                jsonParser.parse((String path, Map<String, Object> properties) -> {
-                                                            if (path.length() > 1 && !path.substring(1).contains("/")) {
-                                                                String childSlingPath =
-                                                                        ResourceUtil.normalize(ResourceUtil.getParent(slingPath) + path);
-                                                                CacheableResource resource = queryCaches(slingPath, user);
-                                                                if (resource == null) {
-                                                                    resource = new CacheableResource(remoteStorageProvider, child,
-                                                                            childSlingPath, properties);
-                                                                    populateCaches(resource, user);
-                                                                }
-                                                                children.add(resource);
-
-                                                            }
-                                                        },
-                                                        file.getInputStream(),
-                                                        JSON_PARSER_OPTIONS);
-                                            }
-                                        } catch (IOException e) {
-                                            LOGGER.error("Unable to parse file " + child.getPath(), e);
-                                        }
-                                    } else {
-                                        CacheableResource resource = queryCaches(slingPath, user);
-                                        if (resource == null) {
-                                            File file = remoteStorageProvider.getFile(child, authenticationInfo);
-                                            if (file != null) {
-                                                resource = buildResource(slingPath, file);
-                                                populateCaches(resource, user);
-                                            }
-                                        }
-                                        if (resource != null) {
-                                            children.add(resource);
-                                        }
-                                    }
-                                } else if (child.getType() == RemoteResourceReference.Type.DIRECTORY) {
-                                    CacheableResource resource = queryCaches(slingPath, user);
-                                    if (resource == null) {
-                                        Directory d = remoteStorageProvider.getDirectory(child, authenticationInfo);
-                                        if (d != null) {
-                                            resource = buildResource(authenticationInfo, slingPath, child, d);
-                                            populateCaches(resource, user);
-                                        }
-                                    }
-                                    children.add(resource);
-                                }
-                            }
-                        }
+                        children.addAll(resolveChildren(directory, authenticationInfo, user));
                     }
                     if (!requiresAuthentication) {
                         _parent.setChildren(children);
@@ -289,13 +239,166 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
 
                 @Override
                 public Resource next() {
-                    return new CacheableResourceWrapper(ctx, iterator.next());
+                    return new CacheableResourceWrapper(ctx, iterator.next(), binaryCache);
                 }
             };
         }
         return null;
     }
 
+    /**
+     * Resolves the children of a {@link Directory}, preserving the order in which the remote storage provides them. Children already
+     * cached are served from memory; the others are either fetched with a single batch call, if the {@link RemoteStorageProvider}
+     * supports it, or resolved in parallel on the provider's thread pool.
+     */
+    @NotNull
+    private List<CacheableResource> resolveChildren(@NotNull Directory directory, @NotNull Map<String, Object> authenticationInfo,
+                                                    @NotNull String user) {
+        List<RemoteResourceReference> references = directory.getChildren();
+        List<List<CacheableResource>> slots = new ArrayList<>(references.size());
+        List<RemoteResourceReference> pending = new ArrayList<>();
+        List<Integer> pendingSlots = new ArrayList<>();
+        for (RemoteResourceReference child : references) {
+            String slingPath = remoteStorageProvider.slingPath(child.getPath());
+            List<CacheableResource> slot = Collections.emptyList();
+            if (slingPath != null) {
+                CacheableResource cached = SLING_META_FILE.equals(child.getName()) ? null : queryCaches(slingPath, user);
+                if (cached != null) {
+                    slot = Collections.singletonList(cached);
+                } else {
+                    pending.add(child);
+                    pendingSlots.add(slots.size());
+                }
+            }
+            slots.add(slot);
+        }
+        if (!pending.isEmpty()) {
+            List<RemoteResourceReference> batch = null;
+            if (remoteStorageProvider.supportsBatchRetrieval()) {
+                batch = remoteStorageProvider.getReferences(pending, authenticationInfo);
+                if (batch.size() != pending.size()) {
+                    LOGGER.warn("{} resolved {} references instead of {} for folder {}; resolving them one by one.",
+                            remoteStorageProvider, batch.size(), pending.size(), directory.getPath());
+                    batch = null;
+                }
+            }
+            final List<RemoteResourceReference> resolved = batch;
+            List<List<CacheableResource>> built = fanOut(pending.size(), index -> {
+                RemoteResourceReference child = pending.get(index);
+                RemoteResourceReference reference = resolved != null ? resolved.get(index) : resolveReference(child, authenticationInfo);
+                if (reference == null) {
+                    return Collections.emptyList();
+                }
+                return buildChildResources(child, reference, authenticationInfo);
+            });
+            for (int i = 0; i < pending.size(); i++) {
+                List<CacheableResource> resources = built.get(i);
+                if (resources != null && !resources.isEmpty()) {
+                    List<CacheableResource> slot = new ArrayList<>(resources.size());
+                    for (CacheableResource resource : resources) {
+                        CacheableResource cached = queryCaches(resource.getPath(), user);
+                        if (cached == null) {
+                            populateCaches(resource, user);
+                            cached = resource;
+                        }
+                        slot.add(cached);
+                    }
+                    slots.set(pendingSlots.get(i), slot);
+                }
+            }
+        }
+        List<CacheableResource> children = new ArrayList<>();
+        slots.forEach(children::addAll);
+        return children;
+    }
+
+    @Nullable
+    private RemoteResourceReference resolveReference(@NotNull RemoteResourceReference reference,
+                                                     @NotNull Map<String, Object> authenticationInfo) {
+        if (reference.getType() == RemoteResourceReference.Type.FILE) {
+            return remoteStorageProvider.getFile(reference, authenticationInfo);
+        } else if (reference.getType() == RemoteResourceReference.Type.DIRECTORY) {
+            return remoteStorageProvider.getDirectory(reference, authenticationInfo);
+        }
+        return null;
+    }
+
+    /**
+     * Builds the resources provided by a child of a {@link Directory}, without touching the caches, so that it can be safely executed
+     * in parallel. A {@link RemoteStorageProvider#SLING_META_FILE} provides all the first level resources it describes.
+     */
+    @NotNull
+    private List<CacheableResource> buildChildResources(@NotNull RemoteResourceReference child,
+                                                       @NotNull RemoteResourceReference reference,
+                                                       @NotNull Map<String, Object> authenticationInfo) {
+        String slingPath = remoteStorageProvider.slingPath(child.getPath());
+        if (slingPath == null) {
+            return Collections.emptyList();
+        }
+        if (reference instanceof File) {
+            if (SLING_META_FILE.equals(child.getName())) {
+                List<CacheableResource> resources = new ArrayList<>();
+                SlingMetaFile metaFile = getMetaFile(reference, authenticationInfo);
+                if (metaFile != null) {
+                    String slingParentPath = ResourceUtil.getParent(slingPath);
+                    for (String childPath : metaFile.getChildren("/")) {
+                        String childSlingPath = ResourceUtil.normalize(slingParentPath + childPath);
+                        resources.add(new CacheableResource(remoteStorageProvider, child, childSlingPath,
+                                metaFile.getProperties(childPath)));
+                    }
+                }
+                return resources;
+            }
+            return Collections.singletonList(buildResource(slingPath, reference));
+        } else if (reference instanceof Directory) {
+            return Collections.singletonList(buildResource(authenticationInfo, slingPath, child, (Directory) reference));
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Runs {@code size} tasks, using at most {@link #remoteCallsConcurrency} threads: the calling thread and up to
+     * {@code remoteCallsConcurrency - 1} threads from the provider's thread pool. The results are returned in the order of the tasks'
+     * indexes; a task that failed leaves a {@code null} result.
+     */
+    @NotNull
+    private <T> List<T> fanOut(int size, @NotNull IntFunction<T> task) {
+        AtomicReferenceArray<T> results = new AtomicReferenceArray<>(size);
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(size);
+        Runnable worker = () -> {
+            for (int index = next.getAndIncrement(); index < size; index = next.getAndIncrement()) {
+                try {
+                    results.set(index, task.apply(index));
+                } catch (RuntimeException e) {
+                    LOGGER.error(String.format("Unable to resolve a remote resource provided by %s.", remoteStorageProvider), e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        int helpers = threadPool == null ? 0 : Math.min(remoteCallsConcurrency, size) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                threadPool.execute(worker);
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        worker.run();
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while resolving remote resources provided by {}.", remoteStorageProvider);
+            Thread.currentThread().interrupt();
+        }
+        List<T> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(results.get(i));
+        }
+        return list;
+    }
+
     @Nullable
     private CacheableResource getOrBuildResource(@NotNull String slingPath, @NotNull Map<String, Object> authenticationInfo) {
         String user = extractUser(authenticationInfo);
@@ -325,25 +428,14 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
                         String relativePath = storagePath.substring(resource.getPath().length());
                         for (RemoteResourceReference r : directory.getChildren()) {
                             if (SLING_META_FILE.equals(r.getName())) {
-                                File metaFile = remoteStorageProvider.getFile(r, authenticationInfo);
+                                SlingMetaFile metaFile = getMetaFile(r, authenticationInfo);
                                 if (metaFile != null) {
-                                    AtomicReference<CacheableResource> resourceReference = new AtomicReference<>();
-                                    try {
-                                        jsonParser.parse((String path, Map<String, Object> properties) -> {
-                                                    if (relativePath.equals(path)) {
-                                                        resourceReference
-                                                                .set(new CacheableResource(remoteStorageProvider, r, slingPath,
-                                                                        properties));
-                                                    }
-                                                },
-                                                metaFile.getInputStream(),
-                                                JSON_PARSER_OPTIONS);
-                                        cacheableResource = resourceReference.get();
-                                    } catch (IOException e) {
-                                        LOGGER.error("Unable to parse file " + metaFile.getPath(), e);
+                                    Map<String, Object> properties = metaFile.getProperties(relativePath);
+                                    if (properties != null) {
+                                        cacheableResource = new CacheableResource(remoteStorageProvider, r, slingPath, properties);
                                     }
-                                    break;
                                 }
+                                break;
                             }
                         }
                     }
@@ -383,28 +475,14 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
         for (RemoteResourceReference remoteResourceReference : directory.getChildren()) {
             if (remoteResourceReference.getType() == RemoteResourceReference.Type.FILE &&
                     SLING_META_FILE.equals(remoteResourceReference.getName())) {
-                try {
-                    File file = remoteStorageProvider.getFile(remoteResourceReference, authenticationInfo);
-                    if (file != null) {
-                        jsonParser.parse(
-                                (String parsedPath, Map<String, Object> propertiesMap) -> {
-                                    if ("/".equals(parsedPath)) {
-                                        propertiesMap.forEach(properties::put);
-                                    }
-                                },
-                                file.getInputStream(),
-                                JSON_PARSER_OPTIONS
-                        );
-                        // special case - a meta-file augments the directory's properties
-                        ShallowReference shallowReference = tree.getReference(remoteResourceReference.getPath());
-                        if (shallowReference == null) {
-                            shallowReference = new ShallowReference(remoteResourceReference.getPath());
-                            tree.add(shallowReference);
-                        }
-                        shallowReference.markProvidedResource(path);
+                SlingMetaFile metaFile = getMetaFile(remoteResourceReference, authenticationInfo);
+                if (metaFile != null) {
+                    Map<String, Object> metaProperties = metaFile.getProperties("/");
+                    if (metaProperties != null) {
+                        properties.putAll(metaProperties);
                     }
-                } catch (IOException e) {
-                    LOGGER.error(String.format("Unable to parse file %s.", remoteResourceReference.getPath()), e);
+                    // special case - a meta-file augments the directory's properties
+                    markProvidedResource(remoteResourceReference.getPath(), path);
                 }
                 break;
             }
@@ -412,6 +490,29 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
         return new CacheableResource(remoteStorageProvider, reference, path, properties);
     }
 
+    /**
+     * Returns the parsed representation of a {@link RemoteStorageProvider#SLING_META_FILE}. The meta file is downloaded and parsed only
+     * if the cache doesn't already hold an index for the same version of the {@code reference}.
+     */
+    @Nullable
+    private SlingMetaFile getMetaFile(@NotNull RemoteResourceReference reference, @NotNull Map<String, Object> authenticationInfo) {
+        SlingMetaFile metaFile = metaFiles.get(reference);
+        if (metaFile == null) {
+            File file = reference instanceof File ? (File) reference : remoteStorageProvider.getFile(reference, authenticationInfo);
+            if (file == null) {
+                LOGGER.error("Cannot retrieve file {} provided by {}.", reference.getPath(), remoteStorageProvider);
+                return null;
+            }
+            try (InputStream inputStream = file.getInputStream()) {
+                metaFile = SlingMetaFile.parse(jsonParser, JSON_PARSER_OPTIONS, reference, inputStream);
+                metaFiles.put(metaFile);
+            } catch (IOException e) {
+                LOGGER.error(String.format("Unable to parse file %s provided by %s.", reference.getPath(), remoteStorageProvider), e);
+            }
+        }
+        return metaFile;
+    }
+
     private CacheableResource queryCaches(@NotNull String slingPath, @NotNull String user) {
         if (requiresAuthentication && ANY.equals(user)) {
             throw new IllegalStateException(String.format("Cannot determine user for RemoteStorageProvider %s requiring " +
@@ -428,13 +529,7 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
         CacheableResource previous = cache.get(cacheableResource.getPath());
         if (!cacheableResource.equals(previous)) {
             cache.put(cacheableResource.getPath(), cacheableResource);
-            RemoteResourceReference reference = cacheableResource.getRemoteResourceReference();
-            ShallowReference shallowReference = tree.getReference(reference.getPath());
-            if (shallowReference == null) {
-                shallowReference = new ShallowReference(reference.getPath());
-                tree.add(shallowReference);
-            }
-            shallowReference.markProvidedResource(cacheableResource.getPath());
+            markProvidedResource(cacheableResource.getRemoteResourceReference().getPath(), cacheableResource.getPath());
         }
         if (requiresAuthentication && ANY.equals(user)) {
             throw new IllegalStateException(String.format("Cannot determine user for RemoteStorageProvider %s requiring " +
@@ -444,6 +539,18 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
         allowed.add(user);
     }
 
+    private void markProvidedResource(@NotNull String referencePath, @NotNull String slingPath) {
+        // resources can be built in parallel; make sure concurrent builders don't register competing shallow references
+        synchronized (tree) {
+            ShallowReference shallowReference = tree.getReference(referencePath);
+            if (shallowReference == null) {
+                shallowReference = new ShallowReference(referencePath);
+                tree.add(shallowReference);
+            }
+            shallowReference.markProvidedResource(slingPath);
+        }
+    }
+
     private boolean isNegativeHit(@NotNull String slingPath, @NotNull String user) {
         Set<String> negativeHitsSet = negativeHits.get(slingPath);
         return negativeHitsSet != null && negativeHitsSet.contains(user);
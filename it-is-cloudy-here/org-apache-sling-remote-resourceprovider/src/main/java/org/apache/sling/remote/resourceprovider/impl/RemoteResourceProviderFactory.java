@@ -18,6 +18,9 @@
  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
 package org.apache.sling.remote.resourceprovider.impl;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Set;
@@ -148,10 +151,12 @@ public class RemoteResourceProviderFactory {
                 int cacheSize = configuration.cacheSize() >= 100 ? configuration.cacheSize() : 0;
                 int lastAccessedExpirationTime = configuration.lastAccessedExpirationTime() >= 0 ?
                         configuration.lastAccessedExpirationTime() : 0;
+                int remoteCallsConcurrency = Math.max(configuration.remoteCallsConcurrency(), 1);
                 resourceProvider = new RemoteResourceProvider(threadPoolManager, jsonParser, new InMemoryResourceCache(cacheSize,
-                        lastAccessedExpirationTime),
-                        remoteStorageProvider, !ResourceProvider.AUTHENTICATE_NO
-                        .equals(resourceProviderRegistrationProperties.get(ResourceProvider.PROPERTY_AUTHENTICATE)));
+                        lastAccessedExpirationTime), new SlingMetaFileCache(cacheSize, lastAccessedExpirationTime),
+                        createBinaryCache(bundleContext), remoteStorageProvider, !ResourceProvider.AUTHENTICATE_NO
+                        .equals(resourceProviderRegistrationProperties.get(ResourceProvider.PROPERTY_AUTHENTICATE)),
+                        remoteCallsConcurrency);
                 resourceProviderServiceRegistration = bundleContext.registerService(ResourceProvider.class,
                         resourceProvider,
                         resourceProviderRegistrationProperties);
@@ -161,6 +166,26 @@ public class RemoteResourceProviderFactory {
             }
         }
 
+        private BinaryCache createBinaryCache(BundleContext bundleContext) {
+            if (configuration.binaryCacheSize() <= 0) {
+                return null;
+            }
+            File baseDirectory = StringUtils.isNotEmpty(configuration.binaryCacheDirectory()) ?
+                    new File(configuration.binaryCacheDirectory()) : bundleContext.getDataFile("binaries");
+            if (baseDirectory == null) {
+                LOGGER.warn("The framework does not provide a data area for this bundle; remote binaries will not be cached.");
+                return null;
+            }
+            String root = (String) resourceProviderRegistrationProperties.get(ResourceProvider.PROPERTY_ROOT);
+            Path directory = baseDirectory.toPath().resolve(root.replaceAll("[^A-Za-z0-9-]", "_"));
+            try {
+                return new BinaryCache(directory, configuration.binaryCacheSize() * 1024L * 1024L);
+            } catch (IOException e) {
+                LOGGER.error(String.format("Unable to initialise the binary cache in %s; remote binaries will not be cached.", directory), e);
+                return null;
+            }
+        }
+
         void unregisterResourceProvider() {
             if (resourceProviderServiceRegistration != null) {
                 try {
@@ -42,4 +42,26 @@ public @interface RemoteResourceProviderFactoryConfiguration {
     )
     int lastAccessedExpirationTime() default 5;
 
+    @AttributeDefinition(
+            name = "Remote Calls Concurrency",
+            description = "The maximum number of parallel calls each registered Resource Provider will issue to its Remote Storage " +
+                    "Provider when listing the children of a folder. Values lower than 2 resolve the children serially."
+    )
+    int remoteCallsConcurrency() default 8;
+
+    @AttributeDefinition(
+            name = "Binary Cache Size",
+            description = "The maximum size, in megabytes, of the local disk cache storing the binary contents of remote files for each " +
+                    "registered Resource Provider. The least recently used binaries are evicted first. 0 or a negative value disable " +
+                    "the cache."
+    )
+    int binaryCacheSize() default 256;
+
+    @AttributeDefinition(
+            name = "Binary Cache Directory",
+            description = "The directory where remote binaries are cached. Each Resource Provider uses a sub-directory named after its " +
+                    "root. If empty, the bundle's data area will be used."
+    )
+    String binaryCacheDirectory() default "";
+
 }
@@ -0,0 +1,110 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.contentparser.api.ContentParser;
+import org.apache.sling.contentparser.api.ParserOptions;
+import org.apache.sling.remote.resourceprovider.RemoteResourceReference;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An immutable index of a parsed {@link org.apache.sling.remote.resourceprovider.RemoteStorageProvider#SLING_META_FILE}, mapping the
+ * relative paths described by the file to their properties. The index is bound to the version of the {@link RemoteResourceReference}
+ * it was parsed from.
+ */
+final class SlingMetaFile {
+
+    private final String path;
+    private final String version;
+    private final Map<String, Map<String, Object>> properties;
+    private final Map<String, List<String>> children;
+
+    private SlingMetaFile(@NotNull String path, @NotNull String version, @NotNull Map<String, Map<String, Object>> properties,
+                          @NotNull Map<String, List<String>> children) {
+        this.path = path;
+        this.version = version;
+        this.properties = properties;
+        this.children = children;
+    }
+
+    @NotNull
+    static SlingMetaFile parse(@NotNull ContentParser parser, @NotNull ParserOptions parserOptions,
+                               @NotNull RemoteResourceReference reference, @NotNull InputStream inputStream) throws IOException {
+        Map<String, Map<String, Object>> properties = new LinkedHashMap<>();
+        Map<String, List<String>> children = new LinkedHashMap<>();
+        parser.parse((String path, Map<String, Object> propertiesMap) -> {
+            properties.put(path, Collections.unmodifiableMap(new LinkedHashMap<>(propertiesMap)));
+            String parent = ResourceUtil.getParent(path);
+            if (parent != null) {
+                children.computeIfAbsent(parent, key -> new ArrayList<>()).add(path);
+            }
+        }, inputStream, parserOptions);
+        children.replaceAll((parent, paths) -> List.copyOf(paths));
+        return new SlingMetaFile(reference.getPath(), ReferenceVersions.of(reference), Collections.unmodifiableMap(properties),
+                Collections.unmodifiableMap(children));
+    }
+
+    /**
+     * Returns the storage path of the meta file this index was parsed from.
+     *
+     * @return the storage path
+     */
+    @NotNull
+    String getPath() {
+        return path;
+    }
+
+    boolean isVersionOf(@NotNull RemoteResourceReference reference) {
+        return Objects.equals(path, reference.getPath()) && version.equals(ReferenceVersions.of(reference));
+    }
+
+    /**
+     * Returns the properties of the resource identified by {@code relativePath} (e.g. {@code /} for the folder containing the meta
+     * file, {@code /par-1} for a first level child).
+     *
+     * @param relativePath the path relative to the folder containing the meta file
+     * @return the resource's properties or {@code null} if the meta file doesn't describe such a resource
+     */
+    @Nullable
+    Map<String, Object> getProperties(@NotNull String relativePath) {
+        return properties.get(relativePath);
+    }
+
+    /**
+     * Returns the relative paths of the direct children of the resource identified by {@code relativePath}, in document order.
+     *
+     * @param relativePath the path relative to the folder containing the meta file
+     * @return the relative paths of the children
+     */
+    @NotNull
+    List<String> getChildren(@NotNull String relativePath) {
+        return children.getOrDefault(relativePath, Collections.emptyList());
+    }
+}
@@ -0,0 +1,131 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.impl;
+
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.threads.ThreadPool;
+import org.apache.sling.commons.threads.ThreadPoolManager;
+import org.apache.sling.contentparser.api.ContentParser;
+import org.apache.sling.contentparser.json.internal.JSONContentParser;
+import org.apache.sling.remote.resourceprovider.RemoteResourceReference;
+import org.apache.sling.remote.resourceprovider.RemoteStorageProvider;
+import org.apache.sling.remote.resourceprovider.impl.mocks.MockRemoteStorageProvider;
+import org.apache.sling.spi.resource.provider.ResourceProvider;
+import org.apache.sling.testing.mock.osgi.junit5.OsgiContextExtension;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(OsgiContextExtension.class)
+@ExtendWith(MockitoExtension.class)
+class BatchRetrievalRemoteResourceProviderTest extends RemoteResourceProviderTestBase {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void afterEach() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testBatchRetrieval() {
+        BatchingRemoteStorageProvider remoteStorageProvider = new BatchingRemoteStorageProvider();
+        registerResourceProvider(mock(ThreadPoolManager.class), remoteStorageProvider);
+
+        Resource test_1 = resourceProvider.getResource(resolveContext, "/content/test-1", resourceContext, null);
+        assertNotNull(test_1);
+        int batchCalls = remoteStorageProvider.batchCalls.get();
+        checkChildren(test_1, Set.of("hey", "little", "test-1.txt"));
+        assertEquals(batchCalls + 1, remoteStorageProvider.batchCalls.get(),
+                "Expected the children of /content/test-1 to be resolved with a single batch call.");
+    }
+
+    @Test
+    void testParallelRetrieval() {
+        ThreadPool threadPool = mock(ThreadPool.class);
+        AtomicInteger executions = new AtomicInteger();
+        doAnswer(invocation -> {
+            executions.incrementAndGet();
+            executor.execute(invocation.getArgument(0));
+            return null;
+        }).when(threadPool).execute(any(Runnable.class));
+        ThreadPoolManager threadPoolManager = mock(ThreadPoolManager.class);
+        when(threadPoolManager.get(anyString())).thenReturn(threadPool);
+        registerResourceProvider(threadPoolManager, new MockRemoteStorageProvider());
+
+        Resource test_1 = resourceProvider.getResource(resolveContext, "/content/test-1", resourceContext, null);
+        assertNotNull(test_1);
+        checkChildren(test_1, Set.of("hey", "little", "test-1.txt"));
+        assertTrue(executions.get() > 0, "Expected the children of /content/test-1 to be resolved on the thread pool.");
+
+        Resource content = resourceProvider.getResource(resolveContext, "/content", resourceContext, null);
+        assertNotNull(content);
+        assertTrue(wrapsSameResource(test_1, getChild(content, "test-1")), "Expected to get a cached representation of /content/test-1");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void registerResourceProvider(ThreadPoolManager threadPoolManager, RemoteStorageProvider remoteStorageProvider) {
+        context.registerService(ThreadPoolManager.class, threadPoolManager);
+        context.registerService(ContentParser.class, new JSONContentParser());
+        context.registerInjectActivateService(new RemoteResourceProviderFactory());
+        Hashtable<String, Object> resourceProviderRegistrationProperties = new Hashtable<>();
+        resourceProviderRegistrationProperties.put(RemoteStorageProvider.PROP_RESOURCE_PROVIDER_ROOT, "/");
+        resourceProviderRegistrationProperties.put(RemoteStorageProvider.PROP_RESOURCE_PROVIDER_AUTHENTICATE, "no");
+        resourceProviderRegistrationProperties.put(ResourceProvider.PROPERTY_NAME, MockRemoteStorageProvider.class.getName());
+        context.registerService(RemoteStorageProvider.class, remoteStorageProvider, resourceProviderRegistrationProperties);
+        resourceProvider = context.getService(ResourceProvider.class);
+        assertNotNull(resourceProvider);
+    }
+
+    private static class BatchingRemoteStorageProvider extends MockRemoteStorageProvider {
+
+        private final AtomicInteger batchCalls = new AtomicInteger();
+
+        @Override
+        public @NotNull List<RemoteResourceReference> getReferences(@NotNull List<RemoteResourceReference> references,
+                                                                    @NotNull Map<String, Object> authenticationInfo) {
+            batchCalls.incrementAndGet();
+            return super.getReferences(references, authenticationInfo);
+        }
+
+        @Override
+        public boolean supportsBatchRetrieval() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.remote.resourceprovider.AbstractRemoteResourceReference;
+import org.apache.sling.remote.resourceprovider.File;
+import org.apache.sling.remote.resourceprovider.RemoteStorageProvider;
+import org.apache.sling.remote.resourceprovider.impl.mocks.MockRemoteStorageProvider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BinaryCacheTest {
+
+    private static final RemoteStorageProvider PROVIDER = new MockRemoteStorageProvider();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testCachedReads() throws IOException {
+        BinaryCache cache = new BinaryCache(directory, 1024);
+        TestFile file = new TestFile("/a.txt", "1", "hello");
+        assertEquals("hello", read(cache, file));
+        assertEquals("hello", read(cache, file));
+        assertEquals(1, file.downloads.get(), "Expected the second read to be served from the disk cache.");
+
+        TestFile newRevision = new TestFile("/a.txt", "2", "hello world");
+        assertEquals("hello world", read(cache, newRevision));
+        assertEquals(1, newRevision.downloads.get(), "Expected a new revision to be downloaded again.");
+    }
+
+    @Test
+    void testEviction() throws IOException {
+        BinaryCache cache = new BinaryCache(directory, 10);
+        TestFile a = new TestFile("/a.txt", "1", "aaaa");
+        TestFile b = new TestFile("/b.txt", "1", "bbbb");
+        TestFile c = new TestFile("/c.txt", "1", "cccc");
+        read(cache, a);
+        read(cache, b);
+        read(cache, a);
+        read(cache, c);
+        assertEquals(8, cache.getSize());
+        read(cache, a);
+        assertEquals(1, a.downloads.get(), "Expected /a.txt to stay cached since it was recently used.");
+        read(cache, b);
+        assertEquals(2, b.downloads.get(), "Expected /b.txt to have been evicted.");
+
+        TestFile tooLarge = new TestFile("/d.txt", "1", "dddddddddddd");
+        assertNull(cache.getChannel(tooLarge));
+    }
+
+    @Test
+    void testRestart() throws IOException {
+        TestFile file = new TestFile("/a.txt", "1", "hello");
+        read(new BinaryCache(directory, 1024), file);
+        BinaryCache restarted = new BinaryCache(directory, 1024);
+        assertEquals(5, restarted.getSize());
+        assertEquals("hello", read(restarted, file));
+        assertEquals(1, file.downloads.get(), "Expected the cached binary to survive a restart.");
+    }
+
+    @Test
+    void testConcurrentMissesShareOneDownload() throws Exception {
+        BinaryCache cache = new BinaryCache(directory, 1024);
+        CountDownLatch release = new CountDownLatch(1);
+        TestFile file = new TestFile("/a.txt", "1", "hello", release);
+        int readers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < readers; i++) {
+                results.add(executor.submit(() -> read(cache, file)));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (file.downloads.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // give the other readers a chance to pile up behind the running download
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("hello", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, file.downloads.get(), "Expected concurrent misses for the same binary to share a single download.");
+    }
+
+    private static String read(BinaryCache cache, File file) throws IOException {
+        FileChannel channel = cache.getChannel(file);
+        assertNotNull(channel);
+        try (InputStream inputStream = Channels.newInputStream(channel)) {
+            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class TestFile extends AbstractRemoteResourceReference implements File {
+
+        private final String path;
+        private final String revision;
+        private final byte[] contents;
+        private final CountDownLatch release;
+        private final AtomicInteger downloads = new AtomicInteger();
+
+        TestFile(String path, String revision, String contents) {
+            this(path, revision, contents, new CountDownLatch(0));
+        }
+
+        TestFile(String path, String revision, String contents, CountDownLatch release) {
+            this.path = path;
+            this.revision = revision;
+            this.contents = contents.getBytes(StandardCharsets.UTF_8);
+            this.release = release;
+        }
+
+        @Override
+        public @NotNull InputStream getInputStream() {
+            downloads.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ByteArrayInputStream(contents);
+        }
+
+        @Override
+        public @Nullable String getMimeType() {
+            return "text/plain";
+        }
+
+        @Override
+        public Type getType() {
+            return Type.FILE;
+        }
+
+        @Override
+        public RemoteStorageProvider getProvider() {
+            return PROVIDER;
+        }
+
+        @Override
+        public @NotNull String getPath() {
+            return path;
+        }
+
+        @Override
+        public long getCreated() {
+            return 0;
+        }
+
+        @Override
+        public long getSize() {
+            return contents.length;
+        }
+
+        @Override
+        public @Nullable String getRevision() {
+            return revision;
+        }
+    }
+}
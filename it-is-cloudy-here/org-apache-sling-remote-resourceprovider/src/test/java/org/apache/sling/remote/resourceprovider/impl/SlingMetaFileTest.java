@@ -0,0 +1,81 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.contentparser.json.JSONParserOptions;
+import org.apache.sling.contentparser.json.internal.JSONContentParser;
+import org.apache.sling.remote.resourceprovider.File;
+import org.apache.sling.remote.resourceprovider.RemoteResourceReference;
+import org.apache.sling.remote.resourceprovider.impl.mocks.MockRemoteStorageProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlingMetaFileTest {
+
+    private RemoteResourceReference reference;
+    private SlingMetaFile metaFile;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        MockRemoteStorageProvider remoteStorageProvider = new MockRemoteStorageProvider();
+        reference = remoteStorageProvider.findResource("/content/test-1/.sling.json", Map.of());
+        assertNotNull(reference);
+        File file = remoteStorageProvider.getFile(reference, Map.of());
+        assertNotNull(file);
+        try (InputStream inputStream = file.getInputStream()) {
+            metaFile = SlingMetaFile.parse(new JSONContentParser(), new JSONParserOptions().detectCalendarValues(true)
+                    .defaultPrimaryType(null), reference, inputStream);
+        }
+    }
+
+    @Test
+    void testIndex() {
+        assertEquals(List.of("/hey", "/little"), metaFile.getChildren("/"));
+        assertEquals(List.of("/hey/joe"), metaFile.getChildren("/hey"));
+        assertTrue(metaFile.getChildren("/hey/joe").isEmpty());
+        Map<String, Object> joe = metaFile.getProperties("/hey/joe");
+        assertNotNull(joe);
+        assertEquals("sling/servlet/default", joe.get(ResourceResolver.PROPERTY_RESOURCE_TYPE));
+        assertNull(metaFile.getProperties("/hey/jane"));
+    }
+
+    @Test
+    void testCache() {
+        SlingMetaFileCache cache = new SlingMetaFileCache(100, 5);
+        cache.put(metaFile);
+        assertTrue(metaFile.isVersionOf(reference));
+        assertSame(metaFile, cache.get(reference));
+        cache.remove(reference.getPath());
+        assertNull(cache.get(reference));
+        assertFalse(metaFile.getChildren("/").isEmpty());
+    }
+}
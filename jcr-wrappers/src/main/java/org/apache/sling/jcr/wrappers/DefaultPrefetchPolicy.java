@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.jcr.wrappers;
+
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+/** PrefetchPolicy which selects nodes and properties by name */
+public class DefaultPrefetchPolicy implements PrefetchPolicy {
+    public static final int DEFAULT_MAX_PREFETCHED_PATHS = 1000;
+
+    private final int depth;
+    private final Pattern nodeNamePattern;
+    private final Pattern propertyNamePattern;
+    private final Executor executor;
+    private final int maxPrefetchedPaths;
+
+    /** @param nodeNamePattern if not null, only child nodes with matching names are preloaded
+     *  @param propertyNamePattern if not null, only the values of matching properties are preloaded
+     */
+    public DefaultPrefetchPolicy(int depth, String nodeNamePattern, String propertyNamePattern, Executor executor) {
+        this(depth, nodeNamePattern, propertyNamePattern, executor, DEFAULT_MAX_PREFETCHED_PATHS);
+    }
+
+    public DefaultPrefetchPolicy(int depth, String nodeNamePattern, String propertyNamePattern, Executor executor, int maxPrefetchedPaths) {
+        this.depth = depth;
+        this.nodeNamePattern = nodeNamePattern == null ? null : Pattern.compile(nodeNamePattern);
+        this.propertyNamePattern = propertyNamePattern == null ? null : Pattern.compile(propertyNamePattern);
+        this.executor = executor;
+        this.maxPrefetchedPaths = maxPrefetchedPaths;
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public boolean includeNode(String parentPath, String childName) {
+        return nodeNamePattern == null || nodeNamePattern.matcher(childName).matches();
+    }
+
+    @Override
+    public boolean includeProperty(String nodePath, String propertyName) {
+        return propertyNamePattern == null || propertyNamePattern.matcher(propertyName).matches();
+    }
+
+    @Override
+    public int getMaxPrefetchedPaths() {
+        return maxPrefetchedPaths;
+    }
+
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+}
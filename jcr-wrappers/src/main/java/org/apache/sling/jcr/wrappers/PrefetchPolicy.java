@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.jcr.wrappers;
+
+import java.util.concurrent.Executor;
+
+/** Defines what a {@link SessionWrapper} preloads, asynchronously,
+ *  when a Node is accessed, to warm up the underlying repository.
+ */
+public interface PrefetchPolicy {
+
+    /** How many levels below an accessed Node are preloaded, 0 means
+     *  that only the Node itself is preloaded
+     */
+    int getDepth();
+
+    /** Whether the child node with the given name is preloaded */
+    boolean includeNode(String parentPath, String childName);
+
+    /** Whether the value of the given property is preloaded. Binary
+     *  values are never preloaded.
+     */
+    boolean includeProperty(String nodePath, String propertyName);
+
+    /** Maximum number of accessed paths that a Session remembers, to
+     *  avoid preloading them again. The least recently accessed ones
+     *  are forgotten first.
+     */
+    int getMaxPrefetchedPaths();
+
+    /** Runs the preloading tasks, which are serialized per Session */
+    Executor getExecutor();
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.jcr.wrappers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Preloads content for a SessionWrapper according to a PrefetchPolicy,
+ *  to warm up the underlying repository. Nothing that's preloaded is
+ *  used to answer the SessionWrapper's calls, so it cannot go stale.
+ *  Uses its own Session, as Sessions are not meant to be used by
+ *  several threads, and runs one task at a time for that reason.
+ */
+class Prefetcher {
+    private static final Logger log = LoggerFactory.getLogger(Prefetcher.class);
+
+    private final PrefetchPolicy policy;
+    private final Callable<Session> sessionFactory;
+
+    /** Paths which have been preloaded since the last clear(), which
+     *  replaces this Set, limited to the policy's maximum number of
+     *  prefetched paths.
+     */
+    private volatile Set<String> requested;
+
+    /** Created by the thread which uses our SessionWrapper, then only
+     *  used by our tasks, which run one at a time. Guarded by this.
+     */
+    private Session session;
+
+    /** The last scheduled task, guarded by this */
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+    private boolean closed;
+
+    Prefetcher(PrefetchPolicy policy, Callable<Session> sessionFactory) {
+        this.policy = policy;
+        this.sessionFactory = sessionFactory;
+        this.requested = newRequestedSet();
+    }
+
+    private Set<String> newRequestedSet() {
+        final int max = policy.getMaxPrefetchedPaths();
+        return Collections.newSetFromMap(Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > max;
+            }
+        }));
+    }
+
+    /** Called when a Node is accessed, to preload it and its descendants */
+    void nodeAccessed(String path) {
+        if(requested.add(path)) {
+            schedule(true, s -> prefetch(s, path));
+        }
+    }
+
+    /** Forget what's been preloaded, for example after changes were saved,
+     *  so that it's preloaded again when accessed.
+     */
+    void clear() {
+        requested = newRequestedSet();
+        schedule(false, s -> s.refresh(false));
+    }
+
+    /** Returns a Future that completes once all scheduled tasks are done */
+    synchronized CompletableFuture<Void> idle() {
+        return tail;
+    }
+
+    void close() {
+        synchronized (this) {
+            closed = true;
+            final Session toClose = session;
+            session = null;
+            if(toClose != null) {
+                tail = tail.thenRunAsync(toClose::logout, policy.getExecutor());
+            }
+        }
+        requested = newRequestedSet();
+    }
+
+    private interface Task {
+        void run(Session s) throws Exception;
+    }
+
+    /** @param openSession if false, the task is skipped if our Session
+     *      hasn't been created yet
+     */
+    private synchronized void schedule(boolean openSession, Task task) {
+        if(closed) {
+            return;
+        }
+        if(session == null) {
+            if(!openSession) {
+                return;
+            }
+            try {
+                session = sessionFactory.call();
+            } catch(Exception e) {
+                log.warn("Cannot open prefetch Session, prefetching disabled", e);
+                closed = true;
+                return;
+            }
+        }
+        final Session s = session;
+        tail = tail.thenRunAsync(() -> {
+            try {
+                task.run(s);
+            } catch(Exception e) {
+                log.warn("Prefetch task failed", e);
+            }
+        }, policy.getExecutor());
+    }
+
+    private void prefetch(Session s, String path) throws RepositoryException {
+        if(s.nodeExists(path)) {
+            prefetch(s.getNode(path), 0);
+        }
+    }
+
+    private void prefetch(Node n, int depth) throws RepositoryException {
+        final String path = n.getPath();
+        final List<Node> toVisit = new ArrayList<>();
+        final NodeIterator it = n.getNodes();
+        while(it.hasNext()) {
+            final Node child = it.nextNode();
+            if(depth < policy.getDepth() && policy.includeNode(path, child.getName())) {
+                toVisit.add(child);
+            }
+        }
+        final PropertyIterator pit = n.getProperties();
+        while(pit.hasNext()) {
+            final Property p = pit.nextProperty();
+            if(p.getType() != PropertyType.BINARY && policy.includeProperty(path, p.getName())) {
+                if(p.isMultiple()) {
+                    p.getValues();
+                } else {
+                    p.getValue();
+                }
+            }
+        }
+        log.debug("Prefetched {}", path);
+        for(Node child : toVisit) {
+            prefetch(child, depth + 1);
+        }
+    }
+}
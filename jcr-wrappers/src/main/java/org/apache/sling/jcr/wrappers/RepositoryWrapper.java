@@ -28,10 +28,17 @@ import org.apache.jackrabbit.api.JackrabbitSession;
 public class RepositoryWrapper<T extends Repository> implements Repository {
     public final T jcr;
     private final ObjectWrapper objectWrapper;
+    private final PrefetchPolicy prefetchPolicy;
 
     public RepositoryWrapper(ObjectWrapper factory, T jcr) {
+        this(factory, jcr, null);
+    }
+
+    /** @param prefetchPolicy if not null, Sessions preload content according to this policy */
+    public RepositoryWrapper(ObjectWrapper factory, T jcr, PrefetchPolicy prefetchPolicy) {
         this.jcr = jcr;
         this.objectWrapper = factory;
+        this.prefetchPolicy = prefetchPolicy;
     }
     
     public ObjectWrapper getObjectWrapper() {
@@ -70,7 +77,11 @@ public class RepositoryWrapper<T extends Repository> implements Repository {
 
     @Override
     public Session login(Credentials credentials, String workspaceName) throws LoginException, NoSuchWorkspaceException, RepositoryException {
-        return objectWrapper.wrap(this, jcr.login(credentials, workspaceName));
+        final Session result = objectWrapper.wrap(this, jcr.login(credentials, workspaceName));
+        if(prefetchPolicy != null && result instanceof SessionWrapper) {
+            ((SessionWrapper<?>)result).enablePrefetch(prefetchPolicy);
+        }
+        return result;
     }
 
     @Override
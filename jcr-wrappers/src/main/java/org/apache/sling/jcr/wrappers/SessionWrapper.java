@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.AccessControlException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import javax.jcr.AccessDeniedException;
 import javax.jcr.Credentials;
 import javax.jcr.InvalidItemStateException;
@@ -37,6 +39,7 @@ import javax.jcr.ReferentialIntegrityException;
 import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
 import javax.jcr.UnsupportedRepositoryOperationException;
 import javax.jcr.ValueFactory;
 import javax.jcr.Workspace;
@@ -54,6 +57,7 @@ public class SessionWrapper<T extends Session> implements Session {
     private final RepositoryWrapper repository;
     private final ObjectWrapper objectWrapper;
     public final T wrappedSession;
+    private volatile Prefetcher prefetcher;
 
     public SessionWrapper(RepositoryWrapper repository, T wrappedSession) {
         this.repository = repository;
@@ -69,6 +73,41 @@ public class SessionWrapper<T extends Session> implements Session {
         return wrappedSession;
     }
 
+    /** Preload content according to the supplied policy when Nodes are accessed,
+     *  using a Session obtained by impersonating this Session's user.
+     */
+    public void enablePrefetch(PrefetchPolicy policy) {
+        enablePrefetch(policy, () -> wrappedSession.impersonate(
+            new SimpleCredentials(wrappedSession.getUserID(), new char[0])));
+    }
+
+    /** Preload content according to the supplied policy when Nodes are accessed,
+     *  using a Session provided by sessionFactory which must have the same
+     *  access rights as this one. sessionFactory is called by the thread
+     *  which first accesses a Node.
+     */
+    public void enablePrefetch(PrefetchPolicy policy, Callable<Session> sessionFactory) {
+        if(prefetcher != null) {
+            prefetcher.close();
+        }
+        prefetcher = new Prefetcher(policy, sessionFactory);
+    }
+
+    /** Returns a Future that completes once the preloading tasks that are
+     *  currently scheduled are done.
+     */
+    public CompletableFuture<Void> prefetchIdle() {
+        final Prefetcher p = prefetcher;
+        return p == null ? CompletableFuture.completedFuture(null) : p.idle();
+    }
+
+    protected void nodeAccessed(String absPath) {
+        final Prefetcher p = prefetcher;
+        if(p != null) {
+            p.nodeAccessed(absPath);
+        }
+    }
+
     @Override
     public Repository getRepository() {
         return this.repository;
@@ -91,10 +130,12 @@ public class SessionWrapper<T extends Session> implements Session {
 
     @Override
     public Node getRootNode() throws RepositoryException {
+        nodeAccessed("/");
         return objectWrapper.wrap(this, wrappedSession.getRootNode());
     }
 
     public NodeIterator getNodes(String path, NodeIterator children) throws RepositoryException {
+        nodeAccessed(path);
         return objectWrapper.wrap(this, children);
     }
 
@@ -124,7 +165,9 @@ public class SessionWrapper<T extends Session> implements Session {
 
     @Override
     public Node getNode(String absPath) throws PathNotFoundException, RepositoryException {
-        return objectWrapper.wrap(this, wrappedSession.getNode(absPath));
+        final Node result = objectWrapper.wrap(this, wrappedSession.getNode(absPath));
+        nodeAccessed(absPath);
+        return result;
     }
 
     @Override
@@ -155,11 +198,20 @@ public class SessionWrapper<T extends Session> implements Session {
     @Override
     public void save() throws AccessDeniedException, ItemExistsException, ReferentialIntegrityException, ConstraintViolationException, InvalidItemStateException, VersionException, LockException, NoSuchNodeTypeException, RepositoryException {
         this.wrappedSession.save();
+        clearPrefetched();
     }
 
     @Override
     public void refresh(boolean keepChanges) throws RepositoryException {
         this.wrappedSession.refresh(keepChanges);
+        clearPrefetched();
+    }
+
+    private void clearPrefetched() {
+        final Prefetcher p = prefetcher;
+        if(p != null) {
+            p.clear();
+        }
     }
 
     public void refresh(String path, Item item, boolean keepChanges) throws RepositoryException {
@@ -243,6 +295,10 @@ public class SessionWrapper<T extends Session> implements Session {
 
     @Override
     public void logout() {
+        final Prefetcher p = prefetcher;
+        if(p != null) {
+            p.close();
+        }
         this.wrappedSession.logout();
     }
 
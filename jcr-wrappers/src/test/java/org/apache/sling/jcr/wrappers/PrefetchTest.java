@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.jcr.wrappers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.jcr.Credentials;
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.jcr.Jcr;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Verify the preloading of content according to a PrefetchPolicy */
+public class PrefetchTest {
+    private static final Credentials ADMIN_CREDENTIALS = new SimpleCredentials("admin", "admin".toCharArray());
+    private Repository raw;
+    private ExecutorService executor;
+    private RecordingPolicy policy;
+    private SessionWrapper<?> session;
+
+    /** Records the Nodes that are preloaded */
+    private static class RecordingPolicy extends DefaultPrefetchPolicy {
+        final Set<String> preloaded = new ConcurrentSkipListSet<>();
+
+        RecordingPolicy(int depth, String nodeNamePattern, String propertyNamePattern, Executor executor, int maxPrefetchedPaths) {
+            super(depth, nodeNamePattern, propertyNamePattern, executor, maxPrefetchedPaths);
+        }
+
+        @Override
+        public boolean includeProperty(String nodePath, String propertyName) {
+            preloaded.add(nodePath);
+            return super.includeProperty(nodePath, propertyName);
+        }
+    }
+
+    @BeforeEach
+    public void setup() throws RepositoryException {
+        raw = new Jcr(new Oak()).createRepository();
+        final Session s = raw.login(ADMIN_CREDENTIALS);
+        final Node content = s.getRootNode().addNode("content");
+        for(String name : new String[] { "a", "b", "skipped" }) {
+            final Node n = content.addNode(name);
+            n.setProperty("title", "Title of " + name);
+            n.setProperty("other", 42L);
+            n.addNode("child").addNode("grandchild").setProperty("title", "deep");
+        }
+        s.save();
+        s.logout();
+
+        executor = Executors.newSingleThreadExecutor();
+        login(DefaultPrefetchPolicy.DEFAULT_MAX_PREFETCHED_PATHS);
+    }
+
+    private void login(int maxPrefetchedPaths) throws RepositoryException {
+        policy = new RecordingPolicy(2, "a|b|child", "title", executor, maxPrefetchedPaths);
+        final Repository wrapped = new RepositoryWrapper<>(new DefaultObjectWrapper(), raw, policy);
+        session = (SessionWrapper<?>)wrapped.login(ADMIN_CREDENTIALS);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        session.logout();
+        executor.shutdown();
+    }
+
+    private String preloaded() throws Exception {
+        session.prefetchIdle().get(10, TimeUnit.SECONDS);
+        final String result = new TreeSet<>(policy.preloaded).toString();
+        policy.preloaded.clear();
+        return result;
+    }
+
+    @Test
+    public void preloadsAccordingToPolicy() throws Exception {
+        session.getNode("/content");
+        assertEquals("[/content, /content/a, /content/a/child, /content/b, /content/b/child]", preloaded());
+    }
+
+    @Test
+    public void accessedNodesArePreloaded() throws Exception {
+        session.getNode("/content/a/child/grandchild");
+        assertEquals("[/content/a/child/grandchild]", preloaded());
+    }
+
+    @Test
+    public void pathsArePreloadedOnce() throws Exception {
+        session.getNode("/content/a");
+        assertEquals("[/content/a, /content/a/child]", preloaded());
+        session.getNode("/content/a");
+        assertEquals("[]", preloaded());
+    }
+
+    @Test
+    public void existenceIsNotAnsweredFromPreloadedContent() throws Exception {
+        session.getNode("/content");
+        preloaded();
+
+        // Changes made by another Session are seen immediately
+        final Session other = raw.login(ADMIN_CREDENTIALS);
+        other.getNode("/content/a").addNode("added").setProperty("title", "new");
+        other.getNode("/content/b").remove();
+        other.save();
+        other.logout();
+
+        assertTrue(session.nodeExists("/content/a/added"));
+        assertTrue(session.propertyExists("/content/a/added/title"));
+        assertFalse(session.nodeExists("/content/b"));
+        assertTrue(session.getNode("/content/a").hasNodes());
+        assertFalse(session.getNode("/content/a/child/grandchild").hasNodes());
+    }
+
+    @Test
+    public void saveAndRefreshPreloadAgain() throws Exception {
+        session.getNode("/content/a");
+        preloaded();
+        session.getNode("/content/a").addNode("b");
+        session.save();
+        session.getNode("/content/a");
+        assertTrue(preloaded().contains("/content/a/b"), "Expecting saved changes to be preloaded");
+
+        session.refresh(false);
+        session.getNode("/content/a");
+        assertTrue(preloaded().contains("/content/a/child"), "Expecting content to be preloaded again after refresh");
+    }
+
+    @Test
+    public void prefetchedPathsAreBounded() throws Exception {
+        session.logout();
+        login(1);
+        session.getNode("/content/a/child/grandchild");
+        session.getNode("/content/b/child/grandchild");
+        preloaded();
+        session.getNode("/content/a/child/grandchild");
+        assertEquals("[/content/a/child/grandchild]", preloaded(), "Expecting forgotten path to be preloaded again");
+    }
+}
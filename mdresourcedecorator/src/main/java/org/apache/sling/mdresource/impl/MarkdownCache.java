@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.mdresource.impl;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.apache.sling.api.resource.ResourceMetadata;
+
+/**
+ * Size bounded cache of processed markdown, keyed by the resource path.
+ * An entry is only used as long as the modification time and the length
+ * of the markdown file are unchanged. In addition entries are invalidated
+ * on resource change events.
+ */
+public class MarkdownCache {
+
+    /**
+     * The processed markdown of a single file
+     */
+    public static final class Entry {
+
+        private final long lastModified;
+
+        private final long length;
+
+        /** The properties from the front matter */
+        public final Map<String, Object> properties;
+
+        /** The extracted title (optional) */
+        public final String title;
+
+        /** The rendered elements (pair of element name and html contents) */
+        public final List<Map.Entry<String, String>> elements;
+
+        public Entry(final ResourceMetadata metadata,
+                final Map<String, Object> properties,
+                final String title,
+                final List<Map.Entry<String, String>> elements) {
+            this.lastModified = metadata == null ? -1 : metadata.getModificationTime();
+            this.length = metadata == null ? -1 : metadata.getContentLength();
+            this.properties = properties;
+            this.title = title;
+            this.elements = elements;
+        }
+
+        boolean isCacheable() {
+            return this.lastModified > 0;
+        }
+
+        boolean isCurrent(final ResourceMetadata metadata) {
+            return metadata != null
+                    && metadata.getModificationTime() == this.lastModified
+                    && metadata.getContentLength() == this.length;
+        }
+    }
+
+    private final Map<String, Entry> entries;
+
+    /** The paths of all entries, sorted so that the descendants of a path are adjacent */
+    private final NavigableSet<String> paths = new TreeSet<>();
+
+    public MarkdownCache(final int maxEntries) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                if ( size() > maxEntries ) {
+                    paths.remove(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the processed markdown
+     * @param path The path of the markdown resource
+     * @param metadata The current metadata of the markdown resource
+     * @return The entry or {@code null} if there is none or the file changed
+     */
+    public Entry get(final String path, final ResourceMetadata metadata) {
+        final Entry entry;
+        synchronized ( this.entries ) {
+            entry = this.entries.get(path);
+        }
+        if ( entry != null && entry.isCurrent(metadata) ) {
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Add processed markdown. Entries for resources without a modification
+     * time are not cached, as changes could not be detected.
+     * @param path The path of the markdown resource
+     * @param entry The processed markdown
+     */
+    public void put(final String path, final Entry entry) {
+        if ( entry.isCacheable() ) {
+            synchronized ( this.entries ) {
+                this.entries.put(path, entry);
+                this.paths.add(path);
+            }
+        }
+    }
+
+    /**
+     * Invalidate all entries affected by a change of the given path. These are
+     * the entries for the path itself, its ancestors (e.g. a change of the
+     * jcr:content node of a file) and its descendants (e.g. a removed folder).
+     * Only the ancestors and the range of descendants are looked up, the other
+     * entries are not visited.
+     * @param path The changed path
+     */
+    public void invalidate(final String path) {
+        if ( "/".equals(path) ) {
+            this.clear();
+            return;
+        }
+        synchronized ( this.entries ) {
+            this.remove(path);
+            for(int pos = path.lastIndexOf('/'); pos > 0; pos = path.lastIndexOf('/', pos - 1)) {
+                this.remove(path.substring(0, pos));
+            }
+            this.remove("/");
+            // '0' is the character following '/'
+            final NavigableSet<String> descendants = this.paths.subSet(path.concat("/"), true, path.concat("0"), false);
+            for(final String descendant : descendants) {
+                this.entries.remove(descendant);
+            }
+            descendants.clear();
+        }
+    }
+
+    public void clear() {
+        synchronized ( this.entries ) {
+            this.entries.clear();
+            this.paths.clear();
+        }
+    }
+
+    private void remove(final String path) {
+        if ( this.entries.remove(path) != null ) {
+            this.paths.remove(path);
+        }
+    }
+}
@@ -19,7 +19,9 @@
 package org.apache.sling.mdresource.impl;
 
 import java.util.Arrays;
+import java.util.Dictionary;
 import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -27,13 +29,18 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceDecorator;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
 import org.apache.sling.api.resource.path.Path;
 import org.apache.sling.api.resource.path.PathSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
@@ -69,18 +76,27 @@ public class MarkdownResourceDecorator implements ResourceDecorator {
         @AttributeDefinition(name = "Title Property",
                 description = "Name of the property holding the title (optional)")
         String title_property() default "jcr:title";
+
+        @AttributeDefinition(name = "Cache Size",
+                description = "Maximum number of processed markdown files kept in memory. 0 disables the cache.")
+        int cache_size() default 1000;
     }
 
     public static final Logger LOGGER = LoggerFactory.getLogger(MarkdownResourceDecorator.class);
 
     private static final String RESOURCE_TYPE_FILE = "nt:file";
 
+    private final PathTrie trees;
     private final PathSet paths;
     private final Set<String> resourceTypes;
     private final ResourceConfiguration config = new ResourceConfiguration();
+    private final ServiceRegistration<ResourceChangeListener> listenerRegistration;
 
     @Activate
-    public MarkdownResourceDecorator(final Config cfg) {
+    public MarkdownResourceDecorator(final Config cfg, final BundleContext bundleContext) {
+        this.trees = new PathTrie(Arrays.stream(cfg.decoration_paths())
+                .map(MarkdownResourceDecorator::getTreeRoot)
+                .collect(Collectors.toList()));
         this.paths = PathSet.fromStringCollection(Arrays.stream(cfg.decoration_paths())
                 .map(path -> path.contains("*") ? Path.GLOB_PREFIX.concat(path) : path)
                 .collect(Collectors.toList()));
@@ -93,6 +109,52 @@ public class MarkdownResourceDecorator implements ResourceDecorator {
         this.config.resourceType = cfg.resource_type();
         this.config.elementsProperty = cleanInput(cfg.html_elements_property());
         this.config.titleProperty = cleanInput(cfg.title_property());
+        if ( cfg.cache_size() > 0 ) {
+            final MarkdownCache cache = new MarkdownCache(cfg.cache_size());
+            this.config.cache = cache;
+            // listen to the trees containing the decorated resources, changes of a
+            // file might be reported for a child resource like jcr:content
+            final Dictionary<String, Object> props = new Hashtable<>();
+            props.put(ResourceChangeListener.PATHS, Arrays.stream(cfg.decoration_paths())
+                    .map(MarkdownResourceDecorator::getTreeRoot)
+                    .distinct()
+                    .toArray(String[]::new));
+            props.put(ResourceChangeListener.CHANGES, new String[] {
+                    ResourceChange.ChangeType.ADDED.name(),
+                    ResourceChange.ChangeType.CHANGED.name(),
+                    ResourceChange.ChangeType.REMOVED.name()});
+            final ResourceChangeListener listener = changes -> {
+                for(final ResourceChange change : changes) {
+                    cache.invalidate(change.getPath());
+                }
+            };
+            this.listenerRegistration = bundleContext.registerService(ResourceChangeListener.class, listener, props);
+        } else {
+            this.listenerRegistration = null;
+        }
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        if ( this.listenerRegistration != null ) {
+            this.listenerRegistration.unregister();
+        }
+        if ( this.config.cache != null ) {
+            this.config.cache.clear();
+        }
+    }
+
+    /**
+     * Get the root of the tree covered by a decoration path, which is the path
+     * itself or the part of a pattern before the first wildcard.
+     */
+    static String getTreeRoot(final String path) {
+        final int wildcard = path.indexOf('*');
+        if ( wildcard == -1 ) {
+            return path;
+        }
+        final int slash = path.lastIndexOf('/', wildcard);
+        return slash <= 0 ? "/" : path.substring(0, slash);
     }
 
     private String cleanInput(final String value) {
@@ -104,8 +166,10 @@ public class MarkdownResourceDecorator implements ResourceDecorator {
 
     @Override
     public @Nullable Resource decorate(final @NotNull Resource resource) {
+        // quickly reject resources outside of the decorated trees, then
         // check resource type and path
-        if ( (this.resourceTypes == null || this.resourceTypes.contains(resource.getResourceType()))
+        if ( this.trees.contains(resource.getPath())
+             && (this.resourceTypes == null || this.resourceTypes.contains(resource.getResourceType()))
              && this.paths.matches( resource.getPath() ) != null ) {
             return new MarkdownResourceWrapper(resource, this.config);
         }
@@ -115,6 +179,6 @@ public class MarkdownResourceDecorator implements ResourceDecorator {
     @Override
     public @Nullable Resource decorate(final @NotNull Resource resource, final @NotNull HttpServletRequest request) {
         // This method is deprecated but just in case....
-        return this.decorate(null);
+        return this.decorate(resource);
     }
 }
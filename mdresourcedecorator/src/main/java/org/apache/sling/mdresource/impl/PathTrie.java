@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.mdresource.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Trie of path segments for quickly rejecting paths which are not
+ * contained in any of the configured trees. Checking a path does not
+ * allocate any objects and takes at most one step per path segment.
+ */
+class PathTrie {
+
+    private static final class Node {
+
+        private final String segment;
+
+        private Node[] children = new Node[0];
+
+        /** Set if the path of this node is one of the configured trees */
+        private boolean terminal;
+
+        Node(final String segment) {
+            this.segment = segment;
+        }
+
+        Node getOrAddChild(final String segment) {
+            for(final Node child : this.children) {
+                if ( child.segment.equals(segment) ) {
+                    return child;
+                }
+            }
+            final Node child = new Node(segment);
+            this.children = Arrays.copyOf(this.children, this.children.length + 1);
+            this.children[this.children.length - 1] = child;
+            return child;
+        }
+
+        Node getChild(final String path, final int start, final int end) {
+            final int length = end - start;
+            for(final Node child : this.children) {
+                if ( child.segment.length() == length && path.regionMatches(start, child.segment, 0, length) ) {
+                    return child;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Node root = new Node("");
+
+    /**
+     * Create a new trie
+     * @param paths The roots of the trees, the root path "/" contains every path
+     */
+    PathTrie(final Collection<String> paths) {
+        for(final String path : paths) {
+            Node node = this.root;
+            for(final String segment : path.split("/")) {
+                if ( !segment.isEmpty() ) {
+                    node = node.getOrAddChild(segment);
+                }
+            }
+            node.terminal = true;
+        }
+    }
+
+    /**
+     * Check whether the path is one of the trees or contained in one of them
+     * @param path The absolute path
+     * @return {@code true} if the path is contained in one of the trees
+     */
+    boolean contains(final String path) {
+        final int length = path.length();
+        Node node = this.root;
+        int start = 0;
+        while ( !node.terminal ) {
+            while ( start < length && path.charAt(start) == '/' ) {
+                start++;
+            }
+            if ( start == length ) {
+                return false;
+            }
+            int end = path.indexOf('/', start);
+            if ( end == -1 ) {
+                end = length;
+            }
+            node = node.getChild(path, start, end);
+            if ( node == null ) {
+                return false;
+            }
+            start = end;
+        }
+        return true;
+    }
+}
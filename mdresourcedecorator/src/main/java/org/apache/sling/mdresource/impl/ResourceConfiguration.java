@@ -28,4 +28,7 @@ public class ResourceConfiguration {
 
     /** The property holding the first title (optional) */
     public String titleProperty;
+
+    /** The cache for processed markdown (optional) */
+    public MarkdownCache cache;
 }
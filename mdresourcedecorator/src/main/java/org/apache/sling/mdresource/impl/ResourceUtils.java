@@ -25,10 +25,12 @@ import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.api.wrappers.ValueMapDecorator;
@@ -49,6 +51,27 @@ public class ResourceUtils {
         props.put(ResourceResolver.PROPERTY_RESOURCE_TYPE, rsrc.getResourceType());
         props.put(PROPERTY_RESOURCE_SUPER_TYPE, rsrc.getResourceSuperType());
 
+        final MarkdownCache.Entry processed = getProcessedMarkdown(config, rsrc);
+        if ( processed != null ) {
+            props.putAll(processed.properties);
+            if ( processed.title != null ) {
+                props.put(config.titleProperty, processed.title);
+            }
+            props.put(config.elementsProperty, processed.elements);
+        }
+
+        return ValueMapUtil.merge(new ValueMapDecorator(props), origProps);
+    }
+
+    private static MarkdownCache.Entry getProcessedMarkdown(final ResourceConfiguration config, final Resource rsrc) {
+        final ResourceMetadata metadata = rsrc.getResourceMetadata();
+        if ( config.cache != null ) {
+            final MarkdownCache.Entry cached = config.cache.get(rsrc.getPath(), metadata);
+            if ( cached != null ) {
+                return cached;
+            }
+        }
+
         final ProcessingInstructions inst = new ProcessingInstructions();
         inst.extractTitle = config.titleProperty != null;
         inst.handleYamlFrontmatter = true;
@@ -56,10 +79,6 @@ public class ResourceUtils {
         try ( final Reader r = new InputStreamReader(rsrc.adaptTo(InputStream.class), StandardCharsets.UTF_8)) {
 
             final ProcessingResult result = MarkdownProcessor.INSTANCE.process(r, rsrc.getParent(), inst);
-            props.putAll(result.properties);
-            if ( result.title != null ) {
-                props.put(config.titleProperty, result.title);
-            }
             final HtmlRenderer.Builder builder = HtmlRenderer.builder();
             builder.linkResolverFactory(new CustomLinkResolverFactory());
             final HtmlRenderer htmlRenderer = builder.build();
@@ -72,14 +91,21 @@ public class ResourceUtils {
             }
             for(final Node node : nodes) {
                 result.document.appendChild(node);
-                elements.add(new AbstractMap.SimpleEntry<>(node.getNodeName(), htmlRenderer.render(result.document)));
+                elements.add(new AbstractMap.SimpleImmutableEntry<>(node.getNodeName(), htmlRenderer.render(result.document)));
                 node.unlink();
             }
-            props.put(config.elementsProperty, elements);
+            // the entry is shared between value maps, therefore it must not be modified
+            final MarkdownCache.Entry processed = new MarkdownCache.Entry(metadata,
+                    Collections.unmodifiableMap(result.properties),
+                    result.title,
+                    Collections.unmodifiableList(elements));
+            if ( config.cache != null ) {
+                config.cache.put(rsrc.getPath(), processed);
+            }
+            return processed;
         } catch (final IOException e) {
             MarkdownResourceDecorator.LOGGER.error("Unable to read markdown : " + e.getMessage(), e);
         }
-
-        return ValueMapUtil.merge(new ValueMapDecorator(props), origProps);
+        return null;
     }
 }
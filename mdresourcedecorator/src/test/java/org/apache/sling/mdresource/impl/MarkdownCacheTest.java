@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.mdresource.impl;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.junit.Test;
+
+public class MarkdownCacheTest {
+
+    private static final String[] PATHS = {"/content", "/content/docs", "/content/docs/a.md",
+            "/content/docs/a.md/jcr:content", "/content/docs/b.md", "/content/docs-old/a.md", "/content/docs.md"};
+
+    private final ResourceMetadata metadata = new ResourceMetadata();
+
+    private MarkdownCache fill(final int maxEntries) {
+        this.metadata.setModificationTime(1000);
+        this.metadata.setContentLength(10);
+        final MarkdownCache cache = new MarkdownCache(maxEntries);
+        for(final String path : PATHS) {
+            cache.put(path, new MarkdownCache.Entry(this.metadata, Collections.emptyMap(), null, Collections.emptyList()));
+        }
+        return cache;
+    }
+
+    @Test
+    public void testInvalidate() {
+        final MarkdownCache cache = fill(100);
+        cache.invalidate("/content/docs/a.md");
+
+        assertNull(cache.get("/content", this.metadata));
+        assertNull(cache.get("/content/docs", this.metadata));
+        assertNull(cache.get("/content/docs/a.md", this.metadata));
+        assertNull(cache.get("/content/docs/a.md/jcr:content", this.metadata));
+        assertNotNull(cache.get("/content/docs/b.md", this.metadata));
+        assertNotNull(cache.get("/content/docs-old/a.md", this.metadata));
+        assertNotNull(cache.get("/content/docs.md", this.metadata));
+    }
+
+    @Test
+    public void testInvalidateFolder() {
+        final MarkdownCache cache = fill(100);
+        cache.invalidate("/content/docs");
+
+        assertNull(cache.get("/content/docs/a.md", this.metadata));
+        assertNull(cache.get("/content/docs/a.md/jcr:content", this.metadata));
+        assertNull(cache.get("/content/docs/b.md", this.metadata));
+        assertNotNull(cache.get("/content/docs-old/a.md", this.metadata));
+        assertNotNull(cache.get("/content/docs.md", this.metadata));
+    }
+
+    @Test
+    public void testInvalidateRoot() {
+        final MarkdownCache cache = fill(100);
+        cache.invalidate("/");
+
+        for(final String path : PATHS) {
+            assertNull(cache.get(path, this.metadata));
+        }
+    }
+
+    @Test
+    public void testEviction() {
+        final MarkdownCache cache = fill(2);
+
+        assertNull(cache.get("/content", this.metadata));
+        assertNotNull(cache.get("/content/docs-old/a.md", this.metadata));
+        assertNotNull(cache.get("/content/docs.md", this.metadata));
+
+        // evicted paths must not be invalidated again
+        cache.put("/content", new MarkdownCache.Entry(this.metadata, Collections.emptyMap(), null, Collections.emptyList()));
+        cache.invalidate("/content/docs");
+        assertNull(cache.get("/content", this.metadata));
+        assertNotNull(cache.get("/content/docs.md", this.metadata));
+    }
+
+    @Test
+    public void testModified() {
+        final MarkdownCache cache = fill(100);
+        this.metadata.setContentLength(11);
+
+        assertNull(cache.get("/content/docs/b.md", this.metadata));
+    }
+}
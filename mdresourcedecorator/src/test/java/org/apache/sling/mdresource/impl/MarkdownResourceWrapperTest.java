@@ -21,11 +21,13 @@ package org.apache.sling.mdresource.impl;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.InputStream;
 import java.util.Collections;
 
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.api.wrappers.ValueMapDecorator;
@@ -119,4 +121,45 @@ public class MarkdownResourceWrapperTest {
         assertEquals("valueMap[jcr:title]", "First",
                 map.get("jcr:title", String.class));
     }
+
+    @Test
+    public void testCachedMarkdown() {
+        final ResourceMetadata metadata = new ResourceMetadata();
+        metadata.setModificationTime(1000L);
+        metadata.setContentLength(100L);
+        final Resource orig = Mockito.mock(Resource.class);
+        Mockito.when(orig.getPath()).thenReturn("/content/index.md");
+        Mockito.when(orig.getResourceMetadata()).thenReturn(metadata);
+        Mockito.when(orig.adaptTo(InputStream.class))
+            .thenAnswer(invocation -> this.getClass().getResourceAsStream("/md-test/index.md"));
+        Mockito.when(orig.getResourceType()).thenReturn("super/type");
+        Mockito.when(orig.getValueMap()).thenReturn(new ValueMapDecorator(Collections.emptyMap()));
+
+        final ResourceConfiguration cfg = newDefaultConfiguration();
+        cfg.cache = new MarkdownCache(10);
+
+        final ValueMap first = new MarkdownResourceWrapper(orig, cfg).getValueMap();
+        final ValueMap second = new MarkdownResourceWrapper(orig, cfg).getValueMap();
+        Mockito.verify(orig, Mockito.times(1)).adaptTo(InputStream.class);
+        assertEquals("Simple markdown file", second.get("jcr:title", String.class));
+        assertSame(first.get("html-elements"), second.get("html-elements"));
+
+        // a modified file is processed again
+        metadata.setModificationTime(2000L);
+        new MarkdownResourceWrapper(orig, cfg).getValueMap();
+        Mockito.verify(orig, Mockito.times(2)).adaptTo(InputStream.class);
+
+        // as is a file changed below
+        cfg.cache.invalidate("/content/index.md/jcr:content");
+        new MarkdownResourceWrapper(orig, cfg).getValueMap();
+        new MarkdownResourceWrapper(orig, cfg).getValueMap();
+        Mockito.verify(orig, Mockito.times(3)).adaptTo(InputStream.class);
+    }
+
+    @Test
+    public void testTreeRoot() {
+        assertEquals("/content/files", MarkdownResourceDecorator.getTreeRoot("/content/files/**.md"));
+        assertEquals("/content/files", MarkdownResourceDecorator.getTreeRoot("/content/files"));
+        assertEquals("/", MarkdownResourceDecorator.getTreeRoot("/**.md"));
+    }
 }
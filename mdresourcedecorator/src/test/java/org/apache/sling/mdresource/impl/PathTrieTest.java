@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.mdresource.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class PathTrieTest {
+
+    @Test
+    public void testContains() {
+        final PathTrie trie = new PathTrie(Arrays.asList("/content/files", "/content/docs/", "/apps/md"));
+
+        assertTrue(trie.contains("/content/files"));
+        assertTrue(trie.contains("/content/files/a.md"));
+        assertTrue(trie.contains("/content/files/sub/a.md/jcr:content"));
+        assertTrue(trie.contains("/content/docs/index.md"));
+        assertTrue(trie.contains("/apps/md/x"));
+
+        assertFalse(trie.contains("/"));
+        assertFalse(trie.contains("/content"));
+        assertFalse(trie.contains("/content/filesystem/a.md"));
+        assertFalse(trie.contains("/content/file"));
+        assertFalse(trie.contains("/libs/md/x"));
+        assertFalse(trie.contains("/apps"));
+    }
+
+    @Test
+    public void testRoot() {
+        final PathTrie trie = new PathTrie(Arrays.asList("/content/files", "/"));
+
+        assertTrue(trie.contains("/"));
+        assertTrue(trie.contains("/libs/md/x"));
+    }
+
+    @Test
+    public void testEmpty() {
+        final PathTrie trie = new PathTrie(Collections.emptyList());
+
+        assertFalse(trie.contains("/"));
+        assertFalse(trie.contains("/content/files/a.md"));
+    }
+}
@@ -0,0 +1,495 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.mdresource.impl;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory index of the markdown files below a directory
+ * 
+ * <p>The index is built when started and afterwards kept current by a
+ * {@link WatchService}. Lookups are served from an immutable snapshot
+ * without any filesystem access, each change replaces the snapshot.</p>
+ * 
+ * <p>A resource path is backed by the <em>index.md</em> file of the
+ * directory with the same path, or else by the file with the same path
+ * and the <em>.md</em> extension.</p>
+ * 
+ * <p>Symbolic links are followed, a link to one of its own parent
+ * directories is not indexed.</p>
+ */
+class MarkdownIndex {
+
+    static final String MARKDOWN_EXTENSION = ".md";
+    static final String INDEX_FILE_NAME = "index" + MARKDOWN_EXTENSION;
+
+    private static final Logger LOG = LoggerFactory.getLogger(MarkdownIndex.class);
+
+    private static final Set<FileVisitOption> FOLLOW_LINKS = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
+
+    /**
+     * A markdown file and the metadata recorded when it was indexed
+     */
+    static final class FileEntry {
+
+        private final File file;
+        private final long lastModified;
+
+        FileEntry(File file, long lastModified) {
+            this.file = file;
+            this.lastModified = lastModified;
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    /**
+     * A child resource, as listed by {@link MarkdownIndex#getChildren(String)}
+     */
+    static final class Child {
+
+        private final String path;
+        private final FileEntry entry;
+
+        Child(String path, FileEntry entry) {
+            this.path = path;
+            this.entry = entry;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        FileEntry getEntry() {
+            return entry;
+        }
+    }
+
+    /**
+     * The markdown files and sub directories of a single directory
+     */
+    private static final class Directory {
+
+        private final FileEntry index;
+        /** markdown files other than index.md, keyed by the name without extension */
+        private final Map<String, FileEntry> files;
+        private final Set<String> subdirectories;
+
+        Directory(FileEntry index, Map<String, FileEntry> files, Set<String> subdirectories) {
+            this.index = index;
+            this.files = files;
+            this.subdirectories = subdirectories;
+        }
+    }
+
+    private static final class Snapshot {
+
+        /** directories keyed by resource path */
+        private final Map<String, Directory> directories;
+        /** the file backing the root if there is no index.md in the root directory, may be null */
+        private final FileEntry rootFile;
+
+        Snapshot(Map<String, Directory> directories, FileEntry rootFile) {
+            this.directories = directories;
+            this.rootFile = rootFile;
+        }
+    }
+
+    private final Path rootDirectory;
+    private final String rootPath;
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.<String, Directory> emptyMap(), null);
+
+    // only accessed while starting and afterwards by the watcher thread, a
+    // directory reachable through several links has one key for all its paths
+    private final Map<WatchKey, Set<String>> watchedDirectories = new HashMap<>();
+    private WatchKey parentKey;
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * @param rootDirectory the directory backing the root resource
+     * @param rootPath the resource path of the root resource
+     */
+    MarkdownIndex(Path rootDirectory, String rootPath) {
+        this.rootDirectory = rootDirectory.toAbsolutePath().normalize();
+        this.rootPath = rootPath.length() > 1 && rootPath.endsWith("/")
+                ? rootPath.substring(0, rootPath.length() - 1) : rootPath;
+    }
+
+    void start() {
+        try {
+            watchService = rootDirectory.getFileSystem().newWatchService();
+        } catch (IOException e) {
+            LOG.warn("Unable to watch {}, changes will not be picked up", rootDirectory, e);
+        }
+        rebuild();
+        if ( watchService != null ) {
+            watcher = new Thread(this::processEvents, "Markdown index watcher for " + rootDirectory);
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+
+    void stop() {
+        if ( watchService != null ) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOG.warn("Unable to close watch service for {}", rootDirectory, e);
+            }
+        }
+        if ( watcher != null ) {
+            try {
+                watcher.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @param path the resource path
+     * @return the file backing the resource, or <code>null</code>
+     */
+    FileEntry getFile(String path) {
+        Snapshot current = snapshot;
+        Directory directory = current.directories.get(path);
+        if ( directory != null && directory.index != null ) {
+            return directory.index;
+        }
+        if ( path.equals(rootPath) ) {
+            return current.rootFile;
+        }
+        int slash = path.lastIndexOf('/');
+        if ( slash == -1 ) {
+            return null;
+        }
+        Directory parent = current.directories.get(slash == 0 ? "/" : path.substring(0, slash));
+        if ( parent == null ) {
+            return null;
+        }
+        return parent.files.get(path.substring(slash + 1));
+    }
+
+    /**
+     * Lists the children of a resource. Sub directories are only listed if they
+     * contain an index.md file, markdown files are not listed if they are shadowed
+     * by such a directory.
+     * 
+     * @param path the resource path
+     * @return the children ordered by path, or <code>null</code> if the resource
+     *         is not backed by a directory
+     */
+    List<Child> getChildren(String path) {
+        Snapshot current = snapshot;
+        Directory directory = current.directories.get(path);
+        if ( directory == null ) {
+            return null;
+        }
+        TreeMap<String, Child> children = new TreeMap<>();
+        for ( String name : directory.subdirectories ) {
+            String childPath = childPath(path, name);
+            Directory subdirectory = current.directories.get(childPath);
+            if ( subdirectory != null && subdirectory.index != null ) {
+                children.put(childPath, new Child(childPath, subdirectory.index));
+            }
+        }
+        for ( Map.Entry<String, FileEntry> file : directory.files.entrySet() ) {
+            String childPath = childPath(path, file.getKey());
+            if ( !children.containsKey(childPath) ) {
+                children.put(childPath, new Child(childPath, file.getValue()));
+            }
+        }
+        return new ArrayList<>(children.values());
+    }
+
+    private void rebuild() {
+        Map<String, Directory> directories = new HashMap<>();
+        watchParent();
+        if ( Files.isDirectory(rootDirectory) ) {
+            addTree(rootDirectory, rootPath, directories);
+        }
+        snapshot = new Snapshot(Collections.unmodifiableMap(directories), scanRootFile());
+    }
+
+    private void processEvents() {
+        try {
+            while ( true ) {
+                WatchKey key = watchService.take();
+                // drain all pending keys to apply related changes at once
+                Set<String> changed = new LinkedHashSet<>();
+                Set<String> replaced = new LinkedHashSet<>();
+                boolean rebuild = false;
+                while ( key != null ) {
+                    Set<String> paths = watchedDirectories.getOrDefault(key, Collections.<String> emptySet());
+                    for ( WatchEvent<?> event : key.pollEvents() ) {
+                        if ( event.kind() == OVERFLOW ) {
+                            rebuild = true;
+                        } else if ( key == parentKey ) {
+                            // only the root directory and file are relevant
+                            String name = event.context().toString();
+                            String rootName = rootDirectory.getFileName().toString();
+                            rebuild |= name.equals(rootName) || name.equals(rootName + MARKDOWN_EXTENSION);
+                        } else {
+                            for ( String path : paths ) {
+                                changed.add(path);
+                                if ( event.kind() != ENTRY_MODIFY ) {
+                                    replaced.add(childPath(path, event.context().toString()));
+                                }
+                            }
+                        }
+                    }
+                    if ( !key.reset() ) {
+                        watchedDirectories.remove(key);
+                    }
+                    key = watchService.poll();
+                }
+                try {
+                    if ( rebuild ) {
+                        rebuild();
+                    } else if ( !changed.isEmpty() ) {
+                        update(changed, replaced);
+                    }
+                } catch (RuntimeException e) {
+                    // keep watching, a complete rebuild recovers from a partial update
+                    LOG.warn("Unable to update the index of {}, rebuilding it", rootDirectory, e);
+                    try {
+                        rebuild();
+                    } catch (RuntimeException re) {
+                        LOG.error("Unable to rebuild the index of {}", rootDirectory, re);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    /**
+     * @param changedPaths directories to scan again
+     * @param replacedPaths entries which have been created or deleted, if these
+     *            are directories their trees are indexed again
+     */
+    private void update(Set<String> changedPaths, Set<String> replacedPaths) {
+        Map<String, Directory> directories = new HashMap<>(snapshot.directories);
+        for ( String path : changedPaths ) {
+            if ( !directories.containsKey(path) ) {
+                // already removed together with its parent
+                continue;
+            }
+            Directory current = scan(toFilesystemPath(path), path);
+            if ( current == null ) {
+                removeTree(path, directories);
+            } else {
+                directories.put(path, current);
+            }
+        }
+        for ( String path : replacedPaths ) {
+            removeTree(path, directories);
+            Path directory = toFilesystemPath(path);
+            if ( Files.isDirectory(directory) ) {
+                addTree(directory, path, directories);
+            }
+        }
+        snapshot = new Snapshot(Collections.unmodifiableMap(directories), snapshot.rootFile);
+    }
+
+    private void addTree(Path directory, String path, final Map<String, Directory> directories) {
+        try {
+            Files.walkFileTree(directory, FOLLOW_LINKS, Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    String dirPath = path;
+                    for ( Path segment : directory.relativize(dir) ) {
+                        if ( !segment.toString().isEmpty() ) {
+                            dirPath = childPath(dirPath, segment.toString());
+                        }
+                    }
+                    // register first, so that no change after the scan is lost
+                    watch(dir, dirPath);
+                    Directory scanned = scan(dir, dirPath);
+                    if ( scanned == null ) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    directories.put(dirPath, scanned);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    if ( e instanceof FileSystemLoopException ) {
+                        LOG.debug("Not indexing {} which links to one of its parents", file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOG.warn("Unable to index {}", directory, e);
+        }
+    }
+
+    private void removeTree(String path, Map<String, Directory> directories) {
+        String prefix = childPath(path, "");
+        Iterator<String> paths = directories.keySet().iterator();
+        while ( paths.hasNext() ) {
+            String candidate = paths.next();
+            if ( candidate.equals(path) || candidate.startsWith(prefix) ) {
+                paths.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the scanned directory or <code>null</code> if it does not exist anymore
+     */
+    private Directory scan(Path directory, String path) {
+        FileEntry index = null;
+        Map<String, FileEntry> files = new HashMap<>();
+        Set<String> subdirectories = new TreeSet<>();
+        try ( DirectoryStream<Path> entries = Files.newDirectoryStream(directory) ) {
+            for ( Path entry : entries ) {
+                String name = entry.getFileName().toString();
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    // removed in the meantime
+                    continue;
+                }
+                if ( attributes.isDirectory() ) {
+                    subdirectories.add(name);
+                } else if ( attributes.isRegularFile() && name.endsWith(MARKDOWN_EXTENSION) && Files.isReadable(entry) ) {
+                    FileEntry file = new FileEntry(entry.toFile(), attributes.lastModifiedTime().toMillis());
+                    if ( name.equals(INDEX_FILE_NAME) ) {
+                        index = file;
+                    } else {
+                        files.put(name.substring(0, name.length() - MARKDOWN_EXTENSION.length()), file);
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOG.warn("Unable to index {} for {}", directory, path, e);
+            return null;
+        }
+        return new Directory(index, Collections.unmodifiableMap(files), Collections.unmodifiableSet(subdirectories));
+    }
+
+    private FileEntry scanRootFile() {
+        Path parent = rootDirectory.getParent();
+        if ( parent == null ) {
+            return null;
+        }
+        Path file = parent.resolve(rootDirectory.getFileName() + MARKDOWN_EXTENSION);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if ( attributes.isRegularFile() && Files.isReadable(file) ) {
+                return new FileEntry(file.toFile(), attributes.lastModifiedTime().toMillis());
+            }
+        } catch (IOException e) {
+            // not present
+        }
+        return null;
+    }
+
+    private void watchParent() {
+        Path parent = rootDirectory.getParent();
+        if ( watchService != null && parent != null && Files.isDirectory(parent) ) {
+            try {
+                // not added to the watched directories, as the parent itself is not indexed
+                parentKey = parent.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            } catch (IOException e) {
+                LOG.warn("Unable to watch {}", parent, e);
+            }
+        }
+    }
+
+    private void watch(Path directory, String path) {
+        if ( watchService == null ) {
+            return;
+        }
+        try {
+            WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            watchedDirectories.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(path);
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        } catch (IOException e) {
+            LOG.warn("Unable to watch {}", directory, e);
+        }
+    }
+
+    private Path toFilesystemPath(String path) {
+        Path directory = rootDirectory;
+        if ( path.length() > rootPath.length() ) {
+            for ( String segment : path.substring(rootPath.length()).split("/") ) {
+                if ( !segment.isEmpty() ) {
+                    directory = directory.resolve(segment);
+                }
+            }
+        }
+        return directory;
+    }
+
+    private static String childPath(String parent, String name) {
+        return parent.endsWith("/") ? parent + name : parent + "/" + name;
+    }
+}
@@ -47,6 +47,7 @@ public class MarkdownResource extends AbstractResource {
     private final ResourceResolver resolver;
     private final String path;
     private final File backingFile;
+    private final long lastModified;
     private ValueMap valueMap;
     private ResourceMetadata metadata;
     private final List<SpecialHandler> handlers = new ArrayList<>();
@@ -56,9 +57,17 @@ public class MarkdownResource extends AbstractResource {
     }
 
     public MarkdownResource(ResourceResolver resourceResolver, String path, File backingFile) {
+        this(resourceResolver, path, backingFile, -1);
+    }
+
+    /**
+     * @param lastModified the modification time of the backing file if already known, or -1
+     */
+    public MarkdownResource(ResourceResolver resourceResolver, String path, File backingFile, long lastModified) {
         this.resolver = resourceResolver;
         this.path = path;
         this.backingFile = backingFile;
+        this.lastModified = lastModified;
     }
 
     @Override
@@ -85,6 +94,13 @@ public class MarkdownResource extends AbstractResource {
     }
 
     private ResourceMetadata getResourceMetadata0() {
+        if ( lastModified >= 0 ) {
+            // provided by the index, no need to access the file
+            ResourceMetadata metadata = new ResourceMetadata();
+            metadata.setModificationTime(lastModified);
+            metadata.setResolutionPath(path);
+            return metadata;
+        }
         if ( !backingFile.exists() || !backingFile.canRead() ) {
             return null;
         }
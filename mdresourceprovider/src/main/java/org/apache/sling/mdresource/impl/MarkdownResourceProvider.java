@@ -18,13 +18,10 @@
  */
 package org.apache.sling.mdresource.impl;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.stream.Collectors;
+import java.util.List;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.spi.resource.provider.ResolveContext;
@@ -35,8 +32,6 @@ import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * A <tt>ResourceProvider</tt> based on Markdown files
@@ -50,6 +45,9 @@ import org.slf4j.LoggerFactory;
  * </ul>
  * 
  * <p>In case of a conflict, the file named <em>index.md</em> takes precedence</p>
+ * 
+ * <p>The files are indexed on activation and the index is kept current by watching
+ * the filesystem, so that resolving and listing resources does not access the filesystem.</p>
  *
  */
 @Component(
@@ -75,92 +73,51 @@ public class MarkdownResourceProvider extends ResourceProvider<Object> {
         String webconsole_configurationFactory_nameHint() default "{" + ResourceProvider.PROPERTY_ROOT + "}";
     }
 
-    private static final String MARKDOWN_EXTENSION = ".md";
-	private static final String INDEX_FILE_NAME = "index" + MARKDOWN_EXTENSION;
-
     private String fsPath;
     private String repoPath;
+    private MarkdownIndex index;
     
     protected void activate(Config cfg) {
         
         fsPath = cfg.provider_file();
         repoPath = cfg.provider_root();
+        index = new MarkdownIndex(Paths.get(fsPath, repoPath), repoPath);
+        index.start();
+    }
+
+    protected void deactivate() {
+        if ( index != null ) {
+            index.stop();
+        }
     }
 
     @Override
     public Resource getResource(ResolveContext<Object> ctx, String path, ResourceContext resourceContext,
             Resource parent) {
         
-        // try index.md file first
-        Path filePath = Paths.get(fsPath, path, INDEX_FILE_NAME);
-        File backingFile = filePath.toFile();
-        if ( !backingFile.canRead() ) {
-            // try direct file .md next
-            filePath = Paths.get(fsPath, path + MARKDOWN_EXTENSION);
-            backingFile = filePath.toFile();
-            if ( !backingFile.canRead() )
-				return null;
-        }
+        // index.md file first, direct .md file next
+        MarkdownIndex.FileEntry entry = index.getFile(path);
+        if ( entry == null )
+            return null;
         
-        return new MarkdownResource(ctx.getResourceResolver(), path, backingFile);
+        return asResource(ctx, path, entry);
     }
 
     @Override
     public Iterator<Resource> listChildren(ResolveContext<Object> ctx, Resource parent) {
         
-        Path root = Paths.get(fsPath, parent.getPath());
-        
-        try {
-            return Files.list(root)
-                .map( p -> asResource(p, Paths.get(parent.getPath()), ctx))
-                .filter( r -> r != null )
-                .collect(Collectors.toList())
-                .iterator();
-        } catch (IOException e) {
-            // TODO better place for exception?
-            throw new RuntimeException(e);
-        }
-    }
-
-    private Resource asResource(Path path, Path parent, ResolveContext<Object> ctx) {
-        File backingFile = path.toFile();
-
-        if ( backingFile.isDirectory() ) {
-            backingFile = new File(backingFile, INDEX_FILE_NAME);
-            if ( backingFile.canRead() ) {
-                return asResource0(path, parent, ctx, backingFile);
-            }
-        }
-        
-        if ( isRegularMarkdownFile(backingFile) ) {
-        	if ( isShadowed(backingFile) )
-        		return null;
+        List<MarkdownIndex.Child> children = index.getChildren(parent.getPath());
+        if ( children == null )
+            return null;
 
-        	return asResource0(path, parent, ctx, backingFile);
+        List<Resource> resources = new ArrayList<>(children.size());
+        for ( MarkdownIndex.Child child : children ) {
+            resources.add(asResource(ctx, child.getPath(), child.getEntry()));
         }
-        
-        return null;
+        return resources.iterator();
     }
 
-    private Resource asResource0(Path path, Path parent, ResolveContext<Object> ctx, File backingFile) {
-        Path fsRelativePath = Paths.get(fsPath).relativize(path);
-        
-        return new MarkdownResource(ctx.getResourceResolver(), "/" + fsRelativePath.toString().replaceAll("\\.md$", ""), backingFile);
+    private Resource asResource(ResolveContext<Object> ctx, String path, MarkdownIndex.FileEntry entry) {
+        return new MarkdownResource(ctx.getResourceResolver(), path, entry.getFile(), entry.getLastModified());
     }
-
-	private boolean isRegularMarkdownFile(File backingFile) {
-		return backingFile.isFile() && backingFile.canRead() 
-				&& backingFile.getName().endsWith(MARKDOWN_EXTENSION) 
-				&& !backingFile.getName().equals(INDEX_FILE_NAME);
-	}
-
-	private boolean isShadowed(File backingFile) {
-		
-		File potentialDir = new File(backingFile.getParentFile(), backingFile.getName().replaceAll("\\.md$", ""));
-		if ( !potentialDir.canRead() )
-			return false;
-		
-		return new File(potentialDir, INDEX_FILE_NAME).canRead();
-	}
-
 }
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.mdresource.impl;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MarkdownIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private MarkdownIndex index;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("docs").toPath();
+        write(root.resolve("index.md"));
+        write(root.resolve("a.md"));
+        write(root.resolve("b.md"));
+        write(root.resolve("b").resolve("index.md"));
+        write(root.resolve("c").resolve("d.md"));
+        write(root.resolve("e.txt"));
+
+        index = new MarkdownIndex(root, "/docs");
+        index.start();
+    }
+
+    @After
+    public void tearDown() {
+        index.stop();
+    }
+
+    @Test
+    public void getFile() {
+        assertThat("root", file("/docs"), equalTo(root.resolve("index.md").toFile()));
+        assertThat("file", file("/docs/a"), equalTo(root.resolve("a.md").toFile()));
+        assertThat("shadowed file", file("/docs/b"), equalTo(root.resolve("b").resolve("index.md").toFile()));
+        assertThat("folder without index", file("/docs/c"), nullValue());
+        assertThat("file in folder without index", file("/docs/c/d"), equalTo(root.resolve("c").resolve("d.md").toFile()));
+        assertThat("other file", file("/docs/e"), nullValue());
+        assertThat("missing file", file("/docs/x/y"), nullValue());
+        assertThat("last modified", index.getFile("/docs/a").getLastModified(),
+                equalTo(root.resolve("a.md").toFile().lastModified()));
+    }
+
+    @Test
+    public void getChildren() {
+        assertThat(children("/docs"), contains("/docs/a", "/docs/b"));
+        assertThat(children("/docs/c"), contains("/docs/c/d"));
+        assertThat(index.getChildren("/docs/a"), nullValue());
+    }
+
+    @Test
+    public void changesArePickedUp() throws Exception {
+        write(root.resolve("f.md"));
+        await(() -> index.getFile("/docs/f") != null);
+
+        write(root.resolve("g").resolve("h").resolve("index.md"));
+        await(() -> index.getFile("/docs/g/h") != null);
+
+        Files.delete(root.resolve("b").resolve("index.md"));
+        await(() -> root.resolve("b.md").toFile().equals(file("/docs/b")));
+        assertThat(children("/docs"), contains("/docs/a", "/docs/b", "/docs/f"));
+
+        Files.delete(root.resolve("c").resolve("d.md"));
+        Files.delete(root.resolve("c"));
+        await(() -> index.getChildren("/docs/c") == null);
+        assertThat(index.getFile("/docs/c/d"), nullValue());
+        assertThat(index.getFile("/docs/f"), notNullValue());
+    }
+
+    @Test
+    public void symbolicLinksAreFollowed() throws Exception {
+        Path linked = folder.newFolder("linked").toPath();
+        Path target = folder.newFolder("target").toPath();
+        write(target.resolve("index.md"));
+        write(target.resolve("sub").resolve("x.md"));
+        try {
+            Files.createSymbolicLink(linked.resolve("link"), target);
+            Files.createSymbolicLink(target.resolve("loop"), target);
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeNoException(e);
+        }
+
+        MarkdownIndex linkedIndex = new MarkdownIndex(linked, "/linked");
+        linkedIndex.start();
+        try {
+            assertThat(linkedIndex.getFile("/linked/link").getFile(),
+                    equalTo(linked.resolve("link").resolve("index.md").toFile()));
+            assertThat(linkedIndex.getFile("/linked/link/sub/x").getFile(),
+                    equalTo(linked.resolve("link").resolve("sub").resolve("x.md").toFile()));
+            assertThat("loop", linkedIndex.getChildren("/linked/link/loop"), nullValue());
+            assertThat(linkedIndex.getChildren("/linked/link").size(), equalTo(0));
+        } finally {
+            linkedIndex.stop();
+        }
+    }
+
+    @Test
+    public void changesInLinkedDirectoriesArePickedUpForAllLinks() throws Exception {
+        Path linked = folder.newFolder("linked").toPath();
+        Path target = folder.newFolder("target").toPath();
+        write(target.resolve("index.md"));
+        try {
+            Files.createSymbolicLink(linked.resolve("first"), target);
+            Files.createSymbolicLink(linked.resolve("second"), target);
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeNoException(e);
+        }
+
+        MarkdownIndex linkedIndex = new MarkdownIndex(linked, "/linked");
+        linkedIndex.start();
+        try {
+            write(target.resolve("new.md"));
+            await(() -> linkedIndex.getFile("/linked/first/new") != null
+                    && linkedIndex.getFile("/linked/second/new") != null);
+        } finally {
+            linkedIndex.stop();
+        }
+    }
+
+    private File file(String path) {
+        MarkdownIndex.FileEntry entry = index.getFile(path);
+        return entry == null ? null : entry.getFile();
+    }
+
+    private List<String> children(String path) {
+        return index.getChildren(path).stream()
+                .map(MarkdownIndex.Child::getPath)
+                .collect(Collectors.toList());
+    }
+
+    private static void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, "# Title".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 30000;
+        while ( !condition.getAsBoolean() && System.currentTimeMillis() < end ) {
+            Thread.sleep(50);
+        }
+        assertTrue("condition not met in time", condition.getAsBoolean());
+    }
+}
@@ -54,6 +54,11 @@ public interface DeclarativeDynamicResourceProvider {
     /** @return The Parent Path of the Declarative Dynamic Resources are bound too **/
     String getTargetRootPath();
 
+    /**
+     * Informs the provider that the resource at the given path changed so that it can drop
+     * the dynamic resources that are affected by it
+     * @param path Path of the changed resource, either inside the provider folder or a referenced resource
+     */
     void update(String path);
 
 }
@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -53,9 +54,20 @@ public class DeclarativeDynamicResourceImpl
      * @return The Synthetic Resource that will provide the Dynamic Resource
      */
     public static DeclarativeDynamicResource createSyntheticFromResource(Resource source, String targetPath, boolean mark) {
+        return createSyntheticFromSnapshot(source.getResourceResolver(), createSnapshot(source, mark), targetPath);
+    }
+
+    /**
+     * Copies the data of the given source resource into an immutable snapshot that can be shared
+     * by all the dynamic resources created from that source
+     *
+     * @param source Resource that provides the data
+     * @param mark If true the dynamic resource is marked with the DDR indicator
+     * @return The snapshot of the source resource
+     */
+    static Snapshot createSnapshot(Resource source, boolean mark) {
         ValueMap properties = source.getValueMap();
         Map<String,String> parameters = new HashMap<>();
-        String resourceSuperType = source.getResourceSuperType();
         for(Entry<String, Object> entry: properties.entrySet()) {
             if(!IGNORED_ATTRIBUTES.contains(entry.getKey())) {
                 parameters.put(entry.getKey(), entry.getValue() + "");
@@ -64,30 +76,47 @@ public class DeclarativeDynamicResourceImpl
         if(mark) {
             parameters.put(DDR_INDICATOR, "true");
         }
+        return new Snapshot(source.getPath(), source.getResourceType(), source.getResourceSuperType(), parameters);
+    }
+
+    /**
+     * Creates a Dynamic Resource from a snapshot. Only the resource and its metadata are created,
+     * the properties are shared with the snapshot
+     *
+     * @param resourceResolver Resource Resolver the resource belongs to
+     * @param snapshot Snapshot of the source resource
+     * @param targetPath Path of the new, dynamic location of the resource
+     * @return The Synthetic Resource that will provide the Dynamic Resource
+     */
+    static DeclarativeDynamicResource createSyntheticFromSnapshot(ResourceResolver resourceResolver, Snapshot snapshot, String targetPath) {
         ResourceMetadata metadata = new ResourceMetadataWrapper();
-        metadata.setParameterMap(parameters);
+        metadata.setParameterMap(snapshot.parameters);
         metadata.setResolutionPath(targetPath);
         metadata.setResolutionPathInfo(targetPath);
-        metadata.setCreationTime(System.currentTimeMillis());
-        return new DeclarativeDynamicResourceImpl(
-            source.getResourceResolver(),
-            metadata,
-            source.getResourceType(),
-            resourceSuperType
-        );
+        metadata.setCreationTime(snapshot.creationTime);
+        return new DeclarativeDynamicResourceImpl(resourceResolver, metadata, snapshot);
     }
 
     public DeclarativeDynamicResourceImpl(ResourceResolver resourceResolver, String path, String resourceType, String resourceSuperType) {
         super(resourceResolver, path, resourceType);
         this.resourceSuperType = resourceSuperType;
+        this.snapshot = null;
     }
 
     public DeclarativeDynamicResourceImpl(ResourceResolver resourceResolver, ResourceMetadata rm, String resourceType, String resourceSuperType) {
         super(resourceResolver, rm, resourceType);
         this.resourceSuperType = resourceSuperType;
+        this.snapshot = null;
+    }
+
+    private DeclarativeDynamicResourceImpl(ResourceResolver resourceResolver, ResourceMetadata rm, Snapshot snapshot) {
+        super(resourceResolver, rm, snapshot.resourceType);
+        this.resourceSuperType = snapshot.resourceSuperType;
+        this.snapshot = snapshot;
     }
 
     private String resourceSuperType;
+    private final Snapshot snapshot;
 
     @Override
     public String getResourceSuperType() {
@@ -104,7 +133,8 @@ public class DeclarativeDynamicResourceImpl
             // with wrong values
             //AS TODO: Investigate why
             if(!set) {
-                super.setParameterMap(parameterMap);
+                // The map is not copied as it is either created for this resource or an unmodifiable snapshot
+                put(PARAMETER_MAP, parameterMap == null ? Collections.<String, String>emptyMap() : parameterMap);
             }
             set = true;
         }
@@ -120,6 +150,9 @@ public class DeclarativeDynamicResourceImpl
 
     @Override
     public ValueMap getValueMap() {
+        if(snapshot != null) {
+            return snapshot.valueMap;
+        }
         final Map<String, String> map = getResourceMetadata().getParameterMap();
         if(map.isEmpty()) {
             log.warn("Synthetic Resource: '{}' does not return a parameter map", getResourceMetadata().getResolutionPath());
@@ -134,4 +167,35 @@ public class DeclarativeDynamicResourceImpl
         log.info("Value Map for DC: '{}': '{}'", getName(), parameters);
         return new ValueMapDecorator(parameters);
     }
+
+    /**
+     * Immutable copy of the data of a source resource which is created once and then shared
+     * by all the dynamic resources of that source until the mappings are invalidated
+     */
+    static final class Snapshot {
+        private final String sourcePath;
+        private final String resourceType;
+        private final String resourceSuperType;
+        private final Map<String, String> parameters;
+        private final ValueMap valueMap;
+        private final long creationTime = System.currentTimeMillis();
+
+        Snapshot(String sourcePath, String resourceType, String resourceSuperType, Map<String, String> parameters) {
+            this.sourcePath = sourcePath;
+            this.resourceType = resourceType;
+            this.resourceSuperType = resourceSuperType;
+            this.parameters = Collections.unmodifiableMap(parameters);
+            Map<String, Object> properties = new HashMap<String, Object>(parameters);
+            // Do not add a Resource Super Type when it is null or empty
+            if(resourceSuperType != null && !resourceSuperType.isEmpty()) {
+                properties.put(SLING_RESOURCE_SUPER_TYPE_PROPERTY, resourceSuperType);
+            }
+            this.valueMap = new ValueMapDecorator(Collections.unmodifiableMap(properties));
+            log.info("Value Map for DC: '{}': '{}'", sourcePath, properties);
+        }
+
+        String getSourcePath() {
+            return sourcePath;
+        }
+    }
 }
@@ -26,6 +26,7 @@ import org.apache.sling.ddr.api.DeclarativeDynamicResourceManager;
 import org.apache.sling.ddr.api.DeclarativeDynamicResourceProvider;
 import org.apache.sling.serviceusermapping.ServiceUserMapped;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
@@ -47,11 +48,22 @@ import javax.jcr.query.Query;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.sling.ddr.api.Constants.CONFIGURATION_ROOT_PATH;
 import static org.apache.sling.ddr.api.Constants.DDR_NODE_TYPE;
@@ -84,8 +96,18 @@ public class DeclarativeDynamicResourceManagerService
             name = "Followed Link Names",
             description="Property Names of links to be followed")
         String[] followed_link_names() default DDR_REF_PROPERTY_NAME;
+        @AttributeDefinition(
+            name = "Event Debounce Delay",
+            description="Milliseconds the repository events are collected after the first one before they are handled as one batch, 0 handles them right away")
+        int event_debounce_delay() default 500;
+        @AttributeDefinition(
+            name = "Event Queue Size",
+            description="Maximum number of changed paths waiting to be handled, if exceeded all DDRs are refreshed instead")
+        int event_queue_size() default 10000;
     }
 
+    public static final String STATISTICS_OBJECT_NAME = "org.apache.sling.ddr:type=EventQueue";
+
     public static final int EVENT_TYPES =
         Event.NODE_ADDED |
         Event.NODE_REMOVED |
@@ -108,7 +130,7 @@ public class DeclarativeDynamicResourceManagerService
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    private Map<String, DeclarativeDynamicResourceProvider> registeredServicesByProvider = new HashMap<>();
+    private PathTrie<DeclarativeDynamicResourceProvider> registeredServicesByProvider = new PathTrie<>();
     private Map<String, DeclarativeDynamicResourceProvider> registeredServicesByTarget = new HashMap<>();
     private BundleContext bundleContext;
     // Keep the Resource Resolver around otherwise the Event Listener will not work anymore
@@ -119,6 +141,19 @@ public class DeclarativeDynamicResourceManagerService
     private List<String> followedLinkNames = new ArrayList<>();
 
     private Map<String, ReferenceEventListener> referenceListeners = new HashMap<>();
+    private PathTrie<ReferenceEventListener> referenceListenersByTarget = new PathTrie<>();
+    // Referenced path -> providers with a resource pointing to it
+    private PathTrie<Set<DeclarativeDynamicResourceProvider>> referencingProviders = new PathTrie<>();
+
+    // Changed path -> kind of change, coalesced until the batch is handled
+    private final Map<String, ChangeType> pendingChanges = new LinkedHashMap<>();
+    // The queue overflowed and everything is refreshed with the next batch
+    private boolean pendingRefresh;
+    private ScheduledExecutorService eventExecutor;
+    private long eventDebounceDelay;
+    private int eventQueueSize;
+    private final EventQueueStatistics statistics = new EventQueueStatistics();
+    private ServiceRegistration<EventQueueStatisticsMBean> statisticsRegistration;
 
     @Activate
     void activate(BundleContext bundleContext, Configuration configuration) {
@@ -128,6 +163,23 @@ public class DeclarativeDynamicResourceManagerService
         parseDDRFilter(configuration.allowed_ddr_filter(), allowedFilter);
         parseDDRFilter(configuration.prohibited_ddr_filter(), prohibitedFilter);
         followedLinkNames.addAll(Arrays.asList(configuration.followed_link_names()));
+        eventDebounceDelay = configuration.event_debounce_delay();
+        eventQueueSize = configuration.event_queue_size() > 0 ? configuration.event_queue_size() : 10000;
+        Dictionary<String, Object> statisticsProperties = new Hashtable<>();
+        statisticsProperties.put("jmx.objectname", STATISTICS_OBJECT_NAME);
+        statisticsRegistration = bundleContext.registerService(
+            EventQueueStatisticsMBean.class, statistics, statisticsProperties
+        );
+        if(eventDebounceDelay > 0) {
+            eventExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "DDR Event Handler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
         try {
             // The Resource Resolver needs to be kept alive until this Service is deactivated due to the Event Listeners
             resourceResolver = resourceResolverFactory.getServiceResourceResolver(
@@ -146,20 +198,7 @@ public class DeclarativeDynamicResourceManagerService
                 log.warn("Resource Resolver could not be adapted to Session");
             }
             // To make sure we get all we will query all existing nodes
-            Resource root = resourceResolver.getResource(CONFIGURATION_ROOT_PATH);
-            log.info("Manual Check for Existing Nodes in: '{}', root-res: '{}'", CONFIGURATION_ROOT_PATH, root);
-            if(root != null) {
-                Iterator<Resource> i = resourceResolver.findResources(
-                    "SELECT * FROM [" + DDR_NODE_TYPE + "]",
-                    Query.JCR_SQL2
-                );
-                log.info("DDR Nodes by Type: '{}', has next: '{}'", i, i.hasNext());
-                while(i.hasNext()) {
-                    Resource item = i.next();
-                    log.info("Handle Found DDR Resource: '{}'", item);
-                    handleDDRSource(item);
-                }
-            }
+            scanDDRSources();
         } catch (LoginException e) {
             log.error("Unable to obtain our Service Resource Resolver --> DDR disabled", e);
         } catch (RepositoryException e) {
@@ -167,6 +206,23 @@ public class DeclarativeDynamicResourceManagerService
         }
     }
 
+    private void scanDDRSources() {
+        Resource root = resourceResolver.getResource(CONFIGURATION_ROOT_PATH);
+        log.info("Manual Check for Existing Nodes in: '{}', root-res: '{}'", CONFIGURATION_ROOT_PATH, root);
+        if(root != null) {
+            Iterator<Resource> i = resourceResolver.findResources(
+                "SELECT * FROM [" + DDR_NODE_TYPE + "]",
+                Query.JCR_SQL2
+            );
+            log.info("DDR Nodes by Type: '{}', has next: '{}'", i, i.hasNext());
+            while(i.hasNext()) {
+                Resource item = i.next();
+                log.info("Handle Found DDR Resource: '{}'", item);
+                handleDDRSource(item);
+            }
+        }
+    }
+
     private void parseDDRFilter(String[] filters, Map<String, List<String>> filterMap) {
         if(filters != null && filters.length > 0) {
             for(String filter: filters) {
@@ -216,22 +272,14 @@ public class DeclarativeDynamicResourceManagerService
                             );
                         }
                     } else {
-                        resourceProvider.update(ddrTargetPath);
+                        resourceProvider.update(resource.getPath());
                     }
                 }
             } else {
                 // Provider Resource found -> check that this resource was previous target and if so remove it
-                DeclarativeDynamicResourceProvider toBeRemoved = null;
-                for(Entry<String, DeclarativeDynamicResourceProvider> entry: registeredServicesByProvider.entrySet()) {
-                    if(resource.getPath().startsWith(entry.getKey())) {
-                        toBeRemoved = entry.getValue();
-                        break;
-                    }
-                }
+                DeclarativeDynamicResourceProvider toBeRemoved = registeredServicesByProvider.getClosest(resource.getPath());
                 if(toBeRemoved != null) {
-                    registeredServicesByProvider.remove(toBeRemoved.getProviderRootPath());
-                    registeredServicesByTarget.remove(toBeRemoved.getTargetRootPath());
-                    toBeRemoved.unregisterService();
+                    removeProvider(toBeRemoved);
                 }
             }
         }
@@ -243,12 +291,28 @@ public class DeclarativeDynamicResourceManagerService
      * @return The resource containing the DDR Target Path or null if not found
      */
     private Resource findDDRSource(Resource resource) {
+        Resource answer = null;
+        if (resource != null) {
+            // Look up registered providers first so that only new DDRs need to walk up the tree
+            DeclarativeDynamicResourceProvider provider = registeredServicesByProvider.getClosest(resource.getPath());
+            if(provider != null) {
+                Resource providerResource = resource.getResourceResolver().getResource(provider.getProviderRootPath());
+                if(providerResource != null && providerResource.getValueMap().get(DDR_TARGET_PROPERTY_NAME, String.class) != null) {
+                    return providerResource;
+                }
+            }
+            answer = findDDRSourceInParents(resource);
+        }
+        return answer;
+    }
+
+    private Resource findDDRSourceInParents(Resource resource) {
         Resource answer = null;
         if (resource != null) {
             ValueMap properties = resource.getValueMap();
             String ddrTargetPath = properties.get(DDR_TARGET_PROPERTY_NAME, String.class);
             if (ddrTargetPath == null) {
-                answer = findDDRSource(resource.getParent());
+                answer = findDDRSourceInParents(resource.getParent());
             } else {
                 answer = resource;
             }
@@ -269,31 +333,43 @@ public class DeclarativeDynamicResourceManagerService
     }
 
     @Override
-    public void addReference(String sourcePath, String targetPath) {
-        ReferenceEventListener referenceEventListener = null;
-        for(Entry<String, ReferenceEventListener> entry: referenceListeners.entrySet()) {
-            // If there is already a registered Event Listener for the given target or one of its parents when we ignore it
-            if(targetPath.startsWith(entry.getValue().getReferencedPath())) {
-                referenceEventListener = entry.getValue();
-                break;
-            }
-            //AS TODO: this should be handled by the caller (Resource Provider) as he knows the Provider Root
-//            //AS TODO: Should we only limit this to /conf/.../settings/dynamic ?
-//            if(sourcePath.startsWith(CONFIGURATION_ROOT_PATH)) {
-//                // A reference is pointing inside the Dynamic Folder which is already handled so we ignore it
-//                referenceEventListener = entry.getValue();
-//                break;
-//            }
+    public synchronized void addReference(String sourcePath, String targetPath) {
+        DeclarativeDynamicResourceProvider provider = registeredServicesByProvider.getClosest(sourcePath);
+        if(provider != null) {
+            Set<DeclarativeDynamicResourceProvider> providers = referencingProviders.putIfAbsent(
+                targetPath, Collections.newSetFromMap(new ConcurrentHashMap<DeclarativeDynamicResourceProvider, Boolean>())
+            );
+            providers.add(provider);
         }
+        // If there is already a registered Event Listener for the given target or one of its parents when we ignore it
+        //AS TODO: Should we only limit this to /conf/.../settings/dynamic ?
+        ReferenceEventListener referenceEventListener = referenceListenersByTarget.getClosest(targetPath);
         if(referenceEventListener == null) {
             referenceEventListener = new ReferenceEventListener();
             referenceEventListener.registerListener(sourcePath, targetPath, resourceResolver);
             referenceListeners.put(sourcePath, referenceEventListener);
+            referenceListenersByTarget.put(targetPath, referenceEventListener);
         }
     }
 
     @Deactivate
     private void deactivate() {
+        if(eventExecutor != null) {
+            eventExecutor.shutdownNow();
+            eventExecutor = null;
+        }
+        synchronized (pendingChanges) {
+            pendingChanges.clear();
+            pendingRefresh = false;
+        }
+        if(statisticsRegistration != null) {
+            try {
+                statisticsRegistration.unregister();
+            } catch (IllegalStateException e) {
+                // Ignore, already unregistered on shutdown
+            }
+            statisticsRegistration = null;
+        }
         for(Entry<String, DeclarativeDynamicResourceProvider> entry: registeredServicesByTarget.entrySet()) {
             log.info("Before UnRegistering Tenant RP, service: '{}'", entry.getValue());
             entry.getValue().unregisterService();
@@ -307,6 +383,9 @@ public class DeclarativeDynamicResourceManagerService
         for(Entry<String, ReferenceEventListener> entry: referenceListeners.entrySet()) {
             entry.getValue().unregisterListener(resourceResolver);
         }
+        referenceListeners.clear();
+        referenceListenersByTarget.clear();
+        referencingProviders.clear();
         Session session = resourceResolver.adaptTo(Session.class);
         if (session != null) {
             log.info("Register Event Listener on Path: '{}'", CONFIGURATION_ROOT_PATH);
@@ -324,9 +403,8 @@ public class DeclarativeDynamicResourceManagerService
     @Override
     public void onEvent(EventIterator events) {
         log.info("Handle Events: '{}'", events);
-        try (ResourceResolver resourceResolver = resourceResolverFactory.getServiceResourceResolver(
-            new HashMap<String, Object>() {{ put(ResourceResolverFactory.SUBSERVICE, DYNAMIC_COMPONENTS_SERVICE_USER); }}
-        )) {
+        Map<String, ChangeType> changes = new LinkedHashMap<>();
+        try {
             while (events.hasNext()) {
                 Event event = events.nextEvent();
                 String path = event.getPath();
@@ -334,18 +412,19 @@ public class DeclarativeDynamicResourceManagerService
                 switch (event.getType()) {
                     case Event.PROPERTY_ADDED:
                     case Event.PROPERTY_CHANGED:
+                    case Event.PROPERTY_REMOVED:
                         int index = path.lastIndexOf('/');
                         if(index > 0) {
                             path = path.substring(0, index);
+                            log.info("Property Added, Changed or Removed, path: '{}'", path);
+                            addChange(changes, path, ChangeType.CHANGED);
                         }
-                        log.info("Property Added or Changed, path: '{}'", path);
-                        handleNodeChange(path, true);
                         break;
                     case Event.NODE_ADDED:
-                        handleNodeChange(path, true);
+                        addChange(changes, path, ChangeType.CHANGED);
                         break;
                     case Event.NODE_REMOVED:
-                        handleNodeRemoved(path);
+                        addChange(changes, path, ChangeType.REMOVED);
                         break;
                     case Event.NODE_MOVED:
                         // The only thing to handle here is when the location changed
@@ -353,25 +432,133 @@ public class DeclarativeDynamicResourceManagerService
                         Object temp = info.get("srcAbsPath");
                         if(temp instanceof String) {
                             // Source found -> get target and remove it
-                            String sourcePath = temp.toString();
-                            handleNodeRemoved(sourcePath);
+                            addChange(changes, temp.toString(), ChangeType.REMOVED);
                         }
                         temp = info.get("destAbsPath");
                         if(temp instanceof String) {
                             // Destination found -> get target and add it
-                            String destPath = temp.toString();
-                            handleNodeChange(destPath, true);
+                            addChange(changes, temp.toString(), ChangeType.CHANGED);
                         }
                         break;
-                    case Event.PROPERTY_REMOVED:
-                        index = path.lastIndexOf('/');
-                        if(index > 0) {
-                            String resourcePath = path.substring(0, index);
-                            handleNodeChange(resourcePath, false);
+                }
+            }
+        } catch (RepositoryException e) {
+            log.error("Failed to Handle Events", e);
+        }
+        queueChanges(changes);
+    }
+
+    /**
+     * Queues the given changes to be handled in the next batch or handles them right away
+     * if there is no debounce delay. If the queue is full it is dropped and all DDRs are
+     * refreshed with the next batch instead.
+     */
+    private void queueChanges(Map<String, ChangeType> changes) {
+        if(changes.isEmpty()) {
+            return;
+        }
+        if(eventExecutor == null) {
+            handleBatch(changes, false);
+            return;
+        }
+        boolean schedule;
+        synchronized (pendingChanges) {
+            schedule = pendingChanges.isEmpty() && !pendingRefresh;
+            for(Entry<String, ChangeType> entry: changes.entrySet()) {
+                if(pendingRefresh) {
+                    statistics.dropped();
+                    continue;
+                }
+                boolean queued = pendingChanges.containsKey(entry.getKey());
+                if(!queued && pendingChanges.size() >= eventQueueSize) {
+                    log.warn("Event Queue is full ({} changes), all DDRs will be refreshed", pendingChanges.size());
+                    statistics.overflow();
+                    pendingRefresh = true;
+                    pendingChanges.clear();
+                    statistics.dropped();
+                    continue;
+                }
+                addChange(pendingChanges, entry.getKey(), entry.getValue());
+                statistics.queued(queued);
+            }
+            statistics.setPendingChanges(pendingChanges.size());
+        }
+        if(schedule) {
+            try {
+                eventExecutor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        Map<String, ChangeType> batch;
+                        boolean refresh;
+                        synchronized (pendingChanges) {
+                            batch = new LinkedHashMap<>(pendingChanges);
+                            refresh = pendingRefresh;
+                            pendingChanges.clear();
+                            pendingRefresh = false;
+                            statistics.setPendingChanges(0);
                         }
+                        handleBatch(batch, refresh);
+                    }
+                }, eventDebounceDelay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                log.warn("Event Handler is shut down, dropped changes: '{}'", changes.keySet());
+            }
+        }
+    }
+
+    private void handleBatch(Map<String, ChangeType> changes, boolean refresh) {
+        long start = System.currentTimeMillis();
+        if(refresh) {
+            refreshAll();
+        } else {
+            handleChanges(changes);
+        }
+        statistics.handled(changes.size(), System.currentTimeMillis() - start);
+    }
+
+    /** Drops all the mappings and checks for added and removed DDRs **/
+    private void refreshAll() {
+        log.info("Refresh all DDRs");
+        for(DeclarativeDynamicResourceProvider provider: new ArrayList<>(registeredServicesByTarget.values())) {
+            if(resourceResolver.getResource(provider.getProviderRootPath()) == null) {
+                removeProvider(provider);
+            } else {
+                provider.update(provider.getProviderRootPath());
+            }
+        }
+        scanDDRSources();
+    }
+
+    /** The last change of a path wins and moves it to the end so that the order of the changes is kept **/
+    private static void addChange(Map<String, ChangeType> changes, String path, ChangeType type) {
+        changes.remove(path);
+        changes.put(path, type);
+    }
+
+    private void handleChanges(Map<String, ChangeType> changes) {
+        log.info("Handle Changes: '{}'", changes);
+        try (ResourceResolver resourceResolver = resourceResolverFactory.getServiceResourceResolver(
+            new HashMap<String, Object>() {{ put(ResourceResolverFactory.SUBSERVICE, DYNAMIC_COMPONENTS_SERVICE_USER); }}
+        )) {
+            for(Entry<String, ChangeType> entry: changes.entrySet()) {
+                String path = entry.getKey();
+                try {
+                    switch (entry.getValue()) {
+                        case CHANGED:
+                            handleNodeChange(path, true);
+                            break;
+                        case REMOVED:
+                            handleNodeRemoved(path);
+                            break;
+                        case REFERENCE_CHANGED:
+                            handleReferenceChange(path);
+                            break;
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Failed to Handle Change of: '{}'", path, e);
                 }
             }
-        } catch (LoginException | RepositoryException e) {
+        } catch (LoginException e) {
             log.error("Failed to Handle Events", e);
         }
     }
@@ -384,26 +571,49 @@ public class DeclarativeDynamicResourceManagerService
         }
     }
 
+    private void removeProvider(DeclarativeDynamicResourceProvider provider) {
+        registeredServicesByProvider.remove(provider.getProviderRootPath());
+        registeredServicesByTarget.remove(provider.getTargetRootPath());
+        provider.unregisterService();
+    }
+
     private void handleNodeRemoved(String path) {
-        DeclarativeDynamicResourceProvider toBeRemoved = null;
-        for(Entry<String, DeclarativeDynamicResourceProvider> entry: registeredServicesByProvider.entrySet()) {
-            if(entry.getKey().equals(path)) {
+        DeclarativeDynamicResourceProvider provider = registeredServicesByProvider.getClosest(path);
+        if(provider != null) {
+            if(provider.getProviderRootPath().equals(path)) {
                 // Provider to be removed found
-                toBeRemoved = entry.getValue();
-                break;
-            } else if(path.startsWith(entry.getKey())) {
+                removeProvider(provider);
+            } else {
                 // Sub Provider Node removed -> update Resource Provider
-                entry.getValue().update(path);
-                break;
+                provider.update(path);
             }
         }
-        if(toBeRemoved != null) {
-            registeredServicesByProvider.remove(toBeRemoved.getProviderRootPath());
-            registeredServicesByTarget.remove(toBeRemoved.getTargetRootPath());
-            toBeRemoved.unregisterService();
+        // Any provider below the removed node is gone as well
+        for(DeclarativeDynamicResourceProvider removed: registeredServicesByProvider.getDescendants(path)) {
+            removeProvider(removed);
         }
     }
 
+    private void handleReferenceChange(String path) {
+        // Only the providers referencing the changed resource, one of its parents or children are affected
+        Set<DeclarativeDynamicResourceProvider> providers = new HashSet<>();
+        for(Set<DeclarativeDynamicResourceProvider> referencing: referencingProviders.getAncestorsOrSelf(path)) {
+            providers.addAll(referencing);
+        }
+        for(Set<DeclarativeDynamicResourceProvider> referencing: referencingProviders.getDescendants(path)) {
+            providers.addAll(referencing);
+        }
+        for(DeclarativeDynamicResourceProvider provider: providers) {
+            if(provider.isActive()) {
+                provider.update(path);
+            }
+        }
+    }
+
+    EventQueueStatisticsMBean getStatistics() {
+        return statistics;
+    }
+
     Map<String, DeclarativeDynamicResourceProvider> getRegisteredServicesByTarget() {
         return Collections.unmodifiableMap(registeredServicesByTarget);
     }
@@ -458,8 +668,23 @@ public class DeclarativeDynamicResourceManagerService
 
         @Override
         public void onEvent(EventIterator events) {
-            handleNodeChange(sourcePath, false);
+            Map<String, ChangeType> changes = new LinkedHashMap<>();
+            while(events.hasNext()) {
+                Event event = events.nextEvent();
+                try {
+                    String path = event.getPath();
+                    if((event.getType() & (Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED)) != 0) {
+                        path = path.substring(0, path.lastIndexOf('/'));
+                    }
+                    addChange(changes, path, ChangeType.REFERENCE_CHANGED);
+                } catch (RepositoryException e) {
+                    log.warn("Failed to obtain the path of the Event: '{}'", event, e);
+                }
+            }
+            queueChanges(changes);
         }
     }
+
+    private enum ChangeType { CHANGED, REMOVED, REFERENCE_CHANGED }
 }
 
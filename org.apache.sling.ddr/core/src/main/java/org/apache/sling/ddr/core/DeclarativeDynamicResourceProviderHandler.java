@@ -21,6 +21,7 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.ddr.api.DeclarativeDynamicResourceManager;
 import org.apache.sling.ddr.api.DeclarativeDynamicResourceProvider;
+import org.apache.sling.ddr.core.DeclarativeDynamicResourceImpl.Snapshot;
 import org.apache.sling.spi.resource.provider.ProviderContext;
 import org.apache.sling.spi.resource.provider.ResolveContext;
 import org.apache.sling.spi.resource.provider.ResourceContext;
@@ -32,19 +33,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import static org.apache.sling.api.resource.Resource.RESOURCE_TYPE_NON_EXISTING;
 import static org.apache.sling.ddr.api.Constants.LABEL;
 import static org.apache.sling.ddr.api.Constants.REP_POLICY;
 import static org.apache.sling.ddr.api.Constants.SLASH;
-import static org.apache.sling.ddr.core.DeclarativeDynamicResourceImpl.createSyntheticFromResource;
+import static org.apache.sling.ddr.core.DeclarativeDynamicResourceImpl.createSnapshot;
+import static org.apache.sling.ddr.core.DeclarativeDynamicResourceImpl.createSyntheticFromSnapshot;
 import static org.osgi.framework.Constants.SERVICE_DESCRIPTION;
 import static org.osgi.framework.Constants.SERVICE_VENDOR;
 
@@ -71,9 +80,9 @@ public class DeclarativeDynamicResourceProviderHandler
     private Map<String, List<String>> prohibitedDDRFilter;
     private List<String> followedLinkNames;
 
-    private Object lock = new Object();
-    private Map<String,Reference> mappings = new HashMap<>();
-    private Map<String,List<Reference>> childrenMappings = new HashMap<>();
+    // Lookups never lock, only publishing enumerated children and invalidating them synchronize on
+    // the instance. It is replaced as a whole when everything needs to be invalidated
+    private volatile Mappings state = new Mappings();
 
     //---------- Service Registration
 
@@ -134,13 +143,26 @@ public class DeclarativeDynamicResourceProviderHandler
         return providerRootPath;
     }
 
+    /**
+     * Invalidates the dynamic resources affected by a change of the given path. Only the children lists of the dynamic
+     * resources backed by the changed resource or its parent are dropped together with the mappings below the changed
+     * resource. A change of the provider or target root or any of their parents invalidates everything.
+     * @param path Path of the changed resource which can be inside the provider folder or a referenced resource
+     */
     public void update(String path) {
-        synchronized (lock) {
-            mappings.clear();
-            childrenMappings.clear();
+        if(path == null || isSameOrAncestor(path, providerRootPath) || isSameOrAncestor(path, targetRootPath)) {
+            log.info("Invalidate all mappings, changed path: '{}'", path);
+            state = new Mappings();
+        } else {
+            int count = state.invalidate(path);
+            log.info("Invalidated: '{}' children lists, changed path: '{}'", count, path);
         }
     }
 
+    Map<String, ?> getMappings() {
+        return Collections.unmodifiableMap(state.mappings);
+    }
+
     @Override
     public Resource getResource(ResolveContext ctx, String path, ResourceContext resourceContext, Resource parent) {
         ResourceResolver contextResourceResolver = ctx.getResourceResolver();
@@ -165,32 +187,27 @@ public class DeclarativeDynamicResourceProviderHandler
             }
             log.info("After Getting Resource from Parent, path: '{}', resource: '{}'", resourcePath, answer);
             if(answer == null) {
-                synchronized (lock) {
-                    Reference mappedPath = mappings.get(resourcePath);
-                    if (mappedPath == null) {
-                        // Obtain parent path and list children then try to re-obtain the mapping, if not found then there is no mapping
-                        int index = resourcePath.lastIndexOf('/');
-                        if (index > 0 && index < resourcePath.length() - 1) {
-                            String parentPath = resourcePath.substring(0, index);
-                            obtainChildren(contextResourceResolver, parentPath, false);
-                            mappedPath = mappings.get(resourcePath);
-                        }
+                Mappings current = state;
+                Reference mappedPath = current.mappings.get(resourcePath);
+                if (mappedPath == null) {
+                    // Obtain parent path and list children then try to re-obtain the mapping, if not found then there is no mapping
+                    int index = resourcePath.lastIndexOf('/');
+                    if (index > 0 && index < resourcePath.length() - 1) {
+                        String parentPath = resourcePath.substring(0, index);
+                        getChildren(current, contextResourceResolver, parentPath);
+                        mappedPath = current.mappings.get(resourcePath);
                     }
-                    if (mappedPath != null) {
-                        Resource source = getResource(
-                            contextResourceResolver, mappedPath.isRef() ?
-                                mappedPath.getReference():
-                                mappedPath.getSource()
-                        );
-                        int index = resourcePath.lastIndexOf('/');
-                        String parentPath = "";
-                        if (index > 0 && index < resourcePath.length() - 1) {
-                            parentPath = resourcePath.substring(0, index);
-                        }
-                        answer = createSyntheticFromResource(
-                            source, resourcePath, parentPath.equals(targetRootPath)
-                        );
+                }
+                if (mappedPath != null) {
+                    int index = resourcePath.lastIndexOf('/');
+                    String parentPath = "";
+                    if (index > 0 && index < resourcePath.length() - 1) {
+                        parentPath = resourcePath.substring(0, index);
                     }
+                    answer = getSynthetic(
+                        current, contextResourceResolver, mappedPath.getReference(),
+                        resourcePath, parentPath.equals(targetRootPath)
+                    );
                 }
             }
         } else {
@@ -224,24 +241,19 @@ public class DeclarativeDynamicResourceProviderHandler
                     }
                 }
             }
-            synchronized (lock) {
-                // Obtain the matching resource from the provider
-                List<Reference> childrenList = childrenMappings.get(resourcePath);
-                log.info("Resource Path: '{}', Children List: '{}'", resourcePath, childrenList);
-                if (childrenList != null) {
-                    for (Reference childPath : childrenList) {
-                        Resource child = getResource(contextResourceResolver, childPath.getReference());
-                        int index = childPath.getSource().lastIndexOf('/');
-                        String childName = childPath.getSource().substring(index);
-                        items.add(
-                            createSyntheticFromResource(
-                                child, resourcePath + childName,
-                                resourcePath.equals(targetRootPath)
-                            )
-                        );
-                    }
-                } else {
-                    items = obtainChildren(contextResourceResolver, resourcePath, true);
+            // Obtain the matching resource from the provider
+            Mappings current = state;
+            List<Reference> childrenList = getChildren(current, contextResourceResolver, resourcePath);
+            log.info("Resource Path: '{}', Children List: '{}'", resourcePath, childrenList);
+            for (Reference childPath : childrenList) {
+                int index = childPath.getSource().lastIndexOf('/');
+                String childName = childPath.getSource().substring(index);
+                Resource child = getSynthetic(
+                    current, contextResourceResolver, childPath.getReference(),
+                    resourcePath + childName, resourcePath.equals(targetRootPath)
+                );
+                if (child != null) {
+                    items.add(child);
                 }
             }
             answer = items.iterator();
@@ -299,25 +311,114 @@ public class DeclarativeDynamicResourceProviderHandler
         return true;
     }
 
-    private List<Resource> obtainChildren(ResourceResolver contextResourceResolver, String resourcePath, boolean returnChildren) {
-        List<Resource> answer = new ArrayList<>();
+    /**
+     * Obtains the dynamic resource for the given target path. The data of the source is copied into a snapshot
+     * only once and then shared until the mappings of the target path are invalidated. Resources created
+     * from a snapshot belong to the Resource Resolver of the request.
+     * @param current The mappings holding the snapshots
+     * @param contextResourceResolver The Resource Resolver of the request
+     * @param sourcePath Path of the resource providing the data
+     * @param targetPath Path of the dynamic resource
+     * @param mark If true the dynamic resource is marked with the DDR indicator
+     * @return The dynamic resource or null if the source does not exist
+     */
+    private Resource getSynthetic(
+        Mappings current, ResourceResolver contextResourceResolver, String sourcePath, String targetPath, boolean mark
+    ) {
+        Snapshot snapshot = current.snapshots.get(targetPath);
+        if(snapshot != null && snapshot.getSourcePath().equals(sourcePath)) {
+            return createSyntheticFromSnapshot(
+                contextResourceResolver != null ? contextResourceResolver : resourceResolver, snapshot, targetPath
+            );
+        }
+        long generation = current.getGeneration();
+        Resource source = getResource(contextResourceResolver, sourcePath);
+        if(source == null) {
+            log.warn("Source: '{}' of dynamic resource: '{}' not found", sourcePath, targetPath);
+            return null;
+        }
+        snapshot = createSnapshot(source, mark);
+        current.putSnapshot(generation, targetPath, snapshot);
+        return createSyntheticFromSnapshot(source.getResourceResolver(), snapshot, targetPath);
+    }
+
+    /**
+     * Obtains the children references of the given dynamic resource. If they are not known yet they are
+     * enumerated from the provider folder and only one thread does that per parent path while any other
+     * thread asking for the same parent waits for its result.
+     * @param current The mappings to look the children up in and to add them to
+     * @param contextResourceResolver The Resource Resolver of the request
+     * @param resourcePath The path of the dynamic parent resource
+     * @return The unmodifiable list of the children references which is never null
+     */
+    private List<Reference> getChildren(
+        final Mappings current, final ResourceResolver contextResourceResolver, final String resourcePath
+    ) {
+        List<Reference> answer = current.childrenMappings.get(resourcePath);
+        if(answer == null) {
+            FutureTask<List<Reference>> task = new FutureTask<>(
+                new Callable<List<Reference>>() {
+                    @Override
+                    public List<Reference> call() {
+                        return obtainChildren(current, contextResourceResolver, resourcePath);
+                    }
+                }
+            );
+            FutureTask<List<Reference>> running = current.pendingChildren.putIfAbsent(resourcePath, task);
+            if(running == null) {
+                running = task;
+                try {
+                    task.run();
+                } finally {
+                    current.pendingChildren.remove(resourcePath, task);
+                }
+            }
+            answer = waitForChildren(running);
+        }
+        return answer;
+    }
+
+    private List<Reference> waitForChildren(FutureTask<List<Reference>> task) {
+        boolean interrupted = false;
+        try {
+            while(true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if(cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if(cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException("Failed to obtain the children", cause);
+                }
+            }
+        } finally {
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private List<Reference> obtainChildren(Mappings current, ResourceResolver contextResourceResolver, String resourcePath) {
         String postfix = resourcePath.substring(targetRootPath.length());
         if (!postfix.isEmpty() && postfix.charAt(0) == '/') {
             postfix = postfix.substring(1);
         }
+        long generation = current.getGeneration();
         List<Reference> childrenList = new ArrayList<>();
-        childrenMappings.put(resourcePath, childrenList);
+        Map<String, Reference> childMappings = new HashMap<>();
+        Map<String, String> references = new HashMap<>();
         String targetPath = providerRootPath + SLASH + postfix;
-        Reference ref = mappings.get(resourcePath);
-        Resource provider =
-            getResource(
-                contextResourceResolver,
-                ref == null || !ref.isRef() ?
-                    targetPath:
-                    ref.getReference()
-            );
+        Reference ref = current.mappings.get(resourcePath);
+        String folderPath = ref == null || !ref.isRef() ? targetPath : ref.getReference();
+        Resource provider = getResource(contextResourceResolver, folderPath);
         log.info("Provider, Path: '{}', Resource: '{}'", targetPath, provider);
         if (provider != null) {
+            String parentPath = targetRootPath + (postfix.isEmpty() ? "" : SLASH + postfix);
             Iterator<Resource> i = provider.listChildren();
             while (i.hasNext()) {
                 Resource child = i.next();
@@ -336,19 +437,11 @@ public class DeclarativeDynamicResourceProviderHandler
                             Resource reference = getResource(contextResourceResolver, referencePath);
                             if (reference != null && !reference.isResourceType(RESOURCE_TYPE_NON_EXISTING)) {
                                 log.info("Add Path: '{}' to children list", resourcePath);
-                                childrenList.add(new Reference(child.getPath(), referencePath));
-                                String parentPath = targetRootPath + (postfix.isEmpty() ? "" : SLASH + postfix);
-                                mappings.put(parentPath + SLASH + child.getName(), new Reference(child.getPath(), referencePath));
+                                Reference newRef = new Reference(child.getPath(), referencePath);
+                                childrenList.add(newRef);
+                                childMappings.put(parentPath + SLASH + child.getName(), newRef);
+                                references.put(parentPath + SLASH + child.getName(), referencePath);
                                 declarativeDynamicResourceManager.addReference(child.getPath(), referencePath);
-                                if(returnChildren) {
-                                    answer.add(
-                                        createSyntheticFromResource(
-                                            reference,
-                                            parentPath + SLASH + child.getName(),
-                                            parentPath.equals(targetRootPath)
-                                        )
-                                    );
-                                }
                                 handled = true;
                             } else {
                                 log.warn("Reference: '{}' provided by does not resolve to a resource", referencePath);
@@ -365,23 +458,33 @@ public class DeclarativeDynamicResourceProviderHandler
                             newRef = new Reference(child.getPath());
                         }
                         childrenList.add(newRef);
-                        String parentPath = targetRootPath + (postfix.isEmpty() ? "" : SLASH + postfix);
-                        mappings.put(parentPath + SLASH + child.getName(), newRef);
-                        if(returnChildren) {
-                            answer.add(
-                                createSyntheticFromResource(
-                                    child, parentPath + SLASH + child.getName(),
-                                    parentPath.equals(targetRootPath)
-                                )
-                            );
-                        }
+                        childMappings.put(parentPath + SLASH + child.getName(), newRef);
                     }
                 }
             }
         }
+        List<Reference> answer = Collections.unmodifiableList(childrenList);
+        current.publish(generation, resourcePath, stripTrailingSlash(folderPath), answer, childMappings, references);
         return answer;
     }
 
+    private static String stripTrailingSlash(String path) {
+        return path.length() > 1 && path.endsWith(SLASH) ? path.substring(0, path.length() - 1) : path;
+    }
+
+    private static boolean isSameOrAncestor(String ancestor, String path) {
+        return path.equals(ancestor) || isAncestor(ancestor, path);
+    }
+
+    private static boolean isAncestor(String ancestor, String path) {
+        return path.startsWith(ancestor.endsWith(SLASH) ? ancestor : ancestor + SLASH);
+    }
+
+    private static String getParentPath(String path) {
+        int index = path.lastIndexOf('/');
+        return index > 0 ? path.substring(0, index) : index == 0 && path.length() > 1 ? SLASH : null;
+    }
+
     private Resource getResource(ResourceResolver contextResourceResolver, String path) {
         Resource answer = null;
         if(contextResourceResolver != null) {
@@ -393,10 +496,147 @@ public class DeclarativeDynamicResourceProviderHandler
         return answer;
     }
 
-    private class Reference {
-        private String source;
-        private String reference;
-        private boolean ref;
+    /** Mappings of the dynamic resources together with the indexes needed to invalidate parts of them **/
+    private static class Mappings {
+        private final Map<String,Reference> mappings = new ConcurrentHashMap<>();
+        private final Map<String,List<Reference>> childrenMappings = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String,FutureTask<List<Reference>>> pendingChildren = new ConcurrentHashMap<>();
+        // Dynamic path -> snapshot of its source, invalidated together with the mapping
+        private final Map<String,Snapshot> snapshots = new ConcurrentHashMap<>();
+        // Enumerated folder (provider or referenced) -> dynamic parents whose children were listed from it
+        private final Map<String,Set<String>> folders = new HashMap<>();
+        // Referenced path -> dynamic children pointing to it
+        private final Map<String,Set<String>> references = new HashMap<>();
+        private volatile long generation;
+
+        long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Publishes the children of a dynamic parent unless an invalidation happened since the enumeration started.
+         * The child mappings are published before the children list so that anyone finding the list also finds the mappings.
+         */
+        synchronized void publish(
+            long startGeneration, String parentPath, String folderPath, List<Reference> children,
+            Map<String, Reference> childMappings, Map<String, String> childReferences
+        ) {
+            if(startGeneration != generation) {
+                return;
+            }
+            mappings.putAll(childMappings);
+            childrenMappings.put(parentPath, children);
+            index(folders, folderPath, parentPath);
+            for(Entry<String, String> entry: childReferences.entrySet()) {
+                index(references, entry.getValue(), entry.getKey());
+            }
+        }
+
+        /** Caches the snapshot unless an invalidation happened since its source was read **/
+        synchronized void putSnapshot(long startGeneration, String targetPath, Snapshot snapshot) {
+            if(startGeneration == generation) {
+                snapshots.put(targetPath, snapshot);
+            }
+        }
+
+        /** @return Number of children lists that were dropped **/
+        synchronized int invalidate(String path) {
+            generation++;
+            int answer = 0;
+            String parentPath = getParentPath(path);
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            Iterator<Entry<String, Set<String>>> i = folders.entrySet().iterator();
+            while(i.hasNext()) {
+                Entry<String, Set<String>> entry = i.next();
+                String folder = entry.getKey();
+                if(isSameOrAncestor(path, folder)) {
+                    // The folder itself changed -> everything listed from it is stale
+                    for(String dynamicParent: entry.getValue()) {
+                        snapshots.remove(dynamicParent);
+                        answer += removeChildren(dynamicParent);
+                    }
+                    i.remove();
+                } else if(folder.equals(parentPath)) {
+                    // A child of the folder changed -> its siblings remain valid
+                    for(String dynamicParent: entry.getValue()) {
+                        answer += removeChild(dynamicParent + SLASH + name);
+                    }
+                    i.remove();
+                }
+            }
+            i = references.entrySet().iterator();
+            while(i.hasNext()) {
+                Entry<String, Set<String>> entry = i.next();
+                if(isSameOrAncestor(path, entry.getKey())) {
+                    for(String dynamicChild: entry.getValue()) {
+                        answer += removeChild(dynamicChild);
+                    }
+                    i.remove();
+                }
+            }
+            return answer;
+        }
+
+        /** Drops the given dynamic child, the children list it is part of and everything below it **/
+        private int removeChild(String dynamicChild) {
+            int answer = 0;
+            String dynamicParent = getParentPath(dynamicChild);
+            if(dynamicParent != null) {
+                pendingChildren.remove(dynamicParent);
+                if(childrenMappings.remove(dynamicParent) != null) {
+                    answer++;
+                }
+            }
+            mappings.remove(dynamicChild);
+            snapshots.remove(dynamicChild);
+            return answer + removeChildren(dynamicChild);
+        }
+
+        /** Drops the children list of the given dynamic parent and everything below it **/
+        private int removeChildren(String dynamicParent) {
+            int answer = 0;
+            pendingChildren.remove(dynamicParent);
+            if(childrenMappings.remove(dynamicParent) != null) {
+                answer++;
+            }
+            Iterator<String> i = childrenMappings.keySet().iterator();
+            while(i.hasNext()) {
+                String path = i.next();
+                if(isAncestor(dynamicParent, path)) {
+                    pendingChildren.remove(path);
+                    i.remove();
+                    answer++;
+                }
+            }
+            i = mappings.keySet().iterator();
+            while(i.hasNext()) {
+                if(isAncestor(dynamicParent, i.next())) {
+                    i.remove();
+                }
+            }
+            i = snapshots.keySet().iterator();
+            while(i.hasNext()) {
+                if(isAncestor(dynamicParent, i.next())) {
+                    i.remove();
+                }
+            }
+            return answer;
+        }
+
+        private static void index(Map<String, Set<String>> index, String key, String value) {
+            Set<String> values = index.get(key);
+            if(values == null) {
+                values = new HashSet<>();
+                index.put(key, values);
+            }
+            values.add(value);
+        }
+    }
+
+    private static class Reference {
+        private final String source;
+        private final String reference;
+        private final boolean ref;
 
         public Reference(String source) {
             this(source, null);
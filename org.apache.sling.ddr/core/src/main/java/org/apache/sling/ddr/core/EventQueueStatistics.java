@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.ddr.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Counters of the Declarative Dynamic Resource Manager's event queue **/
+class EventQueueStatistics implements EventQueueStatisticsMBean {
+
+    private final AtomicLong queuedChanges = new AtomicLong();
+    private final AtomicLong coalescedChanges = new AtomicLong();
+    private final AtomicLong droppedChanges = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+    private final AtomicLong handledBatches = new AtomicLong();
+    private final AtomicInteger maxBatchSize = new AtomicInteger();
+    private volatile long lastBatchDuration;
+
+    void queued(boolean coalesced) {
+        queuedChanges.incrementAndGet();
+        if(coalesced) {
+            coalescedChanges.incrementAndGet();
+        }
+    }
+
+    void dropped() {
+        droppedChanges.incrementAndGet();
+    }
+
+    void overflow() {
+        overflows.incrementAndGet();
+    }
+
+    void setPendingChanges(int pending) {
+        pendingChanges.set(pending);
+    }
+
+    void handled(int batchSize, long duration) {
+        handledBatches.incrementAndGet();
+        lastBatchDuration = duration;
+        int max = maxBatchSize.get();
+        while(batchSize > max && !maxBatchSize.compareAndSet(max, batchSize)) {
+            max = maxBatchSize.get();
+        }
+    }
+
+    @Override
+    public long getQueuedChanges() {
+        return queuedChanges.get();
+    }
+
+    @Override
+    public long getCoalescedChanges() {
+        return coalescedChanges.get();
+    }
+
+    @Override
+    public long getDroppedChanges() {
+        return droppedChanges.get();
+    }
+
+    @Override
+    public long getOverflows() {
+        return overflows.get();
+    }
+
+    @Override
+    public int getPendingChanges() {
+        return pendingChanges.get();
+    }
+
+    @Override
+    public long getHandledBatches() {
+        return handledBatches.get();
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    @Override
+    public long getLastBatchDuration() {
+        return lastBatchDuration;
+    }
+}
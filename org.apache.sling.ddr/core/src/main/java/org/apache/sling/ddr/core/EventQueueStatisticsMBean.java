@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.ddr.core;
+
+/**
+ * JMX view on the queue of repository changes the Declarative Dynamic Resource Manager
+ * handles outside of the observation thread
+ */
+public interface EventQueueStatisticsMBean {
+
+    /** @return Number of changed paths added to the queue **/
+    long getQueuedChanges();
+
+    /** @return Number of changed paths that were already queued and merged with the queued one **/
+    long getCoalescedChanges();
+
+    /** @return Number of changed paths dropped because the queue was full and a full refresh was pending **/
+    long getDroppedChanges();
+
+    /** @return Number of times the queue was full and all the providers had to be refreshed **/
+    long getOverflows();
+
+    /** @return Number of changed paths currently waiting in the queue **/
+    int getPendingChanges();
+
+    /** @return Number of batches handled **/
+    long getHandledBatches();
+
+    /** @return Largest number of changed paths handled in one batch **/
+    int getMaxBatchSize();
+
+    /** @return Time in milliseconds it took to handle the last batch **/
+    long getLastBatchDuration();
+}
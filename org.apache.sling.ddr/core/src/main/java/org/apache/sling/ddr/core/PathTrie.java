@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.ddr.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps repository paths to values so that the values registered on a path, its parents
+ * or its children are found by walking the path segments instead of comparing every
+ * registered path.
+ * @param <T> Type of the values
+ */
+class PathTrie<T> {
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * @param path Path to register the value on
+     * @param value The value which replaces any existing one
+     * @return The value previously registered on that path or null if there was none
+     */
+    synchronized T put(String path, T value) {
+        Node<T> node = root;
+        for(String segment: segments(path)) {
+            Node<T> child = node.children.get(segment);
+            if(child == null) {
+                child = new Node<>();
+                node.children.put(segment, child);
+            }
+            node = child;
+        }
+        T answer = node.value;
+        node.value = value;
+        return answer;
+    }
+
+    /**
+     * @param path Path to register the value on
+     * @param value The value which is only registered if there is none yet
+     * @return The registered value which is the given value if there was none before
+     */
+    synchronized T putIfAbsent(String path, T value) {
+        T existing = get(path);
+        if(existing != null) {
+            return existing;
+        }
+        put(path, value);
+        return value;
+    }
+
+    /** Removes all the values **/
+    synchronized void clear() {
+        root.children.clear();
+        root.value = null;
+    }
+
+    /** @return The value registered exactly on the given path or null if there is none **/
+    synchronized T get(String path) {
+        Node<T> node = find(path);
+        return node == null ? null : node.value;
+    }
+
+    /** @return The value removed from the given path or null if there was none **/
+    synchronized T remove(String path) {
+        List<String> segments = segments(path);
+        List<Node<T>> nodes = new ArrayList<>();
+        Node<T> node = root;
+        for(String segment: segments) {
+            nodes.add(node);
+            node = node.children.get(segment);
+            if(node == null) {
+                return null;
+            }
+        }
+        T answer = node.value;
+        node.value = null;
+        // Prune the nodes that do not lead to any value anymore
+        for(int i = segments.size() - 1; i >= 0 && node.value == null && node.children.isEmpty(); i--) {
+            Node<T> parent = nodes.get(i);
+            parent.children.remove(segments.get(i));
+            node = parent;
+        }
+        return answer;
+    }
+
+    /** @return The value registered on the deepest of the given path and its parents or null if there is none **/
+    synchronized T getClosest(String path) {
+        T answer = root.value;
+        Node<T> node = root;
+        for(String segment: segments(path)) {
+            node = node.children.get(segment);
+            if(node == null) {
+                break;
+            }
+            if(node.value != null) {
+                answer = node.value;
+            }
+        }
+        return answer;
+    }
+
+    /** @return The values registered on the given path and its parents, the deepest one last **/
+    synchronized List<T> getAncestorsOrSelf(String path) {
+        List<T> answer = new ArrayList<>();
+        Node<T> node = root;
+        if(node.value != null) {
+            answer.add(node.value);
+        }
+        for(String segment: segments(path)) {
+            node = node.children.get(segment);
+            if(node == null) {
+                break;
+            }
+            if(node.value != null) {
+                answer.add(node.value);
+            }
+        }
+        return answer;
+    }
+
+    /** @return The values registered below the given path, not including the one on the path itself **/
+    synchronized List<T> getDescendants(String path) {
+        List<T> answer = new ArrayList<>();
+        Node<T> node = find(path);
+        if(node != null) {
+            collect(node, answer);
+        }
+        return answer;
+    }
+
+    private Node<T> find(String path) {
+        Node<T> node = root;
+        for(String segment: segments(path)) {
+            node = node.children.get(segment);
+            if(node == null) {
+                break;
+            }
+        }
+        return node;
+    }
+
+    private void collect(Node<T> node, List<T> values) {
+        for(Node<T> child: node.children.values()) {
+            if(child.value != null) {
+                values.add(child.value);
+            }
+            collect(child, values);
+        }
+    }
+
+    private static List<String> segments(String path) {
+        List<String> answer = new ArrayList<>();
+        for(String segment: path.split("/")) {
+            if(!segment.isEmpty()) {
+                answer.add(segment);
+            }
+        }
+        return answer;
+    }
+
+    private static class Node<T> {
+        private final Map<String, Node<T>> children = new HashMap<>();
+        private T value;
+    }
+}
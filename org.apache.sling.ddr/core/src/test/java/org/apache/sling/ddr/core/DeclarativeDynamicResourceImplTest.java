@@ -29,8 +29,11 @@ import org.junit.Test;
 
 import java.util.HashMap;
 
+import static org.apache.sling.ddr.api.Constants.DDR_INDICATOR;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 public class DeclarativeDynamicResourceImplTest {
 
@@ -74,4 +77,37 @@ public class DeclarativeDynamicResourceImplTest {
         assertNotNull("Missing Title Property", properties.get(testPropertyKey, String.class));
         assertEquals("Wrong Title Property", testPropertyValue, properties.get(testPropertyKey, String.class));
     }
+
+    @Test
+    public void testSharedSnapshot() throws Exception {
+        final String resourceType = "test/conf";
+        final String resourceSuperType = "test/static";
+        Resource source = new MockResource(
+            "/conf/test/settings/dynamic/test1",
+            new HashMap<String, Object>() {{
+                put("sling:resourceType", resourceType);
+                put("sling:resourceSuperType", resourceSuperType);
+                put("jcr:title", "Test-1");
+            }},
+            resourceResolver
+        );
+        DeclarativeDynamicResourceImpl.Snapshot snapshot = DeclarativeDynamicResourceImpl.createSnapshot(source, true);
+        DeclarativeDynamicResource first = DeclarativeDynamicResourceImpl.createSyntheticFromSnapshot(
+            resourceResolver, snapshot, "/apps/dynamic/test1"
+        );
+        DeclarativeDynamicResource second = DeclarativeDynamicResourceImpl.createSyntheticFromSnapshot(
+            resourceResolver, snapshot, "/apps/other/test1"
+        );
+        assertEquals("Wrong Resource Path", "/apps/other/test1", second.getPath());
+        assertEquals("Wrong Resource Type", resourceType, second.getResourceType());
+        assertEquals("Wrong Resource Super Type", resourceSuperType, second.getValueMap().get("sling:resourceSuperType", String.class));
+        assertEquals("Wrong DDR Indicator", "true", second.getResourceMetadata().getParameterMap().get(DDR_INDICATOR));
+        assertSame("Value Map is not shared", first.getValueMap(), second.getValueMap());
+        try {
+            first.getValueMap().put("jcr:title", "Changed");
+            fail("Shared Value Map must not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
 }
@@ -43,7 +43,6 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.observation.Event;
 import javax.jcr.observation.EventIterator;
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -59,10 +58,13 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.Silent.class)
@@ -222,12 +224,59 @@ public class DeclarativeDynamicResourceManagerServiceTest {
         when(eventIterator.hasNext()).thenReturn(true, false);
         when(eventIterator.nextEvent()).thenReturn(propertyChangeEvent);
 
-        Field mappingsField = provider.getClass().getDeclaredField("mappings");
-        mappingsField.setAccessible(true);
-        assertFalse("Mappings should not be empty", ((Map) mappingsField.get(provider)).isEmpty());
+        DeclarativeDynamicResourceProviderHandler handler = (DeclarativeDynamicResourceProviderHandler) provider;
+        assertFalse("Mappings should not be empty", handler.getMappings().isEmpty());
         doNothing().when(resourceResolver).close();
         declarativeDynamicResourceManagerService.onEvent(eventIterator);
-        assertTrue("Mappings were not cleared", ((Map) mappingsField.get(provider)).isEmpty());
+        assertTrue("Mappings were not cleared", handler.getMappings().isEmpty());
+    }
+
+    @Test
+    public void testDebouncedEvents() throws Exception {
+        String confResourceRoot = "/conf/test/settings/dynamic";
+        String dynamicResourceRoot = "/apps/dynamic";
+
+        context.load().json("/ddr-installation/ddr-conf-settings.json", "/conf");
+        context.load().json("/ddr-installation/ddr-apps-settings.json", "/apps");
+        Resource sourceRoot = resourceResolver.getResource(confResourceRoot);
+        Resource targetRoot = resourceResolver.getResource(dynamicResourceRoot);
+        when(resourceResolver.findResources(anyString(), anyString())).thenReturn(
+            Arrays.asList(sourceRoot).iterator()
+        );
+
+        DeclarativeDynamicResourceManagerService.Configuration configuration = createConfiguration(null, null);
+        when(configuration.event_debounce_delay()).thenReturn(200);
+        declarativeDynamicResourceManagerService.activate(context.bundleContext(), configuration);
+
+        DeclarativeDynamicResourceProviderHandler handler = (DeclarativeDynamicResourceProviderHandler)
+            declarativeDynamicResourceManagerService.getRegisteredServicesByTarget().values().iterator().next();
+        getResourcesFromProvider(handler, resolveContext, targetRoot);
+        assertFalse("Mappings should not be empty", handler.getMappings().isEmpty());
+
+        doNothing().when(resourceResolver).close();
+        clearInvocations(resourceResolverFactory);
+        // A burst of events for the same resource
+        for(String property: Arrays.asList("jcr:title", "jcr:description", "jcr:title")) {
+            Event propertyChangeEvent = mock(Event.class);
+            when(propertyChangeEvent.getPath()).thenReturn(confResourceRoot + "/test1/" + property);
+            when(propertyChangeEvent.getType()).thenReturn(Event.PROPERTY_CHANGED);
+            EventIterator eventIterator = mock(EventIterator.class);
+            when(eventIterator.hasNext()).thenReturn(true, false);
+            when(eventIterator.nextEvent()).thenReturn(propertyChangeEvent);
+            declarativeDynamicResourceManagerService.onEvent(eventIterator);
+        }
+        assertFalse("Events must not be handled before the delay", handler.getMappings().isEmpty());
+        EventQueueStatisticsMBean statistics = declarativeDynamicResourceManagerService.getStatistics();
+        for(int i = 0; i < 50 && statistics.getHandledBatches() == 0; i++) {
+            Thread.sleep(100);
+        }
+        assertTrue("Mappings were not cleared", handler.getMappings().isEmpty());
+        // All the events are handled in a single batch
+        verify(resourceResolverFactory, times(1)).getServiceResourceResolver(any(Map.class));
+        assertEquals("Wrong number of queued changes", 3, statistics.getQueuedChanges());
+        assertEquals("Wrong number of coalesced changes", 2, statistics.getCoalescedChanges());
+        assertEquals("Wrong number of batches", 1, statistics.getHandledBatches());
+        assertEquals("Wrong batch size", 1, statistics.getMaxBatchSize());
     }
 
     private DeclarativeDynamicResourceManagerService.Configuration createConfiguration(
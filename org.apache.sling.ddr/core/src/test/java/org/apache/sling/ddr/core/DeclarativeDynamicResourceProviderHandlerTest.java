@@ -53,12 +53,15 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.Silent.class)
@@ -190,6 +193,46 @@ public class DeclarativeDynamicResourceProviderHandlerTest {
         assertEquals("Title Property wrong", testPropertyValue, title);
     }
 
+    @Test
+    public void testChildrenAreObtainedOnce() throws Exception {
+        String confResourceRoot = "/conf/testFilter/settings/dynamic";
+        String dynamicResourceRoot = "/apps/dynamicFilter";
+
+        context.load().json("/ddr-filter/ddr-conf-settings.json", "/conf");
+        context.load().json("/ddr-filter/ddr-apps-settings.json", "/apps");
+
+        Resource dynamicParent = resourceResolver.getResource(dynamicResourceRoot);
+        declarativeDynamicResourceProviderHandler.registerService(
+            context.bundleContext().getBundle(), dynamicResourceRoot, confResourceRoot,
+            resourceResolver, null, null,
+            new HashMap<String, List<String>>() {{
+                put("jcr:primaryType", Arrays.asList("nt:file"));
+            }},
+            null
+        );
+
+        List<Resource> first = getResourcesFromProvider(declarativeDynamicResourceProviderHandler, resolveContext, dynamicParent);
+        List<Resource> second = getResourcesFromProvider(declarativeDynamicResourceProviderHandler, resolveContext, dynamicParent);
+        assertEquals("Listing the children twice must return the same children", first.size(), second.size());
+        Resource missing = declarativeDynamicResourceProviderHandler.getResource(
+            resolveContext, dynamicResourceRoot + "/doesNotExist", resourceContext, dynamicParent
+        );
+        assertNull("Missing DDR must not be returned", missing);
+        Resource test1 = declarativeDynamicResourceProviderHandler.getResource(
+            resolveContext, dynamicResourceRoot + "/test1", resourceContext, dynamicParent
+        );
+        assertSame(
+            "Snapshot of the source is not shared",
+            filterResourceByName(first, true, "test1").get(0).getValueMap(), test1.getValueMap()
+        );
+        // The provider folder is only enumerated once for all of these calls
+        verify(resourceResolver, times(1)).getResource(confResourceRoot + SLASH);
+
+        declarativeDynamicResourceProviderHandler.update(confResourceRoot);
+        getResourcesFromProvider(declarativeDynamicResourceProviderHandler, resolveContext, dynamicParent);
+        verify(resourceResolver, times(2)).getResource(confResourceRoot + SLASH);
+    }
+
     @Test
     public void testListReferences() throws Exception {
         String confResourceRoot = "/conf/testReference/settings/dynamic";
@@ -221,6 +264,42 @@ public class DeclarativeDynamicResourceProviderHandlerTest {
         log.info("Ref Grandchild: '{}'", refGrandchild);
     }
 
+    @Test
+    public void testScopedUpdates() throws Exception {
+        String confResourceRoot = "/conf/testReference/settings/dynamic";
+        String dynamicResourceRoot = "/apps/dynamicReference";
+
+        context.load().json("/ddr-reference/ddr-conf-settings.json", "/conf");
+        context.load().json("/ddr-reference/ddr-apps-settings.json", "/apps");
+
+        Resource dynamicParent = resourceResolver.getResource(dynamicResourceRoot);
+
+        doNothing().when(declarativeDynamicResourceManager).addReference(anyString(), anyString());
+
+        declarativeDynamicResourceProviderHandler.registerService(
+            context.bundleContext().getBundle(), dynamicResourceRoot, confResourceRoot,
+            resourceResolver, declarativeDynamicResourceManager,null, null,
+            Arrays.asList("sling:ddrRef")
+        );
+
+        checkAndGetResource(checkAndGetResource(dynamicParent, "refWithChild"), "child");
+        checkAndGetResource(checkAndGetResource(dynamicParent, "refWithGrandChild"), "child");
+        Map<String, ?> mappings = declarativeDynamicResourceProviderHandler.getMappings();
+        assertTrue("Referenced child not mapped", mappings.containsKey(dynamicResourceRoot + "/refWithChild/child"));
+        assertTrue("Referenced child not mapped", mappings.containsKey(dynamicResourceRoot + "/refWithGrandChild/child"));
+
+        // A change inside a referenced resource only invalidates the dynamic resources backed by it
+        declarativeDynamicResourceProviderHandler.update("/apps/references/withChild/child");
+        assertFalse("Changed child still mapped", mappings.containsKey(dynamicResourceRoot + "/refWithChild/child"));
+        assertTrue("Unrelated child was invalidated", mappings.containsKey(dynamicResourceRoot + "/refWithGrandChild/child"));
+        assertTrue("Unrelated sibling was invalidated", mappings.containsKey(dynamicResourceRoot + "/refWithChild"));
+        checkAndGetResource(checkAndGetResource(dynamicParent, "refWithChild"), "child");
+
+        // A change of the provider root invalidates everything
+        declarativeDynamicResourceProviderHandler.update(confResourceRoot);
+        assertTrue("Mappings were not cleared", declarativeDynamicResourceProviderHandler.getMappings().isEmpty());
+    }
+
     @Test
     public void testListChildrenWithFailingContextResourceResolver() throws Exception {
         String confResourceRoot = "/conf/testReference/settings/dynamic";
@@ -249,7 +328,6 @@ public class DeclarativeDynamicResourceProviderHandlerTest {
     @Test
     public void testUpdates() throws Exception {
         String resourceName1 = "test1";
-        String newResourceName1 = "test1a";
         String confResourceRoot = "/conf/testFilter/settings/dynamic";
         String dynamicResourceRoot = "/apps/dynamicFilter";
 
@@ -291,7 +369,8 @@ public class DeclarativeDynamicResourceProviderHandlerTest {
         resources = filterResourceByName(resources, true, resourceName1);
         assertTrue("Moved resource should not have been found here", resources.isEmpty());
 
-        declarativeDynamicResourceProviderHandler.update(confResourceRoot + SLASH + newResourceName1);
+        // Only the moved resource is invalidated
+        declarativeDynamicResourceProviderHandler.update(confResourceRoot + SLASH + "container" + SLASH + resourceName1);
 
         resources = getResourcesFromProvider(declarativeDynamicResourceProviderHandler, resolveContext, container);
         resources = filterResourceByName(resources, true, resourceName1);
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.ddr.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PathTrieTest {
+
+    @Test
+    public void testLookups() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/conf/a/settings/dynamic", "a");
+        trie.put("/conf/a/settings/dynamic/nested", "nested");
+        trie.put("/conf/b/settings/dynamic", "b");
+
+        assertEquals("Wrong exact match", "a", trie.get("/conf/a/settings/dynamic"));
+        assertNull("Parent must not have a value", trie.get("/conf/a"));
+        assertEquals("Wrong closest match", "a", trie.getClosest("/conf/a/settings/dynamic/test1/jcr:content"));
+        assertEquals("Wrong closest match", "nested", trie.getClosest("/conf/a/settings/dynamic/nested/test1"));
+        assertNull("Sibling with same prefix must not match", trie.getClosest("/conf/a/settings/dynamicOther"));
+        assertEquals(
+            "Wrong ancestors", Arrays.asList("a", "nested"),
+            trie.getAncestorsOrSelf("/conf/a/settings/dynamic/nested/test1")
+        );
+        assertEquals(
+            "Wrong descendants", new HashSet<>(Arrays.asList("a", "nested", "b")),
+            new HashSet<>(trie.getDescendants("/conf"))
+        );
+        assertEquals(
+            "Descendants must not include the path itself", Collections.singletonList("nested"),
+            trie.getDescendants("/conf/a/settings/dynamic")
+        );
+    }
+
+    @Test
+    public void testRemove() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/conf/a/settings/dynamic", "a");
+        trie.put("/conf/a/settings/dynamic/nested", "nested");
+
+        assertEquals("Wrong removed value", "a", trie.remove("/conf/a/settings/dynamic"));
+        assertNull("Removed value still found", trie.get("/conf/a/settings/dynamic"));
+        assertEquals("Child of removed value lost", "nested", trie.getClosest("/conf/a/settings/dynamic/nested/x"));
+        assertNull("Unknown path must not remove anything", trie.remove("/conf/b"));
+        assertEquals("Wrong removed value", "nested", trie.remove("/conf/a/settings/dynamic/nested"));
+        assertEquals("Trie must be empty", Collections.emptyList(), trie.getDescendants("/"));
+        assertEquals("Existing value must be kept", "first", trie.putIfAbsent("/apps/x", "first"));
+        assertEquals("Existing value must be kept", "first", trie.putIfAbsent("/apps/x", "second"));
+    }
+}
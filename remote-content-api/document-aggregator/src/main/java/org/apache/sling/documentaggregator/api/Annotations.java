@@ -23,6 +23,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.osgi.annotation.versioning.ProviderType;
@@ -41,6 +43,14 @@ public class Annotations {
     private List<String> resolveByPathProperties;
     private List<String> excludeNodeNames;
 
+    /** Max number of memoized includeProperty decisions */
+    static final int MAX_CACHED_PROPERTY_DECISIONS = 1000;
+
+    /** Memoized includeProperty decisions, as a resource type usually
+     *  has a small set of property names
+     */
+    private final Map<String, Boolean> includedProperties = new ConcurrentHashMap<>();
+
     private Annotations(String resourceType) {
         this.resourceType = resourceType;
     }
@@ -84,6 +94,21 @@ public class Annotations {
 
     // TODO should accept a parent Annotations - other methods as well?
     public boolean includeProperty(String name) {
+        if(includePropertyPattern == null && excludePropertyPattern == null) {
+            return true;
+        }
+        final Boolean cached = includedProperties.get(name);
+        if(cached != null) {
+            return cached;
+        }
+        final boolean result = matchProperty(name);
+        if(includedProperties.size() < MAX_CACHED_PROPERTY_DECISIONS) {
+            includedProperties.put(name, result);
+        }
+        return result;
+    }
+
+    private boolean matchProperty(String name) {
         // include has priority over exclude
         boolean result = includePropertyPattern == null ? true : includePropertyPattern.matcher(name).matches();
         if(!result) {
@@ -19,9 +19,18 @@
 
 package org.apache.sling.documentaggregator.api;
 
+import org.apache.sling.api.resource.Resource;
 import org.osgi.annotation.versioning.ProviderType;
 
 @ProviderType
 public interface AnnotationsRegistry {
     Annotations getAnnotations(String resourceType);
+
+    /** Get the Annotations which apply to a Resource. By default
+     *  this only considers its resource type, implementations can
+     *  also take resource supertypes into account.
+     */
+    default Annotations getAnnotations(Resource r) {
+        return getAnnotations(r.getResourceType());
+    }
 }
\ No newline at end of file
@@ -33,12 +33,25 @@ public interface DocumentAggregator {
         String pathToUrl(String path);
     }
 
+    /** Notified of the paths of the Resources that an aggregation depends on,
+     *  including the targets of resolved references even if they do not exist.
+     *  Can be called concurrently if the aggregation runs in parallel.
+     */
+    interface ResourcePathListener {
+        void onResourcePath(String path);
+    }
+
     public static class Options {
         public final boolean debug;
         public final UrlBuilder urlBuilder;
+        public final ResourcePathListener pathListener;
         public Options(boolean debug, UrlBuilder urlBuilder) {
+            this(debug, urlBuilder, null);
+        }
+        public Options(boolean debug, UrlBuilder urlBuilder, ResourcePathListener pathListener) {
             this.debug = debug;
             this.urlBuilder = urlBuilder;
+            this.pathListener = pathListener;
         }
     }
     
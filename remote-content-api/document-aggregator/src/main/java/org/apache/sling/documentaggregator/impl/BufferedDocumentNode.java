@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.documentaggregator.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.sling.documentaggregator.api.DocumentTree;
+import org.apache.sling.documentaggregator.api.DocumentTree.DocumentNode;
+
+/** A DocumentNode that records what's added to it, to replay it
+ *  later in the same order to another DocumentNode. Used to map
+ *  subtrees in parallel while writing them to their destination
+ *  sequentially.
+ */
+class BufferedDocumentNode implements DocumentTree.DocumentNode {
+
+    private final String name;
+    private final List<Object> entries = new ArrayList<>();
+
+    private static class Value {
+        final String name;
+        final Object value;
+        final boolean isArray;
+
+        Value(String name, Object value, boolean isArray) {
+            this.name = name;
+            this.value = value;
+            this.isArray = isArray;
+        }
+    }
+
+    BufferedDocumentNode(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public DocumentNode addChild(String name) {
+        final BufferedDocumentNode child = new BufferedDocumentNode(name);
+        entries.add(child);
+        return child;
+    }
+
+    @Override
+    public DocumentNode addValue(String name, Object value) {
+        entries.add(new Value(name, value, false));
+        return this;
+    }
+
+    @Override
+    public DocumentNode addValue(String name, Object[] value) {
+        entries.add(new Value(name, value, true));
+        return this;
+    }
+
+    /** Add our values and children to dest, closing each child once it's written */
+    void replayTo(DocumentNode dest) {
+        for(Object o : entries) {
+            if(o instanceof Value) {
+                final Value v = (Value)o;
+                if(v.isArray) {
+                    dest.addValue(v.name, (Object[])v.value);
+                } else {
+                    dest.addValue(v.name, v.value);
+                }
+            } else {
+                final BufferedDocumentNode child = (BufferedDocumentNode)o;
+                final DocumentNode childDest = dest.addChild(child.name);
+                child.replayTo(childDest);
+                childDest.close();
+            }
+        }
+    }
+
+    @Override
+    public <AdapterType> AdapterType adaptTo(Class<AdapterType> type) {
+        throw new IllegalArgumentException("A buffered node cannot adapt, it must be replayed");
+    }
+
+    @Override
+    public void close() {
+        // nothing to close
+    }
+}
@@ -19,31 +19,229 @@
 
 package org.apache.sling.documentaggregator.impl;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.documentaggregator.api.Annotations;
 import org.apache.sling.documentaggregator.api.AnnotationsRegistry;
 import org.apache.sling.documentaggregator.api.DocumentAggregator;
 import org.apache.sling.documentaggregator.api.DocumentTree;
 import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Component(service = DocumentAggregator.class)
+@Designate(ocd = DocumentAggregatorImpl.Config.class)
 public class DocumentAggregatorImpl implements DocumentAggregator {
 
+    /** Added to nodes which are not mapped, with the reason as its value */
+    public static final String TRUNCATED = "sling:dmap:truncated";
+
+    @ObjectClassDefinition(
+        name = "Apache Sling Document Aggregator",
+        description = "Maps Resources to document trees"
+    )
+    public @interface Config {
+        @AttributeDefinition(
+            name = "Parallel aggregation",
+            description = "Map sibling subtrees and resolved references in parallel, using a fork/join pool. "
+                + "Each thread reads with its own clone of the request's ResourceResolver"
+        )
+        boolean parallel() default false;
+
+        @AttributeDefinition(
+            name = "Parallelism",
+            description = "Number of threads used for parallel aggregation, 0 means the number of available processors"
+        )
+        int parallelism() default 0;
+
+        @AttributeDefinition(
+            name = "Maximum depth",
+            description = "Resources nested deeper than this are not mapped, their nodes are marked as truncated. 0 means no limit"
+        )
+        int max_depth() default 0;
+
+        @AttributeDefinition(
+            name = "Maximum nodes",
+            description = "Maximum number of Resources mapped by a single aggregation, the remaining ones are marked as truncated. 0 means no limit. "
+                + "With parallel aggregation the number of mapped Resources is bounded in the same way, but which ones are truncated "
+                + "depends on the order in which the threads reach them"
+        )
+        int max_nodes() default 0;
+    }
+
     private final PropertiesMapper propertiesMapper = new PropertiesMapper();
     private final Logger log = LoggerFactory.getLogger(getClass());
+    private final AnnotationsRegistry annotationsRegistry;
+    private final int maxDepth;
+    private final int maxNodes;
+    private final ForkJoinPool pool;
+
+    /** State of a single aggregation */
+    private static class Aggregation {
+        final DocumentAggregator.Options opt;
+        final AtomicInteger nodesCount = new AtomicInteger();
+
+        /** In parallel mode, the original ResourceResolver and a clone of it
+         *  per thread, as ResourceResolvers are not thread-safe. The original
+         *  one is then only used to create the clones.
+         */
+        private final ResourceResolver original;
+        private final Map<Thread, ResourceResolver> clones;
+
+        Aggregation(DocumentAggregator.Options opt) {
+            this.opt = opt;
+            this.original = null;
+            this.clones = null;
+        }
 
-    @Reference
-    private AnnotationsRegistry annotationsRegistry;
+        Aggregation(DocumentAggregator.Options opt, ResourceResolver original) {
+            this.opt = opt;
+            this.original = original;
+            this.clones = new ConcurrentHashMap<>();
+        }
+
+        /** Returns r if it can be used by the current thread, which is always
+         *  the case in sequential mode. In parallel mode r is only read again,
+         *  with the current thread's ResourceResolver, if it was read by
+         *  another thread: that's the root Resource and the subtrees that
+         *  are stolen by another worker, all other Resources are reused.
+         *  @return null if r is not found by that ResourceResolver
+         */
+        Resource local(Resource r) {
+            if(clones == null) {
+                return r;
+            }
+            final ResourceResolver resolver = clones.computeIfAbsent(Thread.currentThread(), t -> {
+                synchronized(original) {
+                    try {
+                        return original.clone(null);
+                    } catch(LoginException e) {
+                        throw new RuntimeException("Unable to clone ResourceResolver for parallel aggregation", e);
+                    }
+                }
+            });
+            return r.getResourceResolver() == resolver ? r : resolver.getResource(r.getPath());
+        }
+
+        void close() {
+            if(clones != null) {
+                clones.values().forEach(ResourceResolver::close);
+            }
+        }
+
+        void visited(String path) {
+            if(opt.pathListener != null) {
+                opt.pathListener.onResourcePath(path);
+            }
+        }
+    }
+
+    /** The chain of Resources being mapped, used to detect cycles */
+    private static class Ancestors {
+        final String path;
+        final Ancestors parent;
+
+        Ancestors(String path, Ancestors parent) {
+            this.path = path;
+            this.parent = parent;
+        }
+
+        boolean contains(String p) {
+            for(Ancestors a = this; a != null; a = a.parent) {
+                if(a.path.equals(p)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** A child node to map, from a dereferenced or child Resource */
+    private static class Slot {
+        final String name;
+        final Resource resource;
+        final String documentResourceType;
+        final boolean recurse;
+        final String derefPropertyName;
+        final String derefPath;
+
+        Slot(String name, Resource resource, String documentResourceType, boolean recurse, String derefPropertyName, String derefPath) {
+            this.name = name;
+            this.resource = resource;
+            this.documentResourceType = documentResourceType;
+            this.recurse = recurse;
+            this.derefPropertyName = derefPropertyName;
+            this.derefPath = derefPath;
+        }
+    }
+
+    @Activate
+    public DocumentAggregatorImpl(@Reference AnnotationsRegistry annotationsRegistry, Config cfg) {
+        this.annotationsRegistry = annotationsRegistry;
+        this.maxDepth = cfg.max_depth();
+        this.maxNodes = cfg.max_nodes();
+        if(cfg.parallel()) {
+            final int parallelism = cfg.parallelism() > 0 ? cfg.parallelism() : Runtime.getRuntime().availableProcessors();
+            pool = new ForkJoinPool(parallelism, p -> {
+                final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                t.setName("sling-document-aggregator-" + t.getPoolIndex());
+                return t;
+            }, null, false);
+        } else {
+            pool = null;
+        }
+        log.info("Activated with parallel={}, maxDepth={}, maxNodes={}", pool != null, maxDepth, maxNodes);
+    }
+
+    @Deactivate
+    public void deactivate() {
+        if(pool != null) {
+            pool.shutdown();
+        }
+    }
 
     @Override
     public void aggregate(@NotNull Resource originalResource, @NotNull DocumentTree.DocumentNode dest, DocumentAggregator.Options opt) {
-        Annotations annot = annotationsRegistry.getAnnotations(originalResource.getResourceType());
+        if(pool != null) {
+            // Run in our pool so that mapResource can fork its subtasks there
+            final Aggregation agg = new Aggregation(opt, originalResource.getResourceResolver());
+            try {
+                pool.invoke(ForkJoinTask.adapt(() -> aggregate(originalResource, dest, agg)));
+            } finally {
+                agg.close();
+            }
+        } else {
+            aggregate(originalResource, dest, new Aggregation(opt));
+        }
+    }
+
+    private void aggregate(@NotNull Resource resource, @NotNull DocumentTree.DocumentNode dest, Aggregation agg) {
+        final Resource originalResource = agg.local(resource);
+        if(originalResource == null) {
+            throw new RuntimeException("Resource " + resource.getPath() + " not found");
+        }
+        Annotations annot = annotationsRegistry.getAnnotations(originalResource);
         dest.addValue("path", originalResource.getPath());
+        agg.visited(originalResource.getPath());
         final String substPath = annot.childSubstitutePath();
         Resource r = originalResource;
         if(substPath != null) {
@@ -51,57 +249,91 @@ public class DocumentAggregatorImpl implements DocumentAggregator {
             if(r == null) {
                 throw new RuntimeException("Child " + substPath + " of resource " + originalResource.getPath() + "not found");
             }
-            annot = annotationsRegistry.getAnnotations(r.getResourceType());
+            annot = annotationsRegistry.getAnnotations(r);
         }
         log.debug("Top level Resource map {} as {}: {}", r.getPath(), r.getResourceType(), annot);
-        mapResource(r, dest, opt, r.getResourceType(), annot, annot.isDocumentRoot());
+        mapResource(r, dest, agg, null, 0, r.getResourceType(), annot, annot.isDocumentRoot());
     }
 
-    private void mapResource(@NotNull Resource r, @NotNull DocumentTree.DocumentNode dest, 
-        DocumentAggregator.Options opt, String documentResourceType, Annotations documentAnnot, boolean recurse) {
+    /** Maps r to dest, writing each node completely before moving on
+     *  to the next one, so that a DocumentTree which writes its output
+     *  incrementally could do so as we go: debug info first, then properties, then dereferenced and
+     *  child resources, each of which is closed once mapped.
+     */
+    private void mapResource(@NotNull Resource resource, @NotNull DocumentTree.DocumentNode dest, Aggregation agg, Ancestors ancestors,
+        int depth, String documentResourceType, Annotations documentAnnot, boolean recurse) {
 
-        final Annotations resourceAnnot = annotationsRegistry.getAnnotations(r.getResourceType());
-        final DocumentTree.DocumentNode debug = opt.debug ? dest.addChild("sling:dmap:debug") : null;
-        if(debug != null) {
-            debug.addValue("sling:dmap:path", r.getPath());
-            debug.addValue("sling:dmap:resourceType", r.getResourceType());
-            debug.addValue("sling:dmap:documentAnnot", documentAnnot.toString());
-            debug.addValue("sling:dmap:resourceAnnot", resourceAnnot.toString());
+        agg.visited(resource.getPath());
+        final Resource r = agg.local(resource);
+        if(r == null) {
+            truncate(dest, resource, "notFound");
+            return;
         }
-    
+        if(ancestors != null && ancestors.contains(r.getPath())) {
+            truncate(dest, r, "cycle");
+            return;
+        } else if(maxDepth > 0 && depth > maxDepth) {
+            truncate(dest, r, "maxDepth");
+            return;
+        } else if(maxNodes > 0 && agg.nodesCount.incrementAndGet() > maxNodes) {
+            truncate(dest, r, "maxNodes");
+            return;
+        }
+
+        final Annotations resourceAnnot = annotationsRegistry.getAnnotations(r);
+
+        boolean excluded = false;
         for(String name : documentAnnot.excludeNodeNames()) {
             if(name.equals(r.getName())) {
-                if(debug != null) {
-                    debug.addValue("sling:dmap:excluded", documentAnnot.toString());
-                }
                 log.debug("Resource {} excluded by node name ({})", r.getPath(), documentAnnot);
-                return;
+                excluded = true;
+                break;
             }
         }
 
-        log.debug("Mapping Resource {} as {}: {}", r.getPath(), r.getResourceType(), documentAnnot);
-        propertiesMapper.mapProperties(dest, r, documentAnnot);
-
         // Resolve by path if specified
-        // TODO detect cycles which might lead to infinite loops
-        resourceAnnot.resolveByPathPropertyNames().forEach(derefPathPropertyName -> {
-            log.debug("Resolving by path {} on {}", r.getPath(), derefPathPropertyName);
-            final ValueMap vm = r.adaptTo(ValueMap.class);
-            final String derefPath = vm == null ? null : vm.get(derefPathPropertyName, String.class);
-            if(derefPath != null) {
-                final Resource dereferenced = r.getResourceResolver().getResource(derefPath);
-                if(dereferenced != null) {
-                    final DocumentTree.DocumentNode derefNode = dest.addChild("sling:dmap:resolved");
-                    derefNode.addValue("sling:dmap:resolvedFrom", derefPathPropertyName);
-                    derefNode.addValue("sling:dmap:resolvePath", derefPath);
-                    mapResource(dereferenced, derefNode, opt, documentResourceType, documentAnnot, recurse);
-                } else if(debug != null) {
-                    debug.addValue("Resolve by path " + derefPathPropertyName, "not found:" + derefPath);
+        final Map<String, String> derefPaths = new LinkedHashMap<>();
+        final List<Slot> slots = new ArrayList<>();
+        if(!excluded) {
+            resourceAnnot.resolveByPathPropertyNames().forEach(derefPathPropertyName -> {
+                log.debug("Resolving by path {} on {}", r.getPath(), derefPathPropertyName);
+                final ValueMap vm = r.adaptTo(ValueMap.class);
+                final String derefPath = vm == null ? null : vm.get(derefPathPropertyName, String.class);
+                if(derefPath != null) {
+                    agg.visited(derefPath);
+                    derefPaths.put(derefPathPropertyName, derefPath);
+                    final Resource target = r.getResourceResolver().getResource(derefPath);
+                    if(target != null) {
+                        slots.add(new Slot("sling:dmap:resolved", target, documentResourceType, recurse, derefPathPropertyName, derefPath));
+                    }
                 }
+            });
+        }
+
+        if(agg.opt.debug) {
+            final DocumentTree.DocumentNode debug = dest.addChild("sling:dmap:debug");
+            debug.addValue("sling:dmap:path", r.getPath());
+            debug.addValue("sling:dmap:resourceType", r.getResourceType());
+            debug.addValue("sling:dmap:documentAnnot", documentAnnot.toString());
+            debug.addValue("sling:dmap:resourceAnnot", resourceAnnot.toString());
+            if(excluded) {
+                debug.addValue("sling:dmap:excluded", documentAnnot.toString());
             }
-        });
+            derefPaths.forEach((derefPathPropertyName, derefPath) -> {
+                if(slots.stream().noneMatch(s -> derefPathPropertyName.equals(s.derefPropertyName))) {
+                    debug.addValue("Resolve by path " + derefPathPropertyName, "not found:" + derefPath);
+                }
+            });
+            debug.close();
+        }
+
+        if(excluded) {
+            return;
+        }
+
+        log.debug("Mapping Resource {} as {}: {}", r.getPath(), r.getResourceType(), documentAnnot);
+        propertiesMapper.mapProperties(dest, r, documentAnnot);
 
-        // TODO detect too much recursion?
         if(recurse) {
             log.debug("Recursing into {}", r.getPath());
             for(Resource child : r.getChildren()) {
@@ -111,13 +343,50 @@ public class DocumentAggregatorImpl implements DocumentAggregator {
                     continue;
                 }
                 final String childResourceType = child.getResourceType();
-                if(annotationsRegistry.getAnnotations(childResourceType).visitContent()) {
-                    final DocumentTree.DocumentNode childDest = dest.addChild(child.getName());
-                    mapResource(child, childDest, opt, childResourceType, documentAnnot, true);
+                if(annotationsRegistry.getAnnotations(child).visitContent()) {
+                    slots.add(new Slot(child.getName(), child, childResourceType, true, null, null));
                 }
             }
         } else if(log.isDebugEnabled()) {
             log.debug("NOT recursing into {}", r.getPath());
         }
+
+        final Ancestors path = new Ancestors(r.getPath(), ancestors);
+        if(pool != null && slots.size() > 1) {
+            // Map the slots in parallel, then write them in order
+            final List<ForkJoinTask<BufferedDocumentNode>> tasks = new ArrayList<>(slots.size());
+            for(Slot slot : slots) {
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    final BufferedDocumentNode buffer = new BufferedDocumentNode(slot.name);
+                    mapSlot(slot, buffer, agg, path, depth, documentAnnot);
+                    return buffer;
+                }));
+            }
+            ForkJoinTask.invokeAll(tasks);
+            for(int i=0; i < slots.size(); i++) {
+                final DocumentTree.DocumentNode childDest = dest.addChild(slots.get(i).name);
+                tasks.get(i).join().replayTo(childDest);
+                childDest.close();
+            }
+        } else {
+            for(Slot slot : slots) {
+                final DocumentTree.DocumentNode childDest = dest.addChild(slot.name);
+                mapSlot(slot, childDest, agg, path, depth, documentAnnot);
+                childDest.close();
+            }
+        }
+    }
+
+    private void mapSlot(Slot slot, DocumentTree.DocumentNode dest, Aggregation agg, Ancestors ancestors, int depth, Annotations documentAnnot) {
+        if(slot.derefPropertyName != null) {
+            dest.addValue("sling:dmap:resolvedFrom", slot.derefPropertyName);
+            dest.addValue("sling:dmap:resolvePath", slot.derefPath);
+        }
+        mapResource(slot.resource, dest, agg, ancestors, depth + 1, slot.documentResourceType, documentAnnot, slot.recurse);
+    }
+
+    private void truncate(DocumentTree.DocumentNode dest, Resource r, String reason) {
+        log.debug("Resource {} not mapped: {}", r.getPath(), reason);
+        dest.addValue(TRUNCATED, reason);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.documentaggregator.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class AnnotationsTest {
+
+    private final Annotations annot = Annotations.forResourceType("test/type")
+        .withIncludePropertyPattern("jcr:title|jcr:description")
+        .withExcludePropertyPattern("jcr:.*|cq:.*")
+        .build();
+
+    @Test
+    public void includeHasPriority() {
+        for(int i=0; i < 2; i++) {
+            assertTrue(annot.includeProperty("jcr:title"));
+            assertTrue(annot.includeProperty("text"));
+            assertFalse(annot.includeProperty("jcr:created"));
+            assertFalse(annot.includeProperty("cq:tags"));
+        }
+    }
+
+    @Test
+    public void noPatterns() {
+        assertTrue(Annotations.forResourceType("test/other").build().includeProperty("jcr:created"));
+    }
+
+    @Test
+    public void moreNamesThanCached() {
+        final int n = Annotations.MAX_CACHED_PROPERTY_DECISIONS * 2;
+        for(int pass=0; pass < 2; pass++) {
+            int included = 0;
+            for(int i=0; i < n; i++) {
+                if(annot.includeProperty((i % 2 == 0 ? "jcr:p" : "p") + i)) {
+                    included++;
+                }
+            }
+            assertEquals(n / 2, included);
+        }
+    }
+}
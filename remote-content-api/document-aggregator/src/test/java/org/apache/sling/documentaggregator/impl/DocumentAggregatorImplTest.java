@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.documentaggregator.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceWrapper;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.documentaggregator.api.Annotations;
+import org.apache.sling.documentaggregator.api.AnnotationsRegistry;
+import org.apache.sling.documentaggregator.api.DocumentAggregator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DocumentAggregatorImplTest {
+
+    private static final String DOC_TYPE = "test/document";
+    private static final String REF_TYPE = "test/reference";
+
+    private final ResourceResolver resolver = mock(ResourceResolver.class);
+    private final Map<String, List<Resource>> children = new HashMap<>();
+    private final Map<String, Resource> resources = new HashMap<>();
+    private final Set<String> originalResolverThreads = new ConcurrentSkipListSet<>();
+    private final List<ResourceResolver> clones = new CopyOnWriteArrayList<>();
+    private final List<DocumentAggregatorImpl> activated = new ArrayList<>();
+    private final AnnotationsRegistry registry = resourceType -> {
+        final Annotations.Builder b = Annotations.forResourceType(resourceType).withVisitContent(true).withDocumentRoot(true);
+        if(REF_TYPE.equals(resourceType)) {
+            b.withResolveByPathPropertyNames("ref");
+        }
+        return b.build();
+    };
+
+    @BeforeEach
+    public void setup() throws Exception {
+        when(resolver.getResource(anyString())).thenAnswer(inv -> {
+            originalResolverThreads.add(Thread.currentThread().getName());
+            return resources.get(inv.getArgument(0, String.class));
+        });
+        when(resolver.clone(any())).thenAnswer(inv -> {
+            final ResourceResolver clone = mock(ResourceResolver.class);
+            when(clone.getResource(anyString())).thenAnswer(i -> {
+                final Resource r = resources.get(i.getArgument(0, String.class));
+                return r == null ? null : new ResourceWrapper(r) {
+                    @Override
+                    public ResourceResolver getResourceResolver() {
+                        return clone;
+                    }
+                };
+            });
+            clones.add(clone);
+            return clone;
+        });
+        addResource("/doc", DOC_TYPE, "title", "The doc");
+        for(int i=0; i < 5; i++) {
+            final String path = "/doc/c" + i;
+            addResource(path, DOC_TYPE, "title", "child " + i);
+            addResource(path + "/grandchild", DOC_TYPE, "index", i);
+        }
+        addResource("/a", REF_TYPE, "ref", "/b");
+        addResource("/b", REF_TYPE, "ref", "/a");
+        addResource("/c", REF_TYPE, "ref", "/missing");
+        addResource("/deep", DOC_TYPE);
+        addResource("/deep/one", DOC_TYPE);
+        addResource("/deep/one/two", DOC_TYPE);
+        addResource("/deep/one/two/three", DOC_TYPE);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        activated.forEach(DocumentAggregatorImpl::deactivate);
+    }
+
+    private void addResource(String path, String resourceType, Object ... keyValues) {
+        final Map<String, Object> props = new HashMap<>();
+        for(int i=0; i < keyValues.length; i+=2) {
+            props.put(keyValues[i].toString(), keyValues[i+1]);
+        }
+        final Resource r = mock(Resource.class);
+        final List<Resource> kids = new ArrayList<>();
+        children.put(path, kids);
+        when(r.getPath()).thenReturn(path);
+        when(r.getName()).thenReturn(path.substring(path.lastIndexOf('/') + 1));
+        when(r.getResourceType()).thenReturn(resourceType);
+        when(r.getResourceResolver()).thenReturn(resolver);
+        when(r.adaptTo(ValueMap.class)).thenReturn(new ValueMapDecorator(props));
+        when(r.getChildren()).thenReturn(kids);
+        resources.put(path, r);
+        final String parent = path.substring(0, path.lastIndexOf('/'));
+        if(children.containsKey(parent)) {
+            children.get(parent).add(r);
+        }
+    }
+
+    private DocumentAggregatorImpl aggregator(boolean parallel, int maxDepth, int maxNodes) {
+        final DocumentAggregatorImpl.Config cfg = mock(DocumentAggregatorImpl.Config.class);
+        when(cfg.parallel()).thenReturn(parallel);
+        when(cfg.parallelism()).thenReturn(4);
+        when(cfg.max_depth()).thenReturn(maxDepth);
+        when(cfg.max_nodes()).thenReturn(maxNodes);
+        final DocumentAggregatorImpl result = new DocumentAggregatorImpl(registry, cfg);
+        activated.add(result);
+        return result;
+    }
+
+    private Map<String, Object> aggregate(DocumentAggregatorImpl aggregator, String path) {
+        return aggregate(aggregator, resolver.getResource(path));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> aggregate(DocumentAggregatorImpl aggregator, Resource resource) {
+        final MapDocumentNode root = new MapDocumentNode("root");
+        aggregator.aggregate(resource, root, new DocumentAggregator.Options(false, null));
+        return root.adaptTo(Map.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> child(Map<String, Object> m, String ... names) {
+        for(String name : names) {
+            m = (Map<String, Object>)m.get(name);
+        }
+        return m;
+    }
+
+    @Test
+    public void parallelEqualsSequential() {
+        final Map<String, Object> sequential = aggregate(aggregator(false, 0, 0), "/doc");
+        assertEquals("3", child(sequential, "c3", "grandchild").get("index"));
+        assertEquals(sequential, aggregate(aggregator(true, 0, 0), "/doc"));
+    }
+
+    @Test
+    public void parallelWorkersUseTheirOwnResolver() {
+        final Resource doc = resolver.getResource("/a");
+        originalResolverThreads.clear();
+        final Map<String, Object> result = aggregate(aggregator(true, 0, 0), doc);
+        assertEquals("/b", child(result, "sling:dmap:resolved").get("sling:dmap:resolvePath"));
+        assertTrue(originalResolverThreads.isEmpty(), "Original resolver used by " + originalResolverThreads);
+        assertTrue(!clones.isEmpty(), "Expecting cloned resolvers");
+        for(ResourceResolver clone : clones) {
+            verify(clone).close();
+        }
+    }
+
+    @Test
+    public void cycleIsTruncated() {
+        for(boolean parallel : new boolean[] { false, true }) {
+            final Map<String, Object> doc = aggregate(aggregator(parallel, 0, 0), "/a");
+            final Map<String, Object> b = child(doc, "sling:dmap:resolved");
+            assertEquals("/b", b.get("sling:dmap:resolvePath"));
+            assertEquals("cycle", child(b, "sling:dmap:resolved").get(DocumentAggregatorImpl.TRUNCATED));
+        }
+    }
+
+    @Test
+    public void sequentialReusesResources() {
+        final Resource doc = resolver.getResource("/doc");
+        clearInvocations(resolver);
+        final Map<String, Object> result = aggregate(aggregator(false, 0, 0), doc);
+        assertEquals("4", child(result, "c4", "grandchild").get("index"));
+        verify(resolver, never()).getResource(anyString());
+    }
+
+    @Test
+    public void limitsAreOptIn() throws Exception {
+        assertEquals(0, DocumentAggregatorImpl.Config.class.getMethod("max_depth").getDefaultValue());
+        assertEquals(0, DocumentAggregatorImpl.Config.class.getMethod("max_nodes").getDefaultValue());
+    }
+
+    @Test
+    public void depthIsLimited() {
+        final Map<String, Object> doc = aggregate(aggregator(false, 2, 0), "/deep");
+        assertNull(child(doc, "one", "two").get(DocumentAggregatorImpl.TRUNCATED));
+        assertEquals("maxDepth", child(doc, "one", "two", "three").get(DocumentAggregatorImpl.TRUNCATED));
+    }
+
+    @Test
+    public void nodesAreLimited() {
+        for(boolean parallel : new boolean[] { false, true }) {
+            final Map<String, Object> doc = aggregate(aggregator(parallel, 0, 4), "/doc");
+            int mapped = 0;
+            int truncated = 0;
+            for(int i=0; i < 5; i++) {
+                for(Map<String, Object> m : new Map[] { child(doc, "c" + i), child(doc, "c" + i, "grandchild") }) {
+                    if(m == null) {
+                        continue;
+                    } else if(m.containsKey(DocumentAggregatorImpl.TRUNCATED)) {
+                        truncated++;
+                    } else {
+                        mapped++;
+                    }
+                }
+            }
+            assertEquals(3, mapped, "Expecting 3 mapped nodes besides the root, parallel=" + parallel);
+            assertEquals(true, truncated > 0, "Expecting truncated nodes, parallel=" + parallel);
+        }
+    }
+
+    @Test
+    public void visitedPathsAreReported() {
+        final Set<String> paths = new TreeSet<>();
+        final DocumentAggregator.Options opt = new DocumentAggregator.Options(false, null, paths::add);
+        aggregator(false, 0, 0).aggregate(resolver.getResource("/c"), new MapDocumentNode("root"), opt);
+        assertEquals("[/c, /missing]", paths.toString());
+
+        paths.clear();
+        aggregator(false, 0, 0).aggregate(resolver.getResource("/a"), new MapDocumentNode("root"), opt);
+        assertEquals("[/a, /b]", paths.toString());
+
+        final Set<String> concurrentPaths = new ConcurrentSkipListSet<>();
+        aggregator(true, 0, 0).aggregate(resolver.getResource("/doc"), new MapDocumentNode("root"),
+            new DocumentAggregator.Options(false, null, concurrentPaths::add));
+        assertEquals(11, concurrentPaths.size());
+        assertTrue(concurrentPaths.contains("/doc/c4/grandchild"));
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.remotecontent.samples.graphql;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.graphql.api.pagination.Connection;
+import org.apache.sling.graphql.api.pagination.Edge;
+import org.apache.sling.remotecontent.contentmodel.ContentGenerator;
+
+/** Per-request loader which dedupes Resource lookups and generates
+ *  content in batches: when some content of an item of a {@link Batch}
+ *  is requested, it is generated for all the items of that batch, as
+ *  GraphQL selects the same fields for all the items of a list.
+ *  <p>
+ *  With a parallelism higher than 1, a batch is split between the
+ *  calling thread, which uses the request's ResourceResolver, and
+ *  executor threads which each use their own clone of it, as
+ *  ResourceResolvers are not thread-safe. A clone is closed once its
+ *  share of the batch is generated.
+ */
+class ContentLoader {
+    private final ResourceResolver resolver;
+    private final ContentGenerator generator;
+    private final Executor executor;
+    private final int parallelism;
+    private final Map<String, Optional<Resource>> resources = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Object>> contents = new ConcurrentHashMap<>();
+
+    /** A set of items for which content is loaded together */
+    class Batch implements ContentGenerator {
+        private final int maxItems;
+        private final Deque<Resource> items = new ArrayDeque<>();
+
+        Batch(int maxItems) {
+            this.maxItems = maxItems;
+        }
+
+        /** Add r to this batch, and return it for convenience. Only the
+         *  last maxItems are kept, as paginated results skip the items
+         *  which precede their start cursor.
+         */
+        synchronized Resource add(Resource r) {
+            if(r != null) {
+                items.addLast(r);
+                if(items.size() > maxItems) {
+                    items.removeFirst();
+                }
+            }
+            return r;
+        }
+
+        /** Keep only the items which are nodes of c, so that the items which
+         *  were read to skip to the start cursor or to find out if there's
+         *  a next page are not loaded. Returns c for convenience.
+         */
+        <T> Connection<T> retain(Connection<T> c, Function<T, String> pathFunction) {
+            final Set<String> paths = new HashSet<>();
+            for(Edge<T> edge : c.getEdges()) {
+                paths.add(pathFunction.apply(edge.getNode()));
+            }
+            synchronized (this) {
+                items.removeIf(r -> !paths.contains(r.getPath()));
+            }
+            return c;
+        }
+
+        @Override
+        public String getSourceInfo(Resource r, String name) {
+            return generator.getSourceInfo(r, name);
+        }
+
+        @Override
+        public Object getContent(Resource r, String name) {
+            final List<Resource> toLoad;
+            synchronized (this) {
+                toLoad = new ArrayList<>(items);
+            }
+            load(toLoad, name);
+            try {
+                return load(Collections.singletonList(r), name).get(0).join();
+            } catch(CompletionException ce) {
+                if(ce.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException)ce.getCause();
+                }
+                throw ce;
+            }
+        }
+    }
+
+    ContentLoader(ResourceResolver resolver, ContentGenerator generator, Executor executor, int parallelism) {
+        this.resolver = resolver;
+        this.generator = generator;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /** Get a Resource, looking up each path only once per request */
+    Resource getResource(String path) {
+        return resources.computeIfAbsent(path, p -> Optional.ofNullable(resolver.getResource(p))).orElse(null);
+    }
+
+    Batch newBatch(int maxItems) {
+        return new Batch(maxItems);
+    }
+
+    /** Get the named content of the supplied Resources, generating
+     *  what's not been generated or requested yet in this request
+     */
+    private List<CompletableFuture<Object>> load(List<Resource> toLoad, String name) {
+        // Register pending results first and generate outside of the map's locks
+        final List<CompletableFuture<Object>> results = new ArrayList<>(toLoad.size());
+        final List<Resource> pending = new ArrayList<>();
+        final List<CompletableFuture<Object>> pendingResults = new ArrayList<>();
+        for(Resource r : toLoad) {
+            final CompletableFuture<Object> result = new CompletableFuture<>();
+            final CompletableFuture<Object> existing = contents.putIfAbsent(name + "|" + r.getPath(), result);
+            if(existing == null) {
+                pending.add(r);
+                pendingResults.add(result);
+                results.add(result);
+            } else {
+                results.add(existing);
+            }
+        }
+
+        // Share the pending items between this thread and up to parallelism - 1 executor
+        // threads, in a round-robin way as the first items are the first ones to be used
+        final int shares = Math.min(parallelism, pending.size());
+        for(int share = 1; share < shares; share++) {
+            final List<Resource> resources = share(pending, share, shares);
+            final List<CompletableFuture<Object>> futures = share(pendingResults, share, shares);
+            if(!generateInClone(resources, futures, name)) {
+                generate(resolver, resources, futures, name);
+            }
+        }
+        if(shares > 0) {
+            generate(resolver, share(pending, 0, shares), share(pendingResults, 0, shares), name);
+        }
+        return results;
+    }
+
+    private static <T> List<T> share(List<T> list, int share, int shares) {
+        final List<T> result = new ArrayList<>();
+        for(int i = share; i < list.size(); i += shares) {
+            result.add(list.get(i));
+        }
+        return result;
+    }
+
+    /** Generate content in an executor thread, using a clone of our ResourceResolver
+     *  @return false if that's not possible, in which case nothing was generated
+     */
+    private boolean generateInClone(List<Resource> resources, List<CompletableFuture<Object>> futures, String name) {
+        final ResourceResolver clone;
+        try {
+            // Cloning uses our ResourceResolver, so it must happen in this thread
+            clone = resolver.clone(null);
+        } catch(LoginException e) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(clone, resources, futures, name);
+                } finally {
+                    clone.close();
+                }
+            });
+            return true;
+        } catch(RejectedExecutionException e) {
+            clone.close();
+            return false;
+        }
+    }
+
+    private void generate(ResourceResolver with, List<Resource> resources, List<CompletableFuture<Object>> futures, String name) {
+        for(int i = 0; i < resources.size(); i++) {
+            final CompletableFuture<Object> result = futures.get(i);
+            try {
+                final Resource r = with == resolver ? resources.get(i) : with.getResource(resources.get(i).getPath());
+                result.complete(r == null ? null : generator.getContent(r, name));
+            } catch(RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.remotecontent.samples.graphql;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.remotecontent.contentmodel.ContentGenerator;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+/** Provides the {@link ContentLoader}s used by the fetchers, one per
+ *  request so that all the fetchers of a query share it. The fetcher
+ *  environment does not expose the request or the GraphQL context, so
+ *  loaders are found by the request's ResourceResolver. They are only
+ *  weakly referenced here: a loader is kept by the objects returned by
+ *  the fetchers which use it, and goes away with them once the response
+ *  is written, without keeping its ResourceResolver reachable.
+ */
+@Component(service = ContentLoaders.class)
+@Designate(ocd = ContentLoaders.Config.class)
+public class ContentLoaders {
+
+    @ObjectClassDefinition(
+        name = "Apache Sling Remote Content API Content Loaders",
+        description = "Per-request batching and deduplication of content generation"
+    )
+    public @interface Config {
+        @AttributeDefinition(
+            name = "Parallelism",
+            description = "Number of threads used to generate the content of a batch. With 1, content is generated "
+                + "by the request thread, with higher values the other threads each use a clone of the request's ResourceResolver"
+        )
+        int parallelism() default 1;
+    }
+
+    @Reference
+    private ContentGenerator contentGenerator;
+
+    private ExecutorService executorService;
+    private int parallelism;
+
+    /** Guarded by this */
+    private final Map<ResourceResolver, WeakReference<ContentLoader>> loaders = new WeakHashMap<>();
+
+    @Activate
+    public void activate(Config cfg) {
+        parallelism = Math.max(cfg.parallelism(), 1);
+        if(parallelism > 1) {
+            final AtomicInteger counter = new AtomicInteger();
+            executorService = Executors.newFixedThreadPool(cfg.parallelism(), r -> {
+                final Thread t = new Thread(r, "sling-remote-content-loader-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    @Deactivate
+    public void deactivate() {
+        if(executorService != null) {
+            executorService.shutdown();
+        }
+    }
+
+    /** Return the loader of the request which uses the supplied ResourceResolver */
+    synchronized ContentLoader getLoader(ResourceResolver resolver) {
+        final WeakReference<ContentLoader> ref = loaders.get(resolver);
+        ContentLoader result = ref == null ? null : ref.get();
+        if(result == null) {
+            result = new ContentLoader(resolver, contentGenerator, executorService, parallelism);
+            loaders.put(resolver, new WeakReference<>(result));
+        }
+        return result;
+    }
+}
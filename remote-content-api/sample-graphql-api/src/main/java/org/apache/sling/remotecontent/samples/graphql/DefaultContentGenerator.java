@@ -40,6 +40,9 @@ public class DefaultContentGenerator implements ContentGenerator {
     @Reference
     private DocumentAggregator documentAggregator;
 
+    @Reference
+    private DocumentCache documentCache;
+
     @Override
     public String getSourceInfo(Resource r, String name) {
         return String.format("%s for '%s'", getClass().getName(), name);
@@ -51,11 +54,15 @@ public class DefaultContentGenerator implements ContentGenerator {
             return Collections.singletonMap("nocontent", String.format("No content available for '%s'", name));
         }
 
-        final DocumentTree.DocumentNode body = mappingTarget.newDocumentNode();
-        final DocumentAggregator.Options opt = new DocumentAggregator.Options(false, new UrlBuilderStub());
-        documentAggregator.aggregate(r, body, opt);
-        body.close();
-        return body.adaptTo(Map.class);
+        final boolean debug = false;
+        final DocumentAggregator.UrlBuilder urlBuilder = new UrlBuilderStub();
+        return documentCache.getDocument(r, debug, urlBuilder, pathListener -> {
+            final DocumentTree.DocumentNode body = mappingTarget.newDocumentNode();
+            final DocumentAggregator.Options opt = new DocumentAggregator.Options(debug, urlBuilder, pathListener);
+            documentAggregator.aggregate(r, body, opt);
+            body.close();
+            return body.adaptTo(Map.class);
+        });
     }
 
 }
\ No newline at end of file
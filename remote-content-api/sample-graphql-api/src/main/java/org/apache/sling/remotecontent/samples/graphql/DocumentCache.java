@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.remotecontent.samples.graphql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.documentaggregator.api.DocumentAggregator;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Cache of aggregated documents, invalidated when any of the
+ *  Resources that an aggregation used changes. The cached documents
+ *  are shared, so they are made unmodifiable before being cached.
+ */
+@Component(
+    service = { DocumentCache.class, ResourceChangeListener.class, DocumentCacheMBean.class },
+    property = {
+        ResourceChangeListener.PATHS + "=/",
+        ResourceChangeListener.CHANGES + "=ADDED",
+        ResourceChangeListener.CHANGES + "=CHANGED",
+        ResourceChangeListener.CHANGES + "=REMOVED",
+        "jmx.objectname=org.apache.sling.remotecontent:type=DocumentCache"
+    }
+)
+@Designate(ocd = DocumentCache.Config.class)
+public class DocumentCache implements ResourceChangeListener, ExternalResourceChangeListener, DocumentCacheMBean {
+
+    @ObjectClassDefinition(
+        name = "Apache Sling Remote Content API Document Cache",
+        description = "Caches aggregated documents until the content that they use changes"
+    )
+    public @interface Config {
+        @AttributeDefinition(
+            name = "Maximum size",
+            description = "Maximum number of cached documents, the least recently used ones are evicted. 0 disables the cache"
+        )
+        int max_size() default 1000;
+    }
+
+    /** Computes a document, reporting the paths that it uses to the supplied listener */
+    public interface Aggregation {
+        Map<String, Object> aggregate(DocumentAggregator.ResourcePathListener listener);
+    }
+
+    private static class Key {
+        final String path;
+        final String userId;
+        final boolean debug;
+        final String urlBuilder;
+
+        Key(Resource r, boolean debug, DocumentAggregator.UrlBuilder urlBuilder) {
+            this.path = r.getPath();
+            this.userId = r.getResourceResolver().getUserID();
+            this.debug = debug;
+            this.urlBuilder = urlBuilder == null ? null : urlBuilder.getClass().getName();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            final Key k = (Key)o;
+            return path.equals(k.path) && Objects.equals(userId, k.userId) && debug == k.debug && Objects.equals(urlBuilder, k.urlBuilder);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, userId, debug, urlBuilder);
+        }
+    }
+
+    private static class CacheEntry {
+        final Map<String, Object> document;
+        final Set<String> paths;
+
+        CacheEntry(Map<String, Object> document, Set<String> paths) {
+            this.document = document;
+            this.paths = paths;
+        }
+    }
+
+    /** An aggregation in progress, whose document is not cached if
+     *  any of the paths that it has used so far is invalidated
+     */
+    private static class Pending {
+        final Set<String> paths = ConcurrentHashMap.newKeySet();
+        boolean stale;
+    }
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private int maxSize;
+
+    /** Entries in access order, guarded by this */
+    private final LinkedHashMap<Key, CacheEntry> entries = new LinkedHashMap<Key, CacheEntry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CacheEntry> eldest) {
+            if(size() > maxSize) {
+                unindex(eldest.getKey(), eldest.getValue());
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /** Keys of the entries which use a given path, guarded by this */
+    private final TreeMap<String, Set<Key>> keysByPath = new TreeMap<>();
+
+    /** Aggregations in progress, guarded by this */
+    private final Set<Pending> pending = new HashSet<>();
+
+    @Activate
+    public void activate(Config cfg) {
+        maxSize = cfg.max_size();
+        log.info("Caching up to {} documents", maxSize);
+    }
+
+    /** Return the cached document for r and the given options, computing
+     *  it with the supplied Aggregation if needed
+     */
+    public Map<String, Object> getDocument(Resource r, boolean debug, DocumentAggregator.UrlBuilder urlBuilder, Aggregation aggregation) {
+        if(maxSize <= 0) {
+            return aggregation.aggregate(null);
+        }
+        final Key key = new Key(r, debug, urlBuilder);
+        final Pending p = new Pending();
+        synchronized (this) {
+            final CacheEntry e = entries.get(key);
+            if(e != null) {
+                hits.incrementAndGet();
+                return e.document;
+            }
+            pending.add(p);
+        }
+        misses.incrementAndGet();
+
+        final Map<String, Object> document;
+        try {
+            // Paths are reported before being read, so a change to a path that is
+            // reported after an invalidation has been processed is seen by the aggregation
+            document = unmodifiable(aggregation.aggregate(p.paths::add));
+        } finally {
+            synchronized (this) {
+                pending.remove(p);
+            }
+        }
+
+        synchronized (this) {
+            // If a path that we used was invalidated while aggregating, our document might be stale
+            if(!p.stale) {
+                final CacheEntry e = new CacheEntry(document, p.paths);
+                final CacheEntry previous = entries.put(key, e);
+                if(previous != null) {
+                    unindex(key, previous);
+                }
+                for(String path : p.paths) {
+                    keysByPath.computeIfAbsent(path, x -> new HashSet<>()).add(key);
+                }
+            }
+        }
+        return document;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> unmodifiable(Map<String, Object> document) {
+        final Map<String, Object> result = new LinkedHashMap<>(document.size());
+        document.forEach((k, v) -> result.put(k, v instanceof Map ? unmodifiable((Map<String, Object>)v) : unmodifiableValue(v)));
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static Object unmodifiableValue(Object value) {
+        return value instanceof Object[] ? Collections.unmodifiableList(Arrays.asList(((Object[])value).clone())) : value;
+    }
+
+    private void unindex(Key key, CacheEntry e) {
+        for(String path : e.paths) {
+            final Set<Key> keys = keysByPath.get(path);
+            if(keys != null) {
+                keys.remove(key);
+                if(keys.isEmpty()) {
+                    keysByPath.remove(path);
+                }
+            }
+        }
+    }
+
+    /** Invalidate the entries which use path, its parent, as
+     *  its children might have changed, or its descendants
+     */
+    synchronized void invalidate(String path) {
+        if("/".equals(path)) {
+            clear();
+            return;
+        }
+        final int lastSlash = path.lastIndexOf('/');
+        final String parentPath = lastSlash > 0 ? path.substring(0, lastSlash) : "/";
+        for(Pending p : pending) {
+            if(!p.stale && p.paths.stream().anyMatch(used -> used.equals(path) || used.equals(parentPath) || used.startsWith(path + "/"))) {
+                p.stale = true;
+            }
+        }
+        final List<Key> toRemove = new ArrayList<>();
+        final Set<Key> self = keysByPath.get(path);
+        if(self != null) {
+            toRemove.addAll(self);
+        }
+        final Set<Key> parent = keysByPath.get(parentPath);
+        if(parent != null) {
+            toRemove.addAll(parent);
+        }
+        // '0' follows '/' so this selects all descendants
+        for(Set<Key> keys : keysByPath.subMap(path + "/", path + "0").values()) {
+            toRemove.addAll(keys);
+        }
+        for(Key k : toRemove) {
+            final CacheEntry e = entries.remove(k);
+            if(e != null) {
+                unindex(k, e);
+                invalidations.incrementAndGet();
+                log.debug("Invalidated {} due to a change at {}", k.path, path);
+            }
+        }
+    }
+
+    @Override
+    public void onChange(@NotNull List<ResourceChange> changes) {
+        for(ResourceChange c : changes) {
+            invalidate(c.getPath());
+        }
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    @Override
+    public synchronized void clear() {
+        pending.forEach(p -> p.stale = true);
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+        keysByPath.clear();
+    }
+}
@@ -21,7 +21,6 @@ package org.apache.sling.remotecontent.samples.graphql;
 
 import org.apache.sling.graphql.api.SlingDataFetcher;
 import org.apache.sling.graphql.api.SlingDataFetcherEnvironment;
-import org.apache.sling.remotecontent.contentmodel.ContentGenerator;
 import org.apache.sling.remotecontent.contentmodel.Document;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -32,10 +31,12 @@ import org.osgi.service.component.annotations.Reference;
 public class DocumentDataFetcher implements SlingDataFetcher<Document> {
 
     @Reference
-    private ContentGenerator contentGenerator;
+    private ContentLoaders contentLoaders;
     
     @Override
     public @Nullable Document get(@NotNull SlingDataFetcherEnvironment e) throws Exception {
-        return new Document(new FetcherContext(e, false).currentResource, () -> contentGenerator);
+        final ContentLoader loader = contentLoaders.getLoader(e.getCurrentResource().getResourceResolver());
+        final ContentLoader.Batch batch = loader.newBatch(1);
+        return new Document(batch.add(new FetcherContext(e, false, loader).currentResource), () -> batch);
     }   
 }
\ No newline at end of file
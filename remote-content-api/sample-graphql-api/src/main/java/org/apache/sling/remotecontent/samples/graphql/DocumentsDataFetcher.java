@@ -19,29 +19,67 @@
 
 package org.apache.sling.remotecontent.samples.graphql;
 
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
 
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.graphql.api.SlingDataFetcher;
 import org.apache.sling.graphql.api.SlingDataFetcherEnvironment;
 import org.apache.sling.graphql.api.pagination.Connection;
 import org.apache.sling.graphql.helpers.GenericConnection;
-import org.apache.sling.remotecontent.contentmodel.ContentGenerator;
 import org.apache.sling.remotecontent.contentmodel.Document;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 
 @Component(service = SlingDataFetcher.class, property = {"name=samples/documents"})
+@Designate(ocd = DocumentsDataFetcher.Config.class)
 public class DocumentsDataFetcher implements SlingDataFetcher<Connection<Document>> {
 
+    @ObjectClassDefinition(
+        name = "Apache Sling Remote Content API Documents Fetcher",
+        description = "Paginated queries for documents"
+    )
+    public @interface Config {
+        @AttributeDefinition(
+            name = "Keyset pagination",
+            description = "Add the cursor and limit to queries, so that the repository starts at the requested page. "
+                + "This orders the results of the rewritten queries by the sort key. "
+                + "Queries which specify their own ordering are paginated by skipping the preceding results"
+        )
+        boolean keyset_pagination() default false;
+
+        @AttributeDefinition(
+            name = "Sort key",
+            description = "Property used to order paginated results and as their cursor, its values must be unique"
+        )
+        String sort_key() default KeysetQuery.PATH_KEY;
+    }
+
     @Reference
-    private ContentGenerator contentGenerator;
+    private ContentLoaders contentLoaders;
+
+    private boolean keysetPagination;
+    private String sortKey;
+
+    @Activate
+    public void activate(Config cfg) {
+        keysetPagination = cfg.keyset_pagination();
+        sortKey = cfg.sort_key();
+    }
 
     @Override
     public @Nullable Connection<Document> get(@NotNull SlingDataFetcherEnvironment e) throws Exception {
-        final FetcherContext ctx = new FetcherContext(e, true);
+        final ContentLoader loader = contentLoaders.getLoader(e.getCurrentResource().getResourceResolver());
+        final FetcherContext ctx = new FetcherContext(e, true, loader);
 
         // Use a suffix as we might not keep these built-in language in the long term
         final String langSuffix = "2020";
@@ -53,11 +91,34 @@ public class DocumentsDataFetcher implements SlingDataFetcher<Connection<Documen
         lang = lang.replaceAll(langSuffix + "$", "");
         final String query = e.getArgument("query");
 
-        final Iterator<Resource> resultIterator = ctx.currentResource.getResourceResolver().findResources(query, lang);
-        final Iterator<Document> it = new ConvertingIterator<>(resultIterator, r -> new Document(r, () -> contentGenerator));
-        return new GenericConnection.Builder<>(it, Document::getPath)
+        // One more item than the limit is read to find out if there's a next page. A keyset
+        // query starts at the cursor's item, so that the connection can verify it
+        final String afterKey = ctx.afterCursor == null ? null : ctx.afterCursor.getRawValue();
+        final int keysetLimit = ctx.limit + (afterKey == null ? 1 : 2);
+        final String keysetQuery = keysetPagination ? KeysetQuery.rewrite(query, lang, sortKey, afterKey, keysetLimit) : null;
+
+        final Iterator<Resource> resultIterator = ctx.currentResource.getResourceResolver().findResources(
+            keysetQuery == null ? query : keysetQuery, lang);
+        final ContentLoader.Batch batch = loader.newBatch(ctx.limit + 1);
+        final Function<Document, String> cursorFunction;
+        final Iterator<Document> it;
+        if(keysetQuery == null || KeysetQuery.PATH_KEY.equals(sortKey)) {
+            cursorFunction = Document::getPath;
+            it = new ConvertingIterator<>(resultIterator, r -> new Document(batch.add(r), () -> batch));
+        } else {
+            final Map<Document, String> keys = new IdentityHashMap<>();
+            cursorFunction = keys::get;
+            it = new ConvertingIterator<>(resultIterator, r -> {
+                final Document d = new Document(batch.add(r), () -> batch);
+                final ValueMap vm = r.adaptTo(ValueMap.class);
+                keys.put(d, vm == null ? null : vm.get(sortKey, String.class));
+                return d;
+            });
+        }
+
+        return batch.retain(new GenericConnection.Builder<>(it, cursorFunction)
             .withStartAfter(ctx.afterCursor)
             .withLimit(ctx.limit)
-            .build();
-    }    
+            .build(), Document::getPath);
+    }
 }
\ No newline at end of file
@@ -34,10 +34,14 @@ class FetcherContext {
     public final int limit;
 
     FetcherContext(SlingDataFetcherEnvironment e, boolean includePagination) {
+        this(e, includePagination, null);
+    }
+
+    FetcherContext(SlingDataFetcherEnvironment e, boolean includePagination, ContentLoader loader) {
         Resource r = e.getCurrentResource();
         final String path = e.getArgument(PATH_ARG);
         if(path != null && !path.isEmpty()) {
-            r = r.getResourceResolver().getResource(path);
+            r = loader == null ? r.getResourceResolver().getResource(path) : loader.getResource(path);
         }
         currentResource = r;
         limit = e.getArgument(LIMIT_ARG, DEFAULT_LIMIT);
@@ -26,7 +26,6 @@ import org.apache.sling.graphql.api.SlingDataFetcher;
 import org.apache.sling.graphql.api.SlingDataFetcherEnvironment;
 import org.apache.sling.graphql.api.pagination.Connection;
 import org.apache.sling.graphql.helpers.GenericConnection;
-import org.apache.sling.remotecontent.contentmodel.ContentGenerator;
 import org.apache.sling.remotecontent.contentmodel.Folder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -37,21 +36,24 @@ import org.osgi.service.component.annotations.Reference;
 public class FoldersDataFetcher implements SlingDataFetcher<Connection<Folder>> {
 
     @Reference
-    private ContentGenerator contentGenerator;
+    private ContentLoaders contentLoaders;
 
     @Override
     public @Nullable Connection<Folder> get(@NotNull SlingDataFetcherEnvironment e) throws Exception {
-        final FetcherContext ctx = new FetcherContext(e, true);
+        final ContentLoader loader = contentLoaders.getLoader(e.getCurrentResource().getResourceResolver());
+        final FetcherContext ctx = new FetcherContext(e, true, loader);
 
         final String xpathQuery = String.format(
             "/jcr:root%s//element(*, nt:folder) order by jcr:path ascending option(traversal fail)", 
             ctx.currentResource.getPath());
 
         final Iterator<Resource> resultIterator = ctx.currentResource.getResourceResolver().findResources(xpathQuery, "xpath");
-        final Iterator<Folder> it = new ConvertingIterator<>(resultIterator, r -> new Folder(r, () -> contentGenerator));
-        return new GenericConnection.Builder<>(it, Folder::getPath)
+        // One more item than the limit is read to find out if there's a next page
+        final ContentLoader.Batch batch = loader.newBatch(ctx.limit + 1);
+        final Iterator<Folder> it = new ConvertingIterator<>(resultIterator, r -> new Folder(batch.add(r), () -> batch));
+        return batch.retain(new GenericConnection.Builder<>(it, Folder::getPath)
             .withStartAfter(ctx.afterCursor)
             .withLimit(ctx.limit)
-            .build();
+            .build(), Folder::getPath);
     }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.remotecontent.samples.graphql;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Rewrites a query so that it only returns the results that start at
+ *  a given key, ordered by that key and limited to a page. This lets
+ *  the repository skip to the requested page, instead of us reading
+ *  and discarding all the results that precede it.
+ *  Queries which already specify an order, options, joins or unions
+ *  are not rewritten.
+ */
+class KeysetQuery {
+    static final String XPATH = "xpath";
+    static final String SQL2 = "JCR-SQL2";
+    static final String PATH_KEY = "jcr:path";
+
+    private static final Pattern SQL2_WHERE = Pattern.compile("\\sWHERE\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NOT_REWRITABLE = Pattern.compile("\\sorder\\s+by\\s|option\\s*\\(|\\sjoin\\s|\\sunion\\s|\\|", Pattern.CASE_INSENSITIVE);
+
+    private KeysetQuery() {
+    }
+
+    /** Return the rewritten query, or null if it cannot be rewritten
+     *  @param fromKey if not null, only results with a greater or equal sort key are returned
+     *  @param limit maximum number of results
+     */
+    static String rewrite(String query, String lang, String sortKey, String fromKey, int limit) {
+        if(query == null || NOT_REWRITABLE.matcher(query).find()) {
+            return null;
+        }
+        if(XPATH.equalsIgnoreCase(lang)) {
+            return rewriteXPath(query.trim(), sortKey, fromKey, limit);
+        } else if(SQL2.equalsIgnoreCase(lang)) {
+            return rewriteSql2(query.trim(), sortKey, fromKey, limit);
+        }
+        return null;
+    }
+
+    private static String rewriteXPath(String query, String sortKey, String fromKey, int limit) {
+        final StringBuilder sb = new StringBuilder();
+        if(fromKey == null) {
+            sb.append(query);
+        } else {
+            final String condition = String.format("@%s >= %s", sortKey, literal(fromKey));
+            final int open = query.endsWith("]") ? matchingBracket(query) : -1;
+            if(open >= 0) {
+                sb.append(query, 0, open + 1)
+                    .append("(").append(query, open + 1, query.length() - 1).append(") and ")
+                    .append(condition).append("]");
+            } else {
+                sb.append(query).append("[").append(condition).append("]");
+            }
+        }
+        sb.append(String.format(Locale.ROOT, " order by @%s ascending option(limit %d)", sortKey, limit));
+        return sb.toString();
+    }
+
+    private static String rewriteSql2(String query, String sortKey, String fromKey, int limit) {
+        final StringBuilder sb = new StringBuilder();
+        if(fromKey == null) {
+            sb.append(query);
+        } else {
+            final String condition = String.format("[%s] >= %s", sortKey, literal(fromKey));
+            final Matcher m = SQL2_WHERE.matcher(query);
+            if(m.find()) {
+                sb.append(query, 0, m.end())
+                    .append("(").append(query.substring(m.end())).append(") AND ")
+                    .append(condition);
+            } else {
+                sb.append(query).append(" WHERE ").append(condition);
+            }
+        }
+        sb.append(String.format(Locale.ROOT, " ORDER BY [%s] OPTION(LIMIT %d)", sortKey, limit));
+        return sb.toString();
+    }
+
+    /** Index of the opening bracket matching the final one, ignoring quoted strings */
+    private static int matchingBracket(String query) {
+        int depth = 0;
+        for(int i=query.length() - 1; i >= 0; i--) {
+            final char c = query.charAt(i);
+            if(c == '\'' || c == '"') {
+                i = query.lastIndexOf(c, i - 1);
+                if(i < 0) {
+                    return -1;
+                }
+            } else if(c == ']') {
+                depth++;
+            } else if(c == '[' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String literal(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+}
@@ -19,9 +19,16 @@
 
 package org.apache.sling.remotecontent.samples.graphql.annotations;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.documentaggregator.api.Annotations;
 import org.apache.sling.documentaggregator.api.AnnotationsRegistry;
 import org.osgi.service.component.annotations.Activate;
@@ -36,9 +43,46 @@ import org.osgi.service.component.annotations.Component;
 @Component(service=AnnotationsRegistry.class)
 public class AnnotationsRegistryImpl implements AnnotationsRegistry {
 
-    private static final Map<String, Annotations> annotations = new HashMap<>();
     private static final Annotations DEFAULT_ANNOTATIONS;
 
+    /** Max number of resolved (resource type, supertype, user) combinations that we keep */
+    private static final int MAX_RESOLVED = 10000;
+
+    /** Immutable once activate has built it */
+    private volatile Map<String, Annotations> annotations = Collections.emptyMap();
+
+    /** Annotations found by following resource supertypes. The supertypes
+     *  are read by the Resource's ResourceResolver, which might not see
+     *  all of them, so results are not shared between users.
+     */
+    private final Map<ResolvedKey, Annotations> resolved = new ConcurrentHashMap<>();
+
+    private static class ResolvedKey {
+        final String resourceType;
+        final String superType;
+        final String userId;
+
+        ResolvedKey(String resourceType, String superType, String userId) {
+            this.resourceType = resourceType;
+            this.superType = superType;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof ResolvedKey)) {
+                return false;
+            }
+            final ResolvedKey k = (ResolvedKey)o;
+            return resourceType.equals(k.resourceType) && Objects.equals(superType, k.superType) && Objects.equals(userId, k.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(resourceType, superType, userId);
+        }
+    }
+
     static {
         DEFAULT_ANNOTATIONS = Annotations.forResourceType("sling/servlet/default")
             .withVisitContent(true)
@@ -50,10 +94,11 @@ public class AnnotationsRegistryImpl implements AnnotationsRegistry {
 
     @Activate
     public void activate() {
+        final Map<String, Annotations> toAdd = new HashMap<>();
         final String generalIgnoreProperties = "jcr:.*|cq:.*|crs:.*|tiff:.*|xmpMM:.*|xmp:.*|psAux:.*";
         final String [] generalExcludeNodeNames = { "xmpMM:History", "xmpMM:DerivedFrom", "metadata" };
 
-        add(
+        add(toAdd,
             Annotations.forResourceType("cq:Page")
             .withDocumentRoot(true)
             .withChildSubstituePath("jcr:content")
@@ -63,7 +108,7 @@ public class AnnotationsRegistryImpl implements AnnotationsRegistry {
             .withExcludePropertyPattern(generalIgnoreProperties)
             .withExcludeNodeNames(generalExcludeNodeNames)
         );
-        add(
+        add(toAdd,
             Annotations.forResourceType("wknd/components/page")
             // TODO shall we only have "visit content"?
             .withDocumentRoot(true)
@@ -72,51 +117,54 @@ public class AnnotationsRegistryImpl implements AnnotationsRegistry {
             .withExcludePropertyPattern(generalIgnoreProperties)
             .withExcludeNodeNames(generalExcludeNodeNames)
         );
-        add(
+        add(toAdd,
             Annotations.forResourceType("wknd/components/image")
             .withVisitContent(true)
             .withResolveByPathPropertyNames("fileReference")
         );
-        add(
+        add(toAdd,
             Annotations.forResourceType("wknd/components/contentfragment")
             .withVisitContent(true)
             .withResolveByPathPropertyNames("fragmentPath")
         );
         
         /*
-        add(
+        add(toAdd,
             Builder.forResourceType("sling:Folder")
             .withAnnotation(NAVIGABLE, TRUE)
         );
-        add(
+        add(toAdd,
             Builder.forResourceType("sling:OrderedFolder")
             .withAnnotation(NAVIGABLE, TRUE)
         );
-        add(
+        add(toAdd,
             Builder.forResourceType("sling:OrderedFolder")
             .withAnnotation(NAVIGABLE, TRUE)
         );
-        add(
+        add(toAdd,
             Builder.forResourceType("wknd/components/carousel")
             .withAnnotation(VISIT_CONTENT, TRUE)
         );
 
         // for /content/articles examples
-        add(
+        add(toAdd,
             Builder.forResourceType("samples/section")
             .withAnnotation(NAVIGABLE, TRUE)
             .withAnnotation(NAVIGATION_PROPERTIES_LIST, "name")
         );
-        add(
+        add(toAdd,
             Builder.forResourceType("samples/article")
             .withAnnotation(NAVIGABLE, TRUE)
         );
         */
+
+        annotations = Collections.unmodifiableMap(toAdd);
+        resolved.clear();
     }
 
-    private void add(Annotations.Builder b) {
+    private void add(Map<String, Annotations> target, Annotations.Builder b) {
         final Annotations a = b.build();
-        annotations.put(a.getResourceType(), a);
+        target.put(a.getResourceType(), a);
     }
 
     @Override
@@ -124,4 +172,42 @@ public class AnnotationsRegistryImpl implements AnnotationsRegistry {
         Annotations result = annotations.get(resourceType);
         return result == null ? DEFAULT_ANNOTATIONS : result;
     }
+
+    /** Use the Annotations of the closest resource type which has
+     *  some, following the Resource's own supertype if it has one,
+     *  or else the supertype of its resource type, and then their
+     *  supertypes in turn, like Sling does when resolving scripts.
+     */
+    @Override
+    public Annotations getAnnotations(Resource r) {
+        final String resourceType = r.getResourceType();
+        final Annotations direct = annotations.get(resourceType);
+        if(direct != null) {
+            return direct;
+        }
+        final String superType = r.getResourceSuperType();
+        final ResourceResolver resolver = r.getResourceResolver();
+        final ResolvedKey key = new ResolvedKey(resourceType, superType, resolver.getUserID());
+        Annotations result = resolved.get(key);
+        if(result == null) {
+            result = resolveSuperTypes(resolver, superType == null ? resourceType : superType);
+            if(resolved.size() < MAX_RESOLVED) {
+                resolved.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    private Annotations resolveSuperTypes(ResourceResolver resolver, String resourceType) {
+        final Set<String> seen = new HashSet<>();
+        String current = resourceType;
+        while(current != null && seen.add(current)) {
+            final Annotations a = annotations.get(current);
+            if(a != null) {
+                return a;
+            }
+            current = resolver.getParentResourceType(current);
+        }
+        return DEFAULT_ANNOTATIONS;
+    }
 }
\ No newline at end of file
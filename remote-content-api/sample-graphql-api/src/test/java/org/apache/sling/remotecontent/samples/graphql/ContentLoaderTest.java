@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.remotecontent.samples.graphql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.remotecontent.contentmodel.ContentGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class ContentLoaderTest {
+
+    private final ResourceResolver resolver = mock(ResourceResolver.class);
+    private final List<ResourceResolver> clones = new CopyOnWriteArrayList<>();
+    private final Map<String, ResourceResolver> generatedWith = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final ContentGenerator generator = new ContentGenerator() {
+        @Override
+        public String getSourceInfo(Resource r, String name) {
+            return name;
+        }
+
+        @Override
+        public Object getContent(Resource r, String name) {
+            generatedWith.put(name + "|" + r.getPath(), r.getResourceResolver());
+            return name + " of " + r.getPath();
+        }
+    };
+
+    @AfterEach
+    public void cleanup() {
+        executor.shutdown();
+    }
+
+    private static Resource resource(ResourceResolver resolver, String path) {
+        final Resource r = mock(Resource.class);
+        when(r.getPath()).thenReturn(path);
+        when(r.getResourceResolver()).thenReturn(resolver);
+        return r;
+    }
+
+    private List<Resource> resources(int count) {
+        final List<Resource> result = new ArrayList<>();
+        for(int i=0; i < count; i++) {
+            result.add(resource(resolver, "/content/r" + i));
+        }
+        return result;
+    }
+
+    @Test
+    public void loaderIsSharedPerResolver() {
+        final ContentLoaders loaders = new ContentLoaders();
+        final ContentLoaders.Config cfg = mock(ContentLoaders.Config.class);
+        when(cfg.parallelism()).thenReturn(1);
+        loaders.activate(cfg);
+        final ContentLoader loader = loaders.getLoader(resolver);
+        assertSame(loader, loaders.getLoader(resolver));
+        assertNotSame(loader, loaders.getLoader(mock(ResourceResolver.class)));
+        loaders.deactivate();
+    }
+
+    @Test
+    public void resourceLookupsAreDeduped() {
+        final Resource a = resource(resolver, "/content/a");
+        when(resolver.getResource("/content/a")).thenReturn(a);
+        final ContentLoader loader = new ContentLoader(resolver, generator, null, 1);
+        assertSame(a, loader.getResource("/content/a"));
+        assertSame(a, loader.getResource("/content/a"));
+        assertNull(loader.getResource("/content/missing"));
+        assertNull(loader.getResource("/content/missing"));
+        verify(resolver, times(1)).getResource("/content/a");
+        verify(resolver, times(1)).getResource("/content/missing");
+    }
+
+    @Test
+    public void batchIsGeneratedOnceAcrossFetchers() {
+        final ContentLoader loader = new ContentLoader(resolver, generator, null, 1);
+        final List<Resource> items = resources(3);
+        final ContentLoader.Batch batch = loader.newBatch(10);
+        items.forEach(batch::add);
+
+        assertEquals("body of /content/r1", batch.getContent(items.get(1), "body"));
+        assertEquals(3, generatedWith.size(), "Expecting the whole batch to be generated");
+        generatedWith.clear();
+
+        assertEquals("body of /content/r0", batch.getContent(items.get(0), "body"));
+        final ContentLoader.Batch other = loader.newBatch(1);
+        other.add(items.get(2));
+        assertEquals("body of /content/r2", other.getContent(items.get(2), "body"));
+        assertTrue(generatedWith.isEmpty(), "Expecting no generation, got " + generatedWith.keySet());
+
+        assertEquals("title of /content/r2", other.getContent(items.get(2), "title"));
+        assertEquals(1, generatedWith.size());
+    }
+
+    @Test
+    public void batchKeepsItsLastItems() {
+        final ContentLoader loader = new ContentLoader(resolver, generator, null, 1);
+        final List<Resource> items = resources(3);
+        final ContentLoader.Batch batch = loader.newBatch(2);
+        items.forEach(batch::add);
+        batch.getContent(items.get(2), "body");
+        assertEquals("[body|/content/r1, body|/content/r2]", new TreeSet<>(generatedWith.keySet()).toString());
+    }
+
+    @Test
+    public void parallelBatchUsesClonedResolvers() throws Exception {
+        when(resolver.clone(any())).thenAnswer(inv -> {
+            final ResourceResolver clone = mock(ResourceResolver.class);
+            when(clone.getResource(anyString())).thenAnswer(i -> resource(clone, i.getArgument(0, String.class)));
+            clones.add(clone);
+            return clone;
+        });
+        final ContentLoader loader = new ContentLoader(resolver, generator, executor, 3);
+        final List<Resource> items = resources(7);
+        final ContentLoader.Batch batch = loader.newBatch(10);
+        items.forEach(batch::add);
+
+        for(Resource r : items) {
+            assertEquals("body of " + r.getPath(), batch.getContent(r, "body"));
+        }
+        assertEquals(2, clones.size());
+        for(int i=0; i < items.size(); i++) {
+            final ResourceResolver used = generatedWith.get("body|" + items.get(i).getPath());
+            if(i % 3 == 0) {
+                assertSame(resolver, used, "Expecting the request's resolver for item " + i);
+            } else {
+                assertSame(clones.get(i % 3 - 1), used, "Expecting a clone for item " + i);
+            }
+        }
+        for(ResourceResolver clone : clones) {
+            verify(clone, timeout(5000)).close();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.remotecontent.samples.graphql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DocumentCacheTest {
+
+    private final DocumentCache cache = new DocumentCache();
+    private final ResourceResolver resolver = mock(ResourceResolver.class);
+    private final AtomicInteger aggregations = new AtomicInteger();
+
+    @BeforeEach
+    public void setup() {
+        final DocumentCache.Config cfg = mock(DocumentCache.Config.class);
+        when(cfg.max_size()).thenReturn(10);
+        cache.activate(cfg);
+        when(resolver.getUserID()).thenReturn("alice");
+    }
+
+    private Resource resource(String path) {
+        final Resource r = mock(Resource.class);
+        when(r.getPath()).thenReturn(path);
+        when(r.getResourceResolver()).thenReturn(resolver);
+        return r;
+    }
+
+    /** Get the document for path, which uses the given paths */
+    private Map<String, Object> get(String path, String ... usedPaths) {
+        return cache.getDocument(resource(path), false, null, listener -> {
+            aggregations.incrementAndGet();
+            for(String used : usedPaths) {
+                listener.onResourcePath(used);
+            }
+            final Map<String, Object> doc = new HashMap<>();
+            doc.put("path", path);
+            return doc;
+        });
+    }
+
+    /** Assert whether path is still cached, without computing it again */
+    private void assertCached(boolean expected, String path) {
+        final int before = aggregations.get();
+        get(path, path);
+        assertEquals(expected, aggregations.get() == before, "Expecting " + path + (expected ? " to be cached" : " to be computed again"));
+    }
+
+    @Test
+    public void hitAndMiss() {
+        final Map<String, Object> first = get("/content/a", "/content/a");
+        assertSame(first, get("/content/a", "/content/a"));
+        assertEquals(1, aggregations.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void invalidatesPathParentAndSubtree() {
+        get("/content/self", "/content/self");
+        get("/content/parent", "/content/parent");
+        get("/content/subtree", "/content/tree/a/b");
+        get("/content/sibling", "/content/parentx", "/content/tree-a");
+
+        cache.invalidate("/content/self");
+        assertCached(false, "/content/self");
+
+        // a new child changes its parent's children
+        cache.invalidate("/content/parent/new");
+        assertCached(false, "/content/parent");
+
+        cache.invalidate("/content/tree");
+        assertCached(false, "/content/subtree");
+
+        assertCached(true, "/content/sibling");
+        assertEquals(3, cache.getInvalidations());
+    }
+
+    @Test
+    public void changeDuringAggregationIsNotCached() {
+        cache.getDocument(resource("/content/a"), false, null, listener -> {
+            aggregations.incrementAndGet();
+            listener.onResourcePath("/content/a");
+            listener.onResourcePath("/content/b");
+            cache.invalidate("/content/b");
+            return Collections.emptyMap();
+        });
+        assertCached(false, "/content/a");
+    }
+
+    @Test
+    public void unrelatedChangeDuringAggregationIsCached() {
+        cache.getDocument(resource("/content/a"), false, null, listener -> {
+            aggregations.incrementAndGet();
+            listener.onResourcePath("/content/a");
+            cache.invalidate("/content/other");
+            // reported after the invalidation, so read after the change
+            listener.onResourcePath("/content/other");
+            return Collections.emptyMap();
+        });
+        assertCached(true, "/content/a");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void cachedDocumentsAreUnmodifiable() {
+        final Map<String, Object> doc = cache.getDocument(resource("/content/a"), false, null, listener -> {
+            final Map<String, Object> child = new HashMap<>();
+            child.put("tags", new Object[] { "a", "b" });
+            final Map<String, Object> result = new HashMap<>();
+            result.put("child", child);
+            return result;
+        });
+        assertThrows(UnsupportedOperationException.class, () -> doc.put("x", "y"));
+        final Map<String, Object> child = (Map<String, Object>)doc.get("child");
+        assertThrows(UnsupportedOperationException.class, () -> child.remove("tags"));
+        final List<Object> tags = (List<Object>)child.get("tags");
+        assertEquals("[a, b]", tags.toString());
+        assertThrows(UnsupportedOperationException.class, () -> tags.set(0, "c"));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.remotecontent.samples.graphql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+public class KeysetQueryTest {
+    private static final String PATH = KeysetQuery.PATH_KEY;
+    private static final String XPATH = KeysetQuery.XPATH;
+    private static final String SQL2 = KeysetQuery.SQL2;
+
+    @Test
+    public void xpathFirstPage() {
+        assertEquals(
+            "/jcr:root/content//element(*, nt:unstructured) order by @jcr:path ascending option(limit 11)",
+            KeysetQuery.rewrite("/jcr:root/content//element(*, nt:unstructured)", XPATH, PATH, null, 11));
+    }
+
+    @Test
+    public void xpathWithoutPredicate() {
+        assertEquals(
+            "/jcr:root/content//*[@jcr:path >= '/content/a'] order by @jcr:path ascending option(limit 12)",
+            KeysetQuery.rewrite("/jcr:root/content//*", XPATH, PATH, "/content/a", 12));
+    }
+
+    @Test
+    public void xpathNestedPredicates() {
+        assertEquals(
+            "/jcr:root/content//*[((@a = 'x]' or @b = \"y[\") and @c[@d]) and @jcr:path >= '/content/a']"
+                + " order by @jcr:path ascending option(limit 12)",
+            KeysetQuery.rewrite("/jcr:root/content//*[(@a = 'x]' or @b = \"y[\") and @c[@d]]", XPATH, PATH, "/content/a", 12));
+    }
+
+    @Test
+    public void xpathQuotedStrings() {
+        assertEquals(
+            "/jcr:root/content//*[(@title = 'it''s]') and @jcr:path >= '/content/it''s'] order by @jcr:path ascending option(limit 12)",
+            KeysetQuery.rewrite("/jcr:root/content//*[@title = 'it''s]']", XPATH, PATH, "/content/it's", 12));
+    }
+
+    @Test
+    public void xpathSortKey() {
+        assertEquals(
+            "/jcr:root/content//*[@id >= '42'] order by @id ascending option(limit 12)",
+            KeysetQuery.rewrite("/jcr:root/content//*", XPATH, "id", "42", 12));
+    }
+
+    @Test
+    public void sql2FirstPage() {
+        assertEquals(
+            "SELECT * FROM [nt:unstructured] ORDER BY [jcr:path] OPTION(LIMIT 11)",
+            KeysetQuery.rewrite("SELECT * FROM [nt:unstructured]", SQL2, PATH, null, 11));
+    }
+
+    @Test
+    public void sql2MissingWhere() {
+        assertEquals(
+            "SELECT * FROM [nt:unstructured] WHERE [jcr:path] >= '/content/a' ORDER BY [jcr:path] OPTION(LIMIT 12)",
+            KeysetQuery.rewrite("SELECT * FROM [nt:unstructured]", SQL2, PATH, "/content/a", 12));
+    }
+
+    @Test
+    public void sql2NestedPredicates() {
+        assertEquals(
+            "SELECT * FROM [nt:unstructured] AS s WHERE (s.[a] = 'x' OR (s.[b] = 'y' AND s.[c] = 'z'))"
+                + " AND [jcr:path] >= '/content/a' ORDER BY [jcr:path] OPTION(LIMIT 12)",
+            KeysetQuery.rewrite("SELECT * FROM [nt:unstructured] AS s WHERE s.[a] = 'x' OR (s.[b] = 'y' AND s.[c] = 'z')",
+                SQL2, PATH, "/content/a", 12));
+    }
+
+    @Test
+    public void sql2QuotedStrings() {
+        assertEquals(
+            "SELECT * FROM [nt:unstructured] AS s WHERE (s.[title] = ' where ''x'' ')"
+                + " AND [jcr:path] >= '/content/it''s' ORDER BY [jcr:path] OPTION(LIMIT 12)",
+            KeysetQuery.rewrite("SELECT * FROM [nt:unstructured] AS s WHERE s.[title] = ' where ''x'' '",
+                SQL2, PATH, "/content/it's", 12));
+    }
+
+    @Test
+    public void existingOrderBy() {
+        assertNull(KeysetQuery.rewrite("/jcr:root/content//* order by @title", XPATH, PATH, "/content/a", 12));
+        assertNull(KeysetQuery.rewrite("SELECT * FROM [nt:unstructured] ORDER BY [title]", SQL2, PATH, "/content/a", 12));
+    }
+
+    @Test
+    public void notRewritable() {
+        assertNull(KeysetQuery.rewrite(null, XPATH, PATH, null, 12));
+        assertNull(KeysetQuery.rewrite("/jcr:root/content//* option(traversal fail)", XPATH, PATH, null, 12));
+        assertNull(KeysetQuery.rewrite("/jcr:root/a//* | /jcr:root/b//*", XPATH, PATH, null, 12));
+        assertNull(KeysetQuery.rewrite("SELECT * FROM [nt:base] AS a INNER JOIN [nt:base] AS b ON ISCHILDNODE(b, a)",
+            SQL2, PATH, null, 12));
+        assertNull(KeysetQuery.rewrite("/jcr:root/content//*", "sql", PATH, null, 12));
+    }
+}
@@ -21,7 +21,7 @@ import org.osgi.annotation.versioning.ProviderType;
 @ProviderType
 public class AttrValue implements CharSequence {
 
-    Predicate<String> nonQuotable = Pattern.compile("^[a-zA-Z][-_a-zA-Z0-9\\u00A0-\\u10FFFF]*$").asPredicate();
+    private static final Predicate<String> nonQuotable = Pattern.compile("^[a-zA-Z][-_a-zA-Z0-9\\u00A0-\\u10FFFF]*$").asPredicate();
 
     private String value;
 
@@ -15,11 +15,14 @@ package org.apache.sling.tagmodifier;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.util.Iterator;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import org.apache.sling.tagmodifier.impl.HtmlTokenizer;
 import org.osgi.annotation.versioning.ProviderType;
 
 /**
@@ -36,6 +39,17 @@ public class Tag {
         return stream(new ByteArrayInputStream(input.getBytes()));
     }
 
+    /**
+     * Streams the elements of html which is already in memory, using the
+     * {@link HtmlTokenizer} instead of the generated parser.
+     * 
+     * @param input
+     * @return stream of elements
+     */
+    public static Stream<Element> stream(CharBuffer input) {
+        return stream(new HtmlTokenizer(input));
+    }
+
     public static Stream<Element> stream(InputStream is) {
         return  stream(new TagIterator(is));
     }
@@ -44,7 +58,7 @@ public class Tag {
         return stream(new TagIterator(is, encoding));
     }
 
-    private static Stream<Element> stream(TagIterator iterator) {
+    private static Stream<Element> stream(Iterator<Element> iterator) {
         return StreamSupport.stream(
                 Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.IMMUTABLE), false);
     }
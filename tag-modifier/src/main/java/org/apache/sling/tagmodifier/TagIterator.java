@@ -67,8 +67,9 @@ public class TagIterator implements Iterator<Element> {
             eof =  (current.getType() == ElementType.EOF);
             return !eof;
         } catch (ParseException e) {
+            eof = true;
+            throw new IllegalStateException("Unable to parse html", e);
         }
-        return false;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,440 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.tagmodifier.impl;
+
+import java.nio.CharBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.sling.tagmodifier.AttrValue;
+import org.apache.sling.tagmodifier.Element;
+import org.apache.sling.tagmodifier.impl.tag.Comment;
+import org.apache.sling.tagmodifier.impl.tag.EndTag;
+import org.apache.sling.tagmodifier.impl.tag.StartTag;
+import org.apache.sling.tagmodifier.impl.tag.TextData;
+
+/**
+ * Hand written alternative to the JavaCC generated {@link TagParser} which
+ * works directly on a {@link CharBuffer}.
+ * 
+ * Elements are produced one at a time as the iterator advances and the
+ * attribute map of a start tag is only built when it is accessed, until then
+ * the tag just keeps a copy of the text of its attributes. The produced
+ * elements are the same as the ones of the {@link TagParser}, including the
+ * way malformed tags are turned into text, with the exception that input the
+ * {@link TagParser} fails on, such as a trailing {@code <}, is returned as text
+ * too.
+ */
+public class HtmlTokenizer implements Iterator<Element> {
+
+    private final CharBuffer input;
+
+    private final char[] array;
+
+    private final int offset;
+
+    private final int end;
+
+    private int position;
+
+    private Element current;
+
+    public HtmlTokenizer(CharBuffer input) {
+        this.input = input.slice();
+        if (this.input.hasArray()) {
+            this.array = this.input.array();
+            this.offset = this.input.arrayOffset();
+        } else {
+            this.array = null;
+            this.offset = 0;
+        }
+        this.end = this.input.limit();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (current == null) {
+            current = element();
+        }
+        return current != null;
+    }
+
+    @Override
+    public Element next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Element response = current;
+        current = null;
+        return response;
+    }
+
+    private char charAt(int index) {
+        return array != null ? array[offset + index] : input.get(index);
+    }
+
+    private String text(int from, int to) {
+        if (array != null) {
+            return new String(array, offset + from, to - from);
+        }
+        return input.subSequence(from, to).toString();
+    }
+
+    private Element element() {
+        int start = position;
+        if (start >= end) {
+            return null;
+        }
+        if (charAt(start) != '<') {
+            int stop = indexOf('<', start + 1);
+            position = stop;
+            return new TextData(text(start, stop));
+        }
+        if (start + 1 < end) {
+            switch (charAt(start + 1)) {
+            case '!':
+                if (start + 3 < end && charAt(start + 2) == '-' && charAt(start + 3) == '-') {
+                    return comment(start);
+                }
+                return declaration(start);
+            case '/':
+                return endTag(start);
+            default:
+            }
+        }
+        return startTag(start, null);
+    }
+
+    private Element comment(int start) {
+        int from = start + 4;
+        for (int index = from; index + 2 < end; ++index) {
+            if (charAt(index) == '-' && charAt(index + 1) == '-' && charAt(index + 2) == '>') {
+                position = index + 3;
+                return new Comment(text(from, index));
+            }
+        }
+        position = end;
+        return new Comment(text(from, end));
+    }
+
+    /**
+     * Scans a start tag. Malformed tags are turned into text the same way the
+     * {@link TagParser} does, from the text of the tokens up to the first
+     * unexpected one in which case the tag is scanned a second time to collect
+     * that text.
+     */
+    private Element startTag(int start, StringBuilder recovery) {
+        int p = start + 1;
+        if (p >= end) {
+            position = end;
+            return new TextData("<");
+        }
+        char c = charAt(p);
+        if (isNameEnd(c)) {
+            position = p + 1;
+            return new TextData("<" + c);
+        }
+        int nameEnd = nameEnd(p);
+        append(recovery, start, nameEnd);
+        int q = nameEnd;
+        for (;;) {
+            int token = skipSpace(q);
+            append(recovery, q, token);
+            q = token;
+            if (q >= end) {
+                return recover(start, recovery, end, end);
+            }
+            c = charAt(q);
+            if (c == '>') {
+                position = q + 1;
+                return new LazyStartTag(text(p, nameEnd), text(nameEnd, q), true);
+            }
+            if (c == '/') {
+                if (q + 1 < end && charAt(q + 1) == '>') {
+                    position = q + 2;
+                    return new LazyStartTag(text(p, nameEnd), text(nameEnd, q), false);
+                }
+                return recover(start, recovery, q, q + 1);
+            }
+            if (c == '=') {
+                return recover(start, recovery, q, q + 1);
+            }
+            int attrEnd = attrNameEnd(q);
+            append(recovery, q, attrEnd);
+            q = attrEnd;
+            int eq = skipSpace(q);
+            if (eq < end && charAt(eq) == '=') {
+                append(recovery, q, eq + 1);
+                int value = skipValueSpace(eq + 1);
+                append(recovery, eq + 1, value);
+                if (value >= end) {
+                    return recover(start, recovery, end, end);
+                }
+                c = charAt(value);
+                if (c == '"' || c == '\'') {
+                    int close = indexOf(c, value + 1);
+                    if (close == end) {
+                        return recover(start, recovery, value, value + 1);
+                    }
+                    // the quotes are not part of the token text
+                    append(recovery, value + 1, close);
+                    q = close + 1;
+                } else if (c == '>') {
+                    return recover(start, recovery, value, value + 1);
+                } else {
+                    return recover(start, recovery, value, attrValueEnd(value));
+                }
+            }
+        }
+    }
+
+    private Element recover(int start, StringBuilder recovery, int tokenStart, int tokenEnd) {
+        if (recovery == null) {
+            return startTag(start, new StringBuilder());
+        }
+        append(recovery, tokenStart, tokenEnd);
+        position = tokenEnd;
+        return new TextData(recovery.toString());
+    }
+
+    private void append(StringBuilder sb, int from, int to) {
+        if (sb != null) {
+            if (array != null) {
+                sb.append(array, offset + from, to - from);
+            } else {
+                sb.append(input, from, to);
+            }
+        }
+    }
+
+    private Element endTag(int start) {
+        int p = start + 2;
+        if (p >= end) {
+            position = end;
+            return new TextData("</");
+        }
+        char c = charAt(p);
+        if (isNameEnd(c)) {
+            position = p + 1;
+            return new TextData("</" + c);
+        }
+        int nameEnd = nameEnd(p);
+        int q = skipSpace(nameEnd);
+        int stop;
+        if (q >= end) {
+            stop = end;
+        } else {
+            c = charAt(q);
+            if (c == '>') {
+                position = q + 1;
+                return new EndTag(text(p, nameEnd));
+            } else if (c == '/' && q + 1 < end && charAt(q + 1) == '>') {
+                position = q + 2;
+                return new EndTag(text(p, nameEnd));
+            } else if (c == '=' || c == '/') {
+                stop = q + 1;
+            } else {
+                stop = attrNameEnd(q);
+            }
+        }
+        position = stop;
+        return new TextData(text(start, stop));
+    }
+
+    private Element declaration(int start) {
+        int p = start + 2;
+        if (p >= end || isNameEnd(charAt(p))) {
+            position = p >= end ? end : p;
+            return new TextData("<!");
+        }
+        int nameEnd = nameEnd(p);
+        Map<String, AttrValue> attributes = new HashMap<>();
+        int q = nameEnd;
+        for (;;) {
+            q = skipValueSpace(q);
+            if (q >= end) {
+                position = end;
+                return new TextData(text(start, end));
+            }
+            char c = charAt(q);
+            if (c == '>') {
+                position = q + 1;
+                return new StartTag(text(p, nameEnd), attributes);
+            }
+            if (c == '/' && q + 1 < end && charAt(q + 1) == '>') {
+                position = q + 2;
+                return new StartTag(text(p, nameEnd), attributes);
+            }
+            int attrEnd;
+            if (c == '"' || c == '\'') {
+                attrEnd = indexOf(c, q + 1);
+                if (attrEnd == end) {
+                    position = q + 1;
+                    return new TextData(text(start, q + 1));
+                }
+                ++attrEnd;
+            } else {
+                attrEnd = attrValueEnd(q);
+            }
+            attributes.put(text(q, attrEnd), new AttrValue());
+            q = attrEnd;
+        }
+    }
+
+    private int indexOf(char c, int from) {
+        int index = from;
+        while (index < end && charAt(index) != c) {
+            ++index;
+        }
+        return index;
+    }
+
+    private int skipSpace(int from) {
+        int index = from;
+        while (index < end && isSpace(charAt(index))) {
+            ++index;
+        }
+        return index;
+    }
+
+    /**
+     * Skips the white space in front of an attribute value. A form feed may
+     * also start an unquoted value, the longer of both wins.
+     */
+    private int skipValueSpace(int from) {
+        int space = skipSpace(from);
+        if (from < end && charAt(from) == '\f' && attrValueEnd(from) > space) {
+            return from;
+        }
+        return space;
+    }
+
+    private int nameEnd(int from) {
+        int index = from;
+        while (index < end && !isNameEnd(charAt(index))) {
+            ++index;
+        }
+        return index;
+    }
+
+    private int attrNameEnd(int from) {
+        int index = from;
+        while (index < end) {
+            char c = charAt(index);
+            if (isNameEnd(c) || c == '=') {
+                break;
+            }
+            ++index;
+        }
+        return index;
+    }
+
+    private int attrValueEnd(int from) {
+        int index = from;
+        while (index < end) {
+            char c = charAt(index);
+            if (c == '>' || c == '"' || c == '\'' || c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                break;
+            }
+            ++index;
+        }
+        return index;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isNameEnd(char c) {
+        return isSpace(c) || c == '/' || c == '>';
+    }
+
+    /**
+     * Start tag which parses its attributes from their text on first access.
+     */
+    private static final class LazyStartTag extends StartTag {
+
+        private String input;
+
+        private Map<String, AttrValue> attributes;
+
+        LazyStartTag(String value, String input, boolean selfClosing) {
+            super(value, null, selfClosing);
+            this.input = input;
+        }
+
+        @Override
+        public boolean hasAttributes() {
+            if (attributes != null) {
+                return !attributes.isEmpty();
+            }
+            // the tag has been validated, anything but white space is an
+            // attribute
+            for (int index = 0; index < input.length(); ++index) {
+                if (!isSpace(input.charAt(index))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Map<String, AttrValue> getAttributes() {
+            if (attributes == null) {
+                attributes = parse();
+                input = null;
+            }
+            return attributes;
+        }
+
+        private Map<String, AttrValue> parse() {
+            Map<String, AttrValue> map = new HashMap<>();
+            int to = input.length();
+            int index = 0;
+            while (index < to) {
+                char c = input.charAt(index);
+                if (isSpace(c)) {
+                    ++index;
+                    continue;
+                }
+                int nameStart = index;
+                while (index < to && !isNameEnd(c = input.charAt(index)) && c != '=') {
+                    ++index;
+                }
+                String name = input.substring(nameStart, index);
+                while (index < to && isSpace(input.charAt(index))) {
+                    ++index;
+                }
+                if (index < to && input.charAt(index) == '=') {
+                    ++index;
+                    while (isSpace(input.charAt(index))) {
+                        ++index;
+                    }
+                    char quote = input.charAt(index);
+                    int valueStart = ++index;
+                    while (input.charAt(index) != quote) {
+                        ++index;
+                    }
+                    map.put(name, new AttrValue(input.substring(valueStart, index)));
+                    ++index;
+                } else {
+                    map.put(name, new AttrValue());
+                }
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.tagmodifier.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A {@link SimpleCharStream} that is fed with characters as they are written
+ * instead of pulling them from a reader.
+ * 
+ * When the token manager asks for more characters than have been appended so
+ * far the stream reports the end of the input and remembers that it was
+ * starved, so that the element produced from the truncated input can be
+ * discarded and parsed again from its start once more characters have been
+ * appended. Only after {@link #close()} the end of the input is final.
+ */
+public class PushCharStream extends SimpleCharStream {
+
+    private char[] data = new char[4096];
+
+    /** number of characters in data */
+    private int length;
+
+    /** index of the last character read */
+    private int position = -1;
+
+    /** index of the first character of the current token */
+    private int tokenStart;
+
+    /** index of the first character which may still be read again */
+    private int start;
+
+    /** number of characters dropped from the front of data so far */
+    private int offset;
+
+    private boolean closed;
+
+    private boolean starved;
+
+    public PushCharStream() {
+        super((Reader) null, 1, 1, 1);
+    }
+
+    /**
+     * Appends characters to the input.
+     */
+    public void append(char[] cbuf, int off, int len) {
+        if (length + len > data.length) {
+            // drop the characters which have been parsed already before growing
+            System.arraycopy(data, start, data, 0, length - start);
+            length -= start;
+            position -= start;
+            tokenStart -= start;
+            offset += start;
+            start = 0;
+            if (length + len > data.length) {
+                char[] grown = new char[Math.max(data.length * 2, length + len)];
+                System.arraycopy(data, 0, grown, 0, length);
+                data = grown;
+            }
+        }
+        System.arraycopy(cbuf, off, data, length, len);
+        length += len;
+    }
+
+    /**
+     * Marks the end of the input, no more characters will be appended.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * @return whether the end of the appended characters was reached before
+     *         the input was closed since the last {@link #mark()}
+     */
+    public boolean isStarved() {
+        return starved;
+    }
+
+    /**
+     * @return position of the next character to be read
+     */
+    public int mark() {
+        starved = false;
+        return position + 1;
+    }
+
+    /**
+     * Moves back to a position returned by {@link #mark()}.
+     */
+    public void reset(int mark) {
+        position = mark - 1;
+        starved = false;
+    }
+
+    /**
+     * Releases the characters before the given mark, they won't be read again.
+     */
+    public void release(int mark) {
+        start = mark;
+    }
+
+    /**
+     * @return number of characters appended which have not been released yet
+     */
+    public int pending() {
+        return length - start;
+    }
+
+    @Override
+    public char BeginToken() throws IOException {
+        tokenStart = -1;
+        char c = readChar();
+        tokenStart = position;
+        return c;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        if (position + 1 < length) {
+            return data[++position];
+        }
+        if (!closed) {
+            starved = true;
+        }
+        throw new IOException("end of input");
+    }
+
+    @Override
+    public void backup(int amount) {
+        position -= amount;
+    }
+
+    @Override
+    public String GetImage() {
+        return new String(data, tokenStart, position - tokenStart + 1);
+    }
+
+    @Override
+    public char[] GetSuffix(int len) {
+        char[] suffix = new char[len];
+        System.arraycopy(data, position - len + 1, suffix, 0, len);
+        return suffix;
+    }
+
+    @Override
+    public void Done() {
+        // nothing to release, the characters are dropped with the stream
+    }
+
+    // lines are not tracked, columns are the offset in the input
+
+    @Override
+    @Deprecated
+    public int getColumn() {
+        return getEndColumn();
+    }
+
+    @Override
+    @Deprecated
+    public int getLine() {
+        return 1;
+    }
+
+    @Override
+    public int getEndColumn() {
+        return offset + position + 1;
+    }
+
+    @Override
+    public int getEndLine() {
+        return 1;
+    }
+
+    @Override
+    public int getBeginColumn() {
+        return offset + tokenStart + 1;
+    }
+
+    @Override
+    public int getBeginLine() {
+        return 1;
+    }
+
+    @Override
+    public void adjustBeginLineColumn(int newLine, int newCol) {
+        // lines and columns are not tracked
+    }
+
+}
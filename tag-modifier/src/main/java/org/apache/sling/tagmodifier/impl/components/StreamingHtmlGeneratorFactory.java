@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.tagmodifier.impl.components;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+import org.apache.sling.rewriter.Generator;
+import org.apache.sling.rewriter.GeneratorFactory;
+import org.apache.sling.rewriter.ProcessingComponentConfiguration;
+import org.apache.sling.rewriter.ProcessingContext;
+import org.apache.sling.tagmodifier.Element;
+import org.apache.sling.tagmodifier.ElementType;
+import org.apache.sling.tagmodifier.consumer.HtmlSAXSupport;
+import org.apache.sling.tagmodifier.impl.ParseException;
+import org.apache.sling.tagmodifier.impl.PushCharStream;
+import org.apache.sling.tagmodifier.impl.TagParser;
+import org.apache.sling.tagmodifier.impl.TagParserTokenManager;
+import org.apache.sling.tagmodifier.impl.TokenMgrError;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.annotations.Component;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * HTML generator which parses the output while it is being written and passes
+ * the SAX events on right away, so that the pipeline runs while the page
+ * renders instead of after the whole page has been buffered.
+ *
+ */
+@Component(service = GeneratorFactory.class,
+    property = {
+            Constants.SERVICE_VENDOR + "=The Apache Software Foundation",
+            "pipeline.type=html5-streaming-generator"
+    })
+public class StreamingHtmlGeneratorFactory implements GeneratorFactory {
+
+    /**
+     * @see org.apache.sling.rewriter.GeneratorFactory#createGenerator()
+     */
+    @Override
+    public Generator createGenerator() {
+        return new StreamingHtmlGenerator();
+    }
+
+    public static final class StreamingHtmlGenerator extends Writer implements Generator {
+
+        /** minimum number of characters to wait for before parsing again */
+        private static final int MIN_RETRY = 256;
+
+        private final PushCharStream stream = new PushCharStream();
+
+        private final TagParserTokenManager tokenManager = new TagParserTokenManager(stream);
+
+        private final TagParser parser = new TagParser(tokenManager);
+
+        private final PrintWriter writer = new PrintWriter(this);
+
+        private HtmlSAXSupport sax;
+
+        /** number of pending characters needed before parsing again */
+        private int retry;
+
+        private Exception failure;
+
+        /**
+         * @see org.apache.sling.rewriter.Generator#finished()
+         */
+        @Override
+        public void finished() throws IOException, SAXException {
+            writer.flush();
+            stream.close();
+            parse();
+            if (failure != null) {
+                throw new SAXException("Unable to parse html", failure);
+            }
+        }
+
+        /**
+         * @see org.apache.sling.rewriter.Generator#getWriter()
+         */
+        @Override
+        public PrintWriter getWriter() {
+            return writer;
+        }
+
+        @Override
+        public void init(ProcessingContext context,
+                         ProcessingComponentConfiguration config)
+        throws IOException {
+            // nothing to do
+        }
+
+        /**
+         * @see org.apache.sling.rewriter.Generator#setContentHandler(org.xml.sax.ContentHandler)
+         */
+        @Override
+        public void setContentHandler(ContentHandler handler) {
+            this.sax = new HtmlSAXSupport(handler, null);
+        }
+
+        /**
+         * @see org.apache.sling.rewriter.Generator#dispose()
+         */
+        @Override
+        public void dispose() {
+            // nothing to do
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            if (failure != null) {
+                return;
+            }
+            stream.append(cbuf, off, len);
+            if (stream.pending() >= retry) {
+                parse();
+            }
+        }
+
+        @Override
+        public void flush() {
+            // incomplete elements can't be passed on before more output arrives
+        }
+
+        @Override
+        public void close() {
+            // the end of the output is signalled by finished()
+        }
+
+        /**
+         * Passes on all the elements which are complete. An element which ran
+         * into the end of the characters written so far is discarded and parsed
+         * again once enough further output has been written.
+         */
+        private void parse() {
+            while (failure == null) {
+                int mark = stream.mark();
+                Element element;
+                try {
+                    element = parser.element();
+                } catch (ParseException | TokenMgrError e) {
+                    if (!stream.isStarved()) {
+                        failure = e instanceof Exception ? (Exception) e : new ParseException(e.getMessage());
+                        return;
+                    }
+                    element = null;
+                }
+                if (stream.isStarved()) {
+                    stream.reset(mark);
+                    tokenManager.ReInit(stream);
+                    parser.ReInit(tokenManager);
+                    // wait for the pending input to double so that long
+                    // elements written in small pieces aren't parsed over and
+                    // over again
+                    retry = Math.max(MIN_RETRY, stream.pending() * 2);
+                    return;
+                }
+                stream.release(stream.mark());
+                retry = 0;
+                if (sax != null) {
+                    sax.accept(element);
+                }
+                if (element.getType() == ElementType.EOF) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -13,8 +13,13 @@
  */
 package org.apache.sling.tagmodifier.util;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.stream.Collector;
 
 import org.apache.sling.tagmodifier.AttrValue;
 import org.apache.sling.tagmodifier.Element;
@@ -27,46 +32,99 @@ public class HtmlStreams {
 
     public static final  Function<Element, String> TO_HTML = element ->{
         StringBuilder sb = new StringBuilder();
+        append(element, sb);
+        return sb.toString();
+    };
+
+    /**
+     * Writes the html representation of the element to the given output,
+     * without creating intermediate strings.
+     * 
+     * @param element element to serialize
+     * @param out destination of the html
+     * @throws IOException if the destination could not be written to
+     */
+    public static void appendHtml(Element element, Appendable out) throws IOException {
         switch (element.getType()) {
         case COMMENT:
-            sb.append("<!--");
-            sb.append(element.getValue());
-            sb.append("-->");
+            out.append("<!--");
+            out.append(element.getValue());
+            out.append("-->");
             break;
         case DOCTYPE:
-            sb.append("<!");
-            sb.append(element.getValue());
-            sb.append(">");
+            out.append("<!");
+            out.append(element.getValue());
+            out.append('>');
             break;
         case END_TAG:
-            sb.append("</");
-            sb.append(element.getValue());
-            sb.append('>');
+            out.append("</");
+            out.append(element.getValue());
+            out.append('>');
             break;
         case EOF:
             break;
         case START_TAG:
-            sb.append('<');
-            sb.append(element.getValue());
+            out.append('<');
+            out.append(element.getValue());
             StartTag tag = (StartTag) element;
             if (tag.hasAttributes()) {
-                sb.append(' ');
-                sb.append(tag.getAttributes().entrySet().stream().map(entry -> {
-                    StringBuilder sb2 = new StringBuilder();
-                    sb2.append(entry.getKey());
+                for (Map.Entry<String, AttrValue> entry : tag.getAttributes().entrySet()) {
+                    out.append(' ');
+                    out.append(entry.getKey());
                     AttrValue value = entry.getValue();
                     if (!value.isEmpty()) {
-                        sb2.append("=");
-                        sb2.append(value.quoteIfNeeded());
-                    } 
-                    return sb2.toString();
-                }).collect(Collectors.joining(" ")));
+                        out.append('=');
+                        if (value.shouldBeQuoted()) {
+                            out.append('"').append(value).append('"');
+                        } else {
+                            out.append(value);
+                        }
+                    }
+                }
             }
-            sb.append('>');
+            out.append('>');
             break;
         case TEXT:
-            sb.append(element.toString());
+            out.append(element.toString());
         }
-        return sb.toString();
-    };
+    }
+
+    /**
+     * Returns a consumer writing the html of each element to the writer.
+     * 
+     * @param writer destination of the html
+     * @return consumer to be used with {@code forEachOrdered}
+     * @throws UncheckedIOException when writing fails
+     */
+    public static Consumer<Element> writeTo(Writer writer) {
+        return element -> {
+            try {
+                appendHtml(element, writer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * Returns a collector appending the html of all elements to the given
+     * buffer. The buffer is returned as the result, so that it can be cleared
+     * and reused for the next document. The collector supports sequential
+     * streams only.
+     * 
+     * @param buffer buffer receiving the html
+     * @return collector filling the buffer
+     */
+    public static Collector<Element, ?, StringBuilder> toHtml(StringBuilder buffer) {
+        return Collector.of(() -> buffer, (sb, element) -> append(element, sb), (left, right) -> left.append(right));
+    }
+
+    private static void append(Element element, StringBuilder sb) {
+        try {
+            appendHtml(element, sb);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -20,8 +20,13 @@ package org.apache.sling.tagmodifier;
 import static org.junit.Assert.assertEquals;
 
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.ParseException;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.sling.tagmodifier.Element;
@@ -58,11 +63,41 @@ public class HtmlParseTest {
         assertEquals(2928, count);
     }
 
+    /**
+     * demo.html serialized by TO_HTML before it was built on appendHtml
+     */
+    private String expectedHtml() throws Exception {
+        return new String(Files.readAllBytes(Paths.get(getClass().getResource("/demo-expected.html").toURI())),
+                StandardCharsets.UTF_8);
+    }
+
     @Test
     public void docParseAllTestToString() throws Exception {
         stream.map(HtmlStreams.TO_HTML).count();
     }
 
+    @Test
+    public void docParseAllTestToStringMatchesExpected() throws Exception {
+        assertEquals(expectedHtml(), stream.map(HtmlStreams.TO_HTML).collect(Collectors.joining()));
+    }
+
+    @Test
+    public void docParseAllTestToWriter() throws Exception {
+        StringWriter writer = new StringWriter();
+        stream.forEachOrdered(HtmlStreams.writeTo(writer));
+        assertEquals(expectedHtml(), writer.toString());
+    }
+
+    @Test
+    public void docParseAllTestToBuffer() throws Exception {
+        StringBuilder buffer = new StringBuilder();
+        assertEquals(expectedHtml(), stream.collect(HtmlStreams.toHtml(buffer)).toString());
+        buffer.setLength(0);
+        String html = "<a href=\"x y\" id=\"i\">text</a>";
+        assertEquals("<a href=\"x y\" id=i>text</a>",
+                Tag.stream(html).collect(HtmlStreams.toHtml(buffer)).toString());
+    }
+
     @Test
     public void docParseSAXTest() {
         HtmlSAXSupport support = new HtmlSAXSupport(new DefaultHandler2() {
@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.tagmodifier.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+
+import org.apache.sling.tagmodifier.AttrValue;
+import org.apache.sling.tagmodifier.Element;
+import org.apache.sling.tagmodifier.ElementType;
+import org.apache.sling.tagmodifier.TagIterator;
+import org.apache.sling.tagmodifier.impl.tag.StartTag;
+import org.apache.sling.tagmodifier.util.HtmlStreams;
+import org.junit.Test;
+
+/**
+ * Compares the elements produced by the {@link HtmlTokenizer} with the ones of
+ * the generated {@link TagParser}.
+ */
+public class HtmlTokenizerTest {
+
+    private static final String[] FRAGMENTS = { "<", ">", "/", "=", "\"", "'", " ", "\n", "\t", "\f", "!", "-",
+            "--", "<!--", "-->", "</", "/>", "<!", "a", "p", "div", "href", "x", "text", "<p>", "</p>",
+            "<a href=\"/x\">", "<br/>", "='v'", "=\"v\"", "=v", "&amp;", "\u00e9" };
+
+    private static String read(String name) {
+        InputStream is = HtmlTokenizerTest.class.getResourceAsStream(name);
+        try (Scanner scanner = new Scanner(is, "UTF-8")) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+
+    private static String describe(Element element) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(element.getType()).append(':').append(element.getValue());
+        if (element instanceof StartTag) {
+            sb.append(" self=").append(((StartTag) element).getSelfClosing());
+        }
+        if (element.hasAttributes()) {
+            for (Map.Entry<String, AttrValue> entry : element.getAttributes().entrySet()) {
+                sb.append(' ').append(entry.getKey()).append("=[").append(entry.getValue()).append(']');
+            }
+        }
+        sb.append(" html=").append(HtmlStreams.TO_HTML.apply(element));
+        return sb.toString();
+    }
+
+    private static List<String> describe(Iterator<Element> iterator) {
+        List<String> elements = new ArrayList<>();
+        iterator.forEachRemaining(element -> elements.add(describe(element)));
+        return elements;
+    }
+
+    /**
+     * @return the elements of the generated parser or null if it fails on the
+     *         input
+     */
+    private static List<String> reference(String html) {
+        try {
+            return describe(
+                    new TagIterator(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), "UTF-8"));
+        } catch (IllegalStateException | TokenMgrError e) {
+            return null;
+        }
+    }
+
+    private static void assertSameElements(String html) {
+        List<String> expected = reference(html);
+        if (expected != null) {
+            assertEquals(html, expected, describe(new HtmlTokenizer(CharBuffer.wrap(html))));
+        }
+    }
+
+    @Test
+    public void corpus() {
+        for (String name : new String[] { "/demo.html", "/fail.html", "/corpus/malformed.html" }) {
+            String html = read(name);
+            assertTrue(name, reference(html) != null);
+            assertSameElements(html);
+            // heap buffers are read through their array
+            assertEquals(name, reference(html), describe(new HtmlTokenizer(CharBuffer.wrap(html.toCharArray()))));
+        }
+    }
+
+    @Test
+    public void randomFragments() {
+        Random random = new Random(4711);
+        for (int run = 0; run < 20000; ++run) {
+            StringBuilder sb = new StringBuilder();
+            int count = 1 + random.nextInt(12);
+            for (int index = 0; index < count; ++index) {
+                sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertSameElements(sb.toString());
+        }
+    }
+
+    @Test
+    public void lenientWhereTheParserFails() {
+        List<String> elements = describe(new HtmlTokenizer(CharBuffer.wrap("text<")));
+        assertEquals(2, elements.size());
+        assertTrue(elements.get(1), elements.get(1).startsWith("TEXT:<"));
+    }
+
+    @Test
+    public void attributesAreParsedOnAccess() {
+        Iterator<Element> iterator = new HtmlTokenizer(CharBuffer.wrap("<a  href=\"/x\" title='t' hidden/><b >"));
+        Element a = iterator.next();
+        Element b = iterator.next();
+        assertFalse(iterator.hasNext());
+        assertTrue(a.hasAttributes());
+        assertFalse(b.hasAttributes());
+        assertEquals("/x", a.getAttributeValue("href"));
+        assertTrue(a.getAttributes().get("hidden").isEmpty());
+        a.setAttribute("href", "/y");
+        assertEquals("/y", a.getAttributeValue("href"));
+        assertEquals(ElementType.START_TAG, b.getType());
+    }
+}
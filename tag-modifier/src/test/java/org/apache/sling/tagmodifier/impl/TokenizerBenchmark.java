@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.tagmodifier.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.tagmodifier.Element;
+import org.apache.sling.tagmodifier.TagIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link HtmlTokenizer} with the generated {@link TagParser} on
+ * the demo page, reading every element and the attributes of every start tag.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    private String html;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream is = TokenizerBenchmark.class.getResourceAsStream("/demo.html");
+                Scanner scanner = new Scanner(is, "UTF-8")) {
+            html = scanner.useDelimiter("\\A").next();
+        }
+        bytes = html.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void tagParser(Blackhole blackhole) {
+        consume(new TagIterator(new ByteArrayInputStream(bytes), "UTF-8"), blackhole);
+    }
+
+    @Benchmark
+    public void htmlTokenizer(Blackhole blackhole) {
+        consume(new HtmlTokenizer(CharBuffer.wrap(html)), blackhole);
+    }
+
+    private static void consume(Iterator<Element> iterator, Blackhole blackhole) {
+        while (iterator.hasNext()) {
+            Element element = iterator.next();
+            blackhole.consume(element.getValue());
+            if (element.supportsAttributes()) {
+                blackhole.consume(element.getAttributes());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TokenizerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
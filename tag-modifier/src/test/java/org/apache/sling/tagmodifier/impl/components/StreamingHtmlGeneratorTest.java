@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.tagmodifier.impl.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+import org.apache.sling.tagmodifier.impl.components.StreamingHtmlGeneratorFactory.StreamingHtmlGenerator;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.DefaultHandler2;
+
+public class StreamingHtmlGeneratorTest {
+
+    private static String read(String name) {
+        InputStream is = StreamingHtmlGeneratorTest.class.getResourceAsStream(name);
+        try (Scanner scanner = new Scanner(is, "UTF-8")) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+
+    private static String parse(String html) throws SAXException {
+        Recorder recorder = new Recorder();
+        new TagHtmlParser().parse(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), "UTF-8",
+                recorder);
+        return recorder.events.toString();
+    }
+
+    private static String generate(String html, int chunkSize) throws IOException, SAXException {
+        Recorder recorder = new Recorder();
+        StreamingHtmlGenerator generator = new StreamingHtmlGenerator();
+        generator.setContentHandler(recorder);
+        PrintWriter writer = generator.getWriter();
+        for (int index = 0; index < html.length(); index += chunkSize) {
+            writer.write(html, index, Math.min(chunkSize, html.length() - index));
+        }
+        generator.finished();
+        return recorder.events.toString();
+    }
+
+    @Test
+    public void sameEventsAsBufferedParsing() throws Exception {
+        for (String name : new String[] { "/demo.html", "/fail.html" }) {
+            String html = read(name);
+            // the buffered parser never sees the end of the document
+            String expected = parse(html) + "[end]";
+            for (int chunkSize : new int[] { 1, 7, 100, 4096, html.length() }) {
+                assertEquals(name + " in chunks of " + chunkSize, expected, generate(html, chunkSize));
+            }
+        }
+    }
+
+    @Test
+    public void eventsArePassedOnWhileWriting() throws Exception {
+        Recorder recorder = new Recorder();
+        StreamingHtmlGenerator generator = new StreamingHtmlGenerator();
+        generator.setContentHandler(recorder);
+        StringBuilder sb = new StringBuilder("<html><body>");
+        for (int index = 0; index < 100; ++index) {
+            sb.append("<p class=\"para\">paragraph ").append(index).append("</p>");
+        }
+        generator.getWriter().write(sb.toString());
+        generator.getWriter().write("<div class=\"unfin");
+
+        String events = recorder.events.toString();
+        assertTrue(events, events.contains("<p class=para>paragraph 99</p>"));
+        assertTrue(events, !events.contains("<div"));
+
+        generator.getWriter().write("ished\"></div></body></html>");
+        generator.finished();
+        events = recorder.events.toString();
+        assertTrue(events, events.endsWith("<div class=unfinished></div></body></html>[end]"));
+    }
+
+    private static class Recorder extends DefaultHandler2 {
+
+        private final StringBuilder events = new StringBuilder();
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            events.append('<').append(localName);
+            for (int index = 0; index < attributes.getLength(); ++index) {
+                events.append(' ').append(attributes.getLocalName(index)).append('=')
+                        .append(attributes.getValue(index));
+            }
+            events.append('>');
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            events.append("</").append(localName).append('>');
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            events.append(ch, start, length);
+        }
+
+        @Override
+        public void endDocument() {
+            events.append("[end]");
+        }
+    }
+}
@@ -29,4 +29,12 @@ public class TransformationConstants {
     
     public static final String ENABLED = "enabled";
 
+    /**
+     * Boolean step property declaring that the output of the step only depends
+     * on its input and on placeholders registered in
+     * {@link TransformationStep#before(TransformationContext)}, so that the
+     * transformed output may be cached.
+     */
+    public static final String CACHEABLE = "cacheable";
+
 }
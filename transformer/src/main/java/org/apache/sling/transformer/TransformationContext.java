@@ -65,6 +65,25 @@ public interface TransformationContext {
      */
     Stream<HtmlElement> getElements();
 
+    /**
+     * Returns a token to use in place of a request specific value, such as a
+     * nonce, in the elements passed on to the next step. The token is the same
+     * for every request and is replaced by the value when the output is written,
+     * which allows the transformed output of cacheable steps to be reused
+     * across requests. Placeholders need to be registered in
+     * {@link TransformationStep#before(TransformationContext)} as the steps are
+     * not invoked when cached output is used.
+     * 
+     * @param name
+     *            name of the placeholder, letters and digits only
+     * @param value
+     *            request specific value
+     * @return token to use in the output
+     */
+    default String placeholder(String name, String value) {
+        return value;
+    }
+
     /**
      * List of transformation steps
      * 
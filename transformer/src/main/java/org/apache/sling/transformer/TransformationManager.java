@@ -24,4 +24,15 @@ public interface TransformationManager {
 
     List<TransformationStep> getSteps(SlingHttpServletRequest request);
 
+    /**
+     * Whether all of the given steps are registered as
+     * {@link TransformationConstants#CACHEABLE}
+     * 
+     * @param steps
+     * @return true if the output of the steps may be cached
+     */
+    default boolean isCacheable(List<TransformationStep> steps) {
+        return false;
+    }
+
 }
\ No newline at end of file
@@ -26,7 +26,8 @@ import org.apache.sling.transformer.TransformationContext;
 import org.apache.sling.transformer.TransformationStep;
 import org.osgi.service.component.annotations.Component;
 
-@Component(property = { TransformationConstants.EXTENSIONS + "=html", "paths=/content/.*"  })
+@Component(property = { TransformationConstants.EXTENSIONS + "=html", "paths=/content/.*",
+        TransformationConstants.CACHEABLE + ":Boolean=true" })
 public class NonceTransformer implements TransformationStep {
 
     private static final String NONCE = "nonce";
@@ -34,7 +35,9 @@ public class NonceTransformer implements TransformationStep {
     @Override
     public void before(TransformationContext context) {
         String nonce = UUID.randomUUID().toString().replace("-", "");
-        context.getState().put(NONCE, nonce);
+        // the nonce is substituted when writing so the transformed page can be
+        // cached
+        context.getState().put(NONCE, context.placeholder(NONCE, nonce));
         context.getResponse().setHeader("Content-Security-Policy","object-src 'none'; script-src 'nonce-"+nonce+"' 'strict-dynamic' 'unsafe-eval'");
     }
 
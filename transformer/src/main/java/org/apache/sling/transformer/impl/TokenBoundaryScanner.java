@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.transformer.impl;
+
+/**
+ * Incrementally scans buffered HTML for the end of the last complete token so
+ * that the text up to that point can be tokenized and written out while an
+ * incomplete trailing tag, comment or script/style element is held back.
+ * 
+ * The scanner keeps its state between calls, each character of the buffer is
+ * only looked at once no matter how often {@link #scan(CharSequence)} is
+ * called.
+ */
+class TokenBoundaryScanner {
+
+    private enum State {
+        TEXT, TAG, QUOTED, COMMENT, RAW_TEXT
+    }
+
+    private static final String COMMENT_START = "<!--";
+
+    private static final String COMMENT_END = "-->";
+
+    private static final String[] RAW_TEXT_ELEMENTS = { "script", "style" };
+
+    private State state = State.TEXT;
+
+    /** next index of the buffer to look at */
+    private int position;
+
+    /** end of the last complete token */
+    private int boundary;
+
+    /** start of the tag currently being scanned */
+    private int tagStart;
+
+    private char quote;
+
+    /** name of the element whose raw text body is currently being scanned */
+    private String rawTextElement;
+
+    /**
+     * Scans the characters appended to the buffer since the last call.
+     * 
+     * @param buffer
+     *            the pending html
+     * @return the number of leading characters of the buffer which form
+     *         complete tokens
+     */
+    int scan(CharSequence buffer) {
+        int length = buffer.length();
+        while (position < length) {
+            char c = buffer.charAt(position);
+            switch (state) {
+            case TEXT:
+                if (c == '<') {
+                    // the text in front of a tag is complete
+                    boundary = position;
+                    if (position + COMMENT_START.length() > length
+                            && regionMatches(buffer, position, COMMENT_START, length - position)) {
+                        // can't tell a comment from a tag yet
+                        return boundary;
+                    }
+                    if (regionMatches(buffer, position, COMMENT_START, COMMENT_START.length())) {
+                        state = State.COMMENT;
+                        position += COMMENT_START.length();
+                        continue;
+                    }
+                    char next = buffer.charAt(position + 1);
+                    if (Character.isLetter(next) || next == '/' || next == '!' || next == '?') {
+                        state = State.TAG;
+                        tagStart = position;
+                    }
+                }
+                break;
+            case TAG:
+                if (c == '"' || c == '\'') {
+                    state = State.QUOTED;
+                    quote = c;
+                } else if (c == '>') {
+                    rawTextElement = rawTextElement(buffer, tagStart, position);
+                    if (rawTextElement != null) {
+                        // the start tag is held back with the body, up to the
+                        // end tag, so that the body is never tokenized as html
+                        boundary = tagStart;
+                        state = State.RAW_TEXT;
+                    } else {
+                        boundary = position + 1;
+                        state = State.TEXT;
+                    }
+                }
+                break;
+            case QUOTED:
+                if (c == quote) {
+                    state = State.TAG;
+                }
+                break;
+            case COMMENT:
+                if (c == '-') {
+                    if (position + COMMENT_END.length() > length) {
+                        return boundary;
+                    }
+                    if (regionMatches(buffer, position, COMMENT_END, COMMENT_END.length())) {
+                        position += COMMENT_END.length();
+                        boundary = position;
+                        state = State.TEXT;
+                        continue;
+                    }
+                }
+                break;
+            case RAW_TEXT:
+                if (c == '<') {
+                    int end = position + 2 + rawTextElement.length();
+                    if (end > length) {
+                        return boundary;
+                    }
+                    if (buffer.charAt(position + 1) == '/'
+                            && regionMatches(buffer, position + 2, rawTextElement, rawTextElement.length())
+                            && (end == length || !Character.isLetterOrDigit(buffer.charAt(end)))) {
+                        // the body ends here, the end tag is scanned as a
+                        // regular tag which completes the element
+                        state = State.TAG;
+                        tagStart = position;
+                        position = end;
+                        continue;
+                    }
+                }
+                break;
+            default:
+            }
+            ++position;
+        }
+        // trailing text is kept back as well as it may continue with the next
+        // write
+        return boundary;
+    }
+
+    /**
+     * Adjusts the scanner after the given number of leading characters have
+     * been removed from the buffer.
+     * 
+     * @param count
+     *            number of characters removed, at most the last returned
+     *            boundary
+     */
+    void consumed(int count) {
+        position -= count;
+        boundary -= count;
+        tagStart -= count;
+    }
+
+    private static String rawTextElement(CharSequence buffer, int start, int end) {
+        if (buffer.charAt(end - 1) == '/') {
+            return null;
+        }
+        for (String name : RAW_TEXT_ELEMENTS) {
+            int nameEnd = start + 1 + name.length();
+            if (nameEnd <= end && regionMatches(buffer, start + 1, name, name.length())
+                    && (nameEnd == end || !Character.isLetterOrDigit(buffer.charAt(nameEnd)))) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private static boolean regionMatches(CharSequence buffer, int offset, String value, int length) {
+        for (int index = 0; index < length; ++index) {
+            if (Character.toLowerCase(buffer.charAt(offset + index)) != value.charAt(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.transformer.impl;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.transformer.TransformationStep;
+
+/**
+ * LRU cache of transformed output bounded by its size in bytes, keyed by a
+ * digest of the output before the transformation and by the steps applied to
+ * it. As the key is derived from the content itself entries never need to be
+ * invalidated, entries of steps which have been unregistered simply age out.
+ */
+class TransformationCache {
+
+    /** estimated size of an entry besides its characters */
+    static final int ENTRY_OVERHEAD = 128;
+
+    /** an output larger than this fraction of the cache is not cached */
+    static final int MAX_ENTRY_FRACTION = 8;
+
+    private final Map<Key, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final long maxBytes;
+
+    /** estimated size of the entries, guarded by entries */
+    private long bytes;
+
+    /**
+     * @param maxBytes
+     *            maximum estimated size of the cached outputs
+     */
+    TransformationCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param steps
+     *            steps applied to the input
+     * @param input
+     *            output before the transformation
+     * @return key of the transformed input, or null if the input is too large to
+     *         be cached
+     */
+    Key key(List<TransformationStep> steps, CharSequence input) {
+        if (!fits(input.length())) {
+            return null;
+        }
+        return new Key(steps, digest(input));
+    }
+
+    String get(Key key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    void put(Key key, String output) {
+        if (!fits(output.length())) {
+            return;
+        }
+        synchronized (entries) {
+            String previous = entries.put(key, output);
+            if (previous != null) {
+                bytes -= size(previous);
+            }
+            bytes += size(output);
+            Iterator<String> eldest = entries.values().iterator();
+            while (bytes > maxBytes) {
+                bytes -= size(eldest.next());
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * @return estimated size of the cached outputs in bytes
+     */
+    long size() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    private boolean fits(int length) {
+        return 2L * length <= maxBytes / MAX_ENTRY_FRACTION;
+    }
+
+    private static long size(String output) {
+        return 2L * output.length() + ENTRY_OVERHEAD;
+    }
+
+    private static byte[] digest(CharSequence input) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] chunk = new byte[8192];
+        int length = 0;
+        for (int index = 0; index < input.length(); ++index) {
+            char c = input.charAt(index);
+            chunk[length++] = (byte) (c >> 8);
+            chunk[length++] = (byte) c;
+            if (length == chunk.length) {
+                digest.update(chunk, 0, length);
+                length = 0;
+            }
+        }
+        digest.update(chunk, 0, length);
+        return digest.digest();
+    }
+
+    static final class Key {
+
+        // steps don't override equals, so they are compared by identity
+        private final List<TransformationStep> steps;
+        private final byte[] digest;
+        private final int hash;
+
+        private Key(List<TransformationStep> steps, byte[] digest) {
+            this.steps = new ArrayList<>(steps);
+            this.digest = digest;
+            this.hash = 31 * this.steps.hashCode() + Arrays.hashCode(digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && Arrays.equals(digest, other.digest) && steps.equals(other.steps);
+        }
+    }
+}
@@ -13,11 +13,14 @@
  */
 package org.apache.sling.transformer.impl;
 
+import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import org.apache.sling.api.SlingHttpServletRequest;
@@ -35,17 +38,46 @@ import org.osgi.annotation.versioning.ProviderType;
  * This allows you to use the next() method to collect the elements that will be
  * passed on to the stream method. This can modify the eventual output and
  * assists in use cases where there is a need to add or remove elements
+ * 
+ * Once a downstream sink has been set with {@link #setDownstream(Consumer)} the
+ * context works as a push pipeline instead: {@link #process(HtmlElement)} hands
+ * the element to the first step and every element a step passes to doNextStep
+ * goes straight to the following step, or to the sink after the last step,
+ * without collecting elements into lists or streams. Each element instance is
+ * handed from step to step as is, no step receives a copy. The instances are
+ * not recycled between elements though: they are created by the Html parser,
+ * and steps are free to keep or modify the elements they receive.
+ * 
+ * Elements passed on from the before() and after() callbacks invoked through
+ * {@link #before()} and {@link #after()} are held until
+ * {@link #flushPending()} pushes them through the following steps.
  *
  */
 @ProviderType
 public class TransformationContextImpl implements TransformationContext {
 
+    /**
+     * Prefix of placeholder tokens, random so that content can't forge a
+     * placeholder. Shared by all instances, as cached output is resolved by the
+     * context of a later request.
+     */
+    private static final String PLACEHOLDER_PREFIX = "sling-placeholder-"
+            + Long.toHexString(new SecureRandom().nextLong()) + "-";
+
     private List<HtmlElement> list = new ArrayList<>();
     private Map<String, Object> context = new HashMap<>();
     private SlingHttpServletRequest request;
     private SlingHttpServletResponse response;
     private boolean reset;
     private List<TransformationStep> steps;
+    private Consumer<HtmlElement> downstream;
+    /** index of the step currently being invoked in push mode */
+    private int position = -1;
+    /** whether a before() or after() callback is being invoked */
+    private boolean callback;
+    /** elements passed on by callbacks, waiting to be pushed */
+    private List<Runnable> pending;
+    private Map<String, String> placeholders;
 
     public TransformationContextImpl(SlingHttpServletRequest request, SlingHttpServletResponse response,
             List<TransformationStep> steps) {
@@ -60,6 +92,12 @@ public class TransformationContextImpl implements TransformationContext {
      * process.
      */
     public void doNextStep(HtmlElement... elements) {
+        if (position >= 0) {
+            for (HtmlElement element : elements) {
+                forward(position + 1, element);
+            }
+            return;
+        }
         if (reset) {
             list.clear();
             reset = false;
@@ -68,6 +106,11 @@ public class TransformationContextImpl implements TransformationContext {
     }
 
     public void doNextStep(String html) {
+        if (position >= 0) {
+            int next = position + 1;
+            Html.stream(html).forEachOrdered(element -> forward(next, element));
+            return;
+        }
         if (reset) {
             list.clear();
             reset = false;
@@ -75,6 +118,91 @@ public class TransformationContextImpl implements TransformationContext {
         Collections.addAll(list, Html.stream(html).toArray(HtmlElement[]::new));
     }
 
+    /**
+     * Switches the context to push mode, elements passed on by the last step are
+     * handed to the downstream sink.
+     * 
+     * @param downstream sink for the transformed elements
+     */
+    public void setDownstream(Consumer<HtmlElement> downstream) {
+        this.downstream = downstream;
+    }
+
+    /**
+     * Pushes an element through all the steps in push mode.
+     * 
+     * @param element element to transform
+     */
+    public void process(HtmlElement element) {
+        push(0, element);
+    }
+
+    /**
+     * Invokes the before() callback of all steps.
+     */
+    public void before() {
+        invokeCallbacks(step -> step.before(this));
+    }
+
+    /**
+     * Invokes the after() callback of all steps.
+     */
+    public void after() {
+        invokeCallbacks(step -> step.after(this));
+    }
+
+    /**
+     * Pushes the elements passed on by the before() and after() callbacks
+     * through the steps which follow the step that passed them on. Requires a
+     * downstream sink.
+     */
+    public void flushPending() {
+        if (pending == null) {
+            return;
+        }
+        List<Runnable> elements = pending;
+        pending = null;
+        elements.forEach(Runnable::run);
+    }
+
+    private void invokeCallbacks(Consumer<TransformationStep> invocation) {
+        for (int index = 0; index < steps.size(); ++index) {
+            position = index;
+            callback = true;
+            try {
+                invocation.accept(steps.get(index));
+            } finally {
+                position = -1;
+                callback = false;
+            }
+        }
+    }
+
+    private void forward(int index, HtmlElement element) {
+        if (callback) {
+            if (pending == null) {
+                pending = new ArrayList<>();
+            }
+            pending.add(() -> push(index, element));
+        } else {
+            push(index, element);
+        }
+    }
+
+    private void push(int index, HtmlElement element) {
+        if (index >= steps.size()) {
+            downstream.accept(element);
+            return;
+        }
+        int previous = position;
+        position = index;
+        try {
+            steps.get(index).step(element, this);
+        } finally {
+            position = previous;
+        }
+    }
+
     public Stream<HtmlElement> getElements() {
         reset = true;
         return list.stream();
@@ -92,6 +220,32 @@ public class TransformationContextImpl implements TransformationContext {
         return request;
     }
 
+    @Override
+    public String placeholder(String name, String value) {
+        if (placeholders == null) {
+            placeholders = new LinkedHashMap<>();
+        }
+        String token = PLACEHOLDER_PREFIX + name + "-";
+        placeholders.put(token, value);
+        return token;
+    }
+
+    /**
+     * Replaces the placeholder tokens in the given html with their values
+     * 
+     * @param html transformed html
+     * @return html with the request specific values
+     */
+    public String resolvePlaceholders(String html) {
+        if (placeholders == null || html.indexOf(PLACEHOLDER_PREFIX) < 0) {
+            return html;
+        }
+        for (Map.Entry<String, String> entry : placeholders.entrySet()) {
+            html = html.replace(entry.getKey(), entry.getValue());
+        }
+        return html;
+    }
+
     @Override
     public List<TransformationStep> getSteps() {
         return steps;
@@ -28,12 +28,16 @@ import javax.servlet.ServletResponse;
 
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
-import org.apache.sling.transformer.TransformationContext;
 import org.apache.sling.transformer.TransformationManager;
 import org.apache.sling.transformer.TransformationStep;
 import org.osgi.framework.Constants;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 
 /**
  * This filter activates the rewriter for the output.
@@ -42,11 +46,36 @@ import org.osgi.service.component.annotations.Reference;
 @Component(service = Filter.class, property = { Constants.SERVICE_VENDOR + "=The Apache Software Foundation",
         "sling.filter.scope=request", "sling.filter.scope=error",
         Constants.SERVICE_RANKING + ":Integer=" + Integer.MIN_VALUE })
+@Designate(ocd = TransformationFilter.Config.class)
 public class TransformationFilter implements Filter {
 
+    @ObjectClassDefinition(name = "Apache Sling Transformer Filter")
+    public @interface Config {
+        @AttributeDefinition(name = "Streaming", description = "Transform and write the output in chunks while it is "
+                + "being rendered instead of buffering the whole page. Transformation steps then see the elements "
+                + "before their after() callback is invoked.")
+        boolean streaming() default false;
+
+        @AttributeDefinition(name = "Cache size", description = "Maximum size in KB of the transformed pages kept "
+                + "in memory for requests whose steps are all cacheable. Pages larger than an eighth of it are not "
+                + "cached. Only used when not streaming, 0 disables the cache.")
+        int cache_size_kb() default 0;
+    }
+
     @Reference
     private TransformationManager manager;
 
+    private volatile boolean streaming;
+
+    private volatile TransformationCache cache;
+
+    @Activate
+    @Modified
+    void activate(Config config) {
+        this.streaming = config.streaming();
+        this.cache = config.cache_size_kb() > 0 ? new TransformationCache(config.cache_size_kb() * 1024L) : null;
+    }
+
     /**
      * @see javax.servlet.Filter#init(javax.servlet.FilterConfig)
      */
@@ -80,12 +109,17 @@ public class TransformationFilter implements Filter {
         List<TransformationStep> steps = manager.getSteps(slingRequest);
 
         if (!steps.isEmpty()) {
-            TransformationContext context = new TransformationContextImpl(slingRequest, slingResponse, steps);
-            steps.forEach(transformer -> transformer.before(context));
-            response = new TransformationResponse(context);
-            chain.doFilter(request, response);
-            steps.forEach(transformer -> transformer.after(context));
-            response.flushBuffer();
+            TransformationContextImpl context = new TransformationContextImpl(slingRequest, slingResponse, steps);
+            context.before();
+            TransformationCache currentCache = cache;
+            if (currentCache != null && !manager.isCacheable(steps)) {
+                currentCache = null;
+            }
+            TransformationResponse transformationResponse = new TransformationResponse(context, streaming,
+                    currentCache);
+            chain.doFilter(request, transformationResponse);
+            context.after();
+            transformationResponse.finish();
         } else {
             chain.doFilter(request, response);
         }
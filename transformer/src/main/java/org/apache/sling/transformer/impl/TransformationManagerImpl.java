@@ -17,10 +17,13 @@
 package org.apache.sling.transformer.impl;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.transformer.TransformationConstants;
@@ -32,71 +35,153 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @Component
 public class TransformationManagerImpl implements TransformationManager {
 
+    private static final Logger log = LoggerFactory.getLogger(TransformationManagerImpl.class);
+
     // comparison in the same manner of a filter, where the highest ranking goes
     // first
     // in a situation where ranking is identical, then the lowest service id goes
     // first
-    private Map<Map<String, Object>, TransformationStep> mapping = new TreeMap<>((map1, map2) -> {
-        Long value1 = (Long) map1.getOrDefault(Constants.SERVICE_RANKING, (Long) 0L);
-        Long value2 = (Long) map2.getOrDefault(Constants.SERVICE_RANKING, (Long) 0L);
-        if (value1 - value2 == 0) {
-            value1 = (Long) map1.get(Constants.SERVICE_ID);
-            value2 = (Long) map2.get(Constants.SERVICE_ID);
-            return value2.compareTo(value1);
+    private static final Comparator<Route> ORDER = (route1, route2) -> {
+        if (route1.ranking == route2.ranking) {
+            return Long.compare(route2.serviceId, route1.serviceId);
         }
-        return value1.compareTo(value2);
-    });
+        return Long.compare(route1.ranking, route2.ranking);
+    };
+
+    private static final Route[] NO_ROUTES = new Route[0];
+
+    /**
+     * Immutable routing table, replaced as a whole whenever a step is bound,
+     * updated or unbound so that requests never see a partially modified table
+     * and don't need to lock.
+     */
+    private volatile Route[] routes = NO_ROUTES;
 
     @Override
     public List<TransformationStep> getSteps(SlingHttpServletRequest request) {
-        List<TransformationStep> steps = new ArrayList<>();
-        mapping.forEach((properties, step) -> {
-            if (doStep(properties, request)) {
-                steps.add(step);
+        Route[] current = routes;
+        if (current.length == 0) {
+            return Collections.emptyList();
+        }
+        String uri = request.getRequestURI();
+        List<TransformationStep> steps = new ArrayList<>(current.length);
+        for (Route route : current) {
+            if (route.matches(uri)) {
+                steps.add(route.step);
             }
-        });
+        }
         return steps;
     }
 
-    private boolean doStep(Map<String, Object> properties, SlingHttpServletRequest request) {
-        Iterator<String> it = properties.keySet().iterator();
-        while (it.hasNext()) {
-            String key = it.next();
-            switch (key) {
-            case TransformationConstants.PATHS:
-                String value = (String) properties.get(key);
-                if (!request.getRequestURI().matches(value)) {
-                    return false;
-                }
-                break;
-            case TransformationConstants.EXTENSIONS:
-                String extension = (String) properties.get(key);
-                if (!request.getRequestURI().endsWith(extension)) {
-                    return false;
+    @Override
+    public boolean isCacheable(List<TransformationStep> steps) {
+        Route[] current = routes;
+        for (TransformationStep step : steps) {
+            boolean cacheable = false;
+            for (Route route : current) {
+                if (route.step == step) {
+                    cacheable = route.cacheable;
+                    break;
                 }
-                break;
-            default:
             }
-
+            if (!cacheable) {
+                return false;
+            }
         }
         return true;
     }
 
     @Reference(service = TransformationStep.class, cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
     void bindTransformationStep(Map<String, Object> properties, TransformationStep step) {
-        mapping.put(properties, step);
+        update(Route.create(properties, step), Route.serviceId(properties));
     }
 
     void updateTransformationStep(Map<String, Object> properties, TransformationStep step) {
-        mapping.put(properties, step);
+        update(Route.create(properties, step), Route.serviceId(properties));
     }
 
     void unbindTransformationStep(Map<String, Object> properties) {
-        mapping.remove(properties);
+        update(null, Route.serviceId(properties));
+    }
+
+    /**
+     * Copies the routing table replacing the route of the given service with the
+     * new route, or removing it if the route is null.
+     */
+    private synchronized void update(Route route, long serviceId) {
+        List<Route> list = new ArrayList<>(routes.length + 1);
+        for (Route existing : routes) {
+            if (existing.serviceId != serviceId) {
+                list.add(existing);
+            }
+        }
+        if (route != null) {
+            list.add(route);
+        }
+        Route[] updated = list.toArray(NO_ROUTES);
+        Arrays.sort(updated, ORDER);
+        routes = updated;
+    }
+
+    /**
+     * A step together with the predicates of its service properties, compiled
+     * once when the step is bound.
+     */
+    private static final class Route {
+
+        private final TransformationStep step;
+        private final long ranking;
+        private final long serviceId;
+        private final Pattern paths;
+        private final String extension;
+        private final boolean valid;
+        private final boolean cacheable;
+
+        private Route(TransformationStep step, long ranking, long serviceId, Pattern paths, String extension,
+                boolean valid, boolean cacheable) {
+            this.step = step;
+            this.ranking = ranking;
+            this.serviceId = serviceId;
+            this.paths = paths;
+            this.extension = extension;
+            this.valid = valid;
+            this.cacheable = cacheable;
+        }
+
+        static Route create(Map<String, Object> properties, TransformationStep step) {
+            Object ranking = properties.get(Constants.SERVICE_RANKING);
+            Pattern paths = null;
+            boolean valid = true;
+            String value = (String) properties.get(TransformationConstants.PATHS);
+            if (value != null) {
+                try {
+                    paths = Pattern.compile(value);
+                } catch (PatternSyntaxException e) {
+                    log.error("Invalid {} pattern {} of transformation step {}, the step will not be used",
+                            TransformationConstants.PATHS, value, step, e);
+                    valid = false;
+                }
+            }
+            Object cacheable = properties.get(TransformationConstants.CACHEABLE);
+            return new Route(step, ranking instanceof Number ? ((Number) ranking).longValue() : 0L,
+                    serviceId(properties), paths, (String) properties.get(TransformationConstants.EXTENSIONS),
+                    valid, cacheable != null && Boolean.parseBoolean(cacheable.toString()));
+        }
+
+        static long serviceId(Map<String, Object> properties) {
+            return (Long) properties.get(Constants.SERVICE_ID);
+        }
+
+        boolean matches(String uri) {
+            return valid && (extension == null || uri.endsWith(extension))
+                    && (paths == null || paths.matcher(uri).matches());
+        }
     }
 
 }
@@ -28,10 +28,21 @@ class TransformationResponse
     /** wrapped rewriter/servlet writer */
     private PrintWriter writer;
 
+    private TransformationWriter transformationWriter;
 
     public TransformationResponse(TransformationContext context) throws IOException {
+        this(context, false);
+    }
+
+    public TransformationResponse(TransformationContext context, boolean streaming) throws IOException {
+        this(context, streaming, null);
+    }
+
+    public TransformationResponse(TransformationContext context, boolean streaming, TransformationCache cache)
+            throws IOException {
         super(context.getResponse());
-        this.writer = new PrintWriter(new TransformationWriter(context));
+        this.transformationWriter = new TransformationWriter(context, streaming, cache);
+        this.writer = new PrintWriter(transformationWriter);
     }
 
     /**
@@ -54,5 +65,16 @@ class TransformationResponse
         }
     }
 
+    /**
+     * Transforms and writes the output which is still buffered, called after
+     * the request has been processed.
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        writer.flush();
+        transformationWriter.finish();
+    }
+
 
 }
@@ -17,8 +17,8 @@
 package org.apache.sling.transformer.impl;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.Writer;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.sling.commons.html.Html;
@@ -28,52 +28,207 @@ import org.apache.sling.transformer.TransformationContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Writer that passes the html written to it through the transformation steps
+ * before handing it to the original response writer.
+ * 
+ * In buffered mode the whole output is collected and transformed once the
+ * response is finished. In streaming mode the output is transformed in chunks
+ * as soon as enough complete tokens are available, only an incomplete trailing
+ * tag, comment or script/style body is held back until more output arrives.
+ * 
+ * Buffered output of cacheable steps can be served from a
+ * {@link TransformationCache}, placeholders are resolved whenever transformed
+ * output is written.
+ */
 public class TransformationWriter extends Writer {
 
+    /** minimum number of complete characters transformed at once while streaming */
+    static final int STREAMING_CHUNK_SIZE = 8192;
+
     private Writer originalWriter;
 
     private StringBuilder buffer;
 
     private TransformationStepWrapper[] steps;
-    
+
+    private TransformationContextImpl pipeline;
+
+    private TokenBoundaryScanner scanner;
+
+    private boolean closed;
+
+    private TransformationCache cache;
+
+    /** collects the transformed output while it is being cached */
+    private StringBuilder capture;
+
     private static final Logger log = LoggerFactory.getLogger(TransformationWriter.class);
 
     public TransformationWriter(TransformationContext context) throws IOException {
+        this(context, false);
+    }
+
+    public TransformationWriter(TransformationContext context, boolean streaming) throws IOException {
+        this(context, streaming, null);
+    }
+
+    /**
+     * @param context
+     * @param streaming
+     *            whether the output is transformed while it is written
+     * @param cache
+     *            cache for the transformed output, only used in buffered mode,
+     *            may be null
+     * @throws IOException
+     */
+    public TransformationWriter(TransformationContext context, boolean streaming, TransformationCache cache)
+            throws IOException {
         super();
-        log.debug("TransformationWriter initialized with {} steps", context.getState());
+        log.debug("TransformationWriter initialized with {} steps, streaming {}", context.getSteps().size(), streaming);
         this.originalWriter = context.getResponse().getWriter();
         this.buffer = new StringBuilder();
-        steps = context.getSteps().stream().map( step -> {
-            return new TransformationStepWrapper(step, context);
-        }).toArray(TransformationStepWrapper[]::new);
-        
-   
+        this.scanner = streaming ? new TokenBoundaryScanner() : null;
+        if (context instanceof TransformationContextImpl) {
+            pipeline = (TransformationContextImpl) context;
+            pipeline.setDownstream(element -> {
+                String html = HtmlElements.TO_HTML.apply(element);
+                if (capture != null) {
+                    capture.append(html);
+                    return;
+                }
+                try {
+                    originalWriter.write(pipeline.resolvePlaceholders(html));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } else {
+            steps = context.getSteps().stream().map( step -> {
+                return new TransformationStepWrapper(step, context);
+            }).toArray(TransformationStepWrapper[]::new);
+        }
+        this.cache = streaming || pipeline == null ? null : cache;
+        if (pipeline != null) {
+            // elements passed on by the before() callbacks start the output
+            flushPending();
+        }
     }
 
     @Override
     public void write(char[] cbuf, int off, int len) throws IOException {
-        buffer.append(String.copyValueOf(cbuf, off, len));
+        buffer.append(cbuf, off, len);
+        if (scanner != null && buffer.length() >= STREAMING_CHUNK_SIZE) {
+            writeComplete(STREAMING_CHUNK_SIZE);
+        }
+    }
+
+    /**
+     * Transforms the complete tokens in the buffer if there are at least
+     * minimum characters of them.
+     */
+    private void writeComplete(int minimum) throws IOException {
+        int boundary = scanner.scan(buffer);
+        if (boundary > 0 && boundary >= minimum) {
+            writeLocal(buffer.substring(0, boundary));
+            buffer.delete(0, boundary);
+            scanner.consumed(boundary);
+        }
     }
-    
+
     private void writeLocal(String string) throws IOException {
         Stream<HtmlElement> stream = Html.stream(string);
-        for (int index = 0; index < steps.length; ++index ) {
-            stream = stream.flatMap(steps[index]);
-            log.error("adding {}", steps[index]);
+        try {
+            if (pipeline != null) {
+                stream.forEachOrdered(pipeline::process);
+                return;
+            }
+            for (int index = 0; index < steps.length; ++index ) {
+                stream = stream.flatMap(steps[index]);
+            }
+            stream.map(HtmlElements.TO_HTML).forEachOrdered(html -> {
+                try {
+                    originalWriter.write(html);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        char[] cache = stream.map(HtmlElements.TO_HTML).collect(Collectors.joining()).toCharArray();
-        originalWriter.write(cache, 0, cache.length);
     }
 
+    /**
+     * Transforms and writes whatever is left in the buffer. Called once all of
+     * the output has been written.
+     * 
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (buffer.length() > 0) {
+            if (cache != null) {
+                writeCached();
+            } else {
+                writeLocal(buffer.toString());
+            }
+            buffer.setLength(0);
+            scanner = scanner != null ? new TokenBoundaryScanner() : null;
+        }
+        if (pipeline != null) {
+            // elements passed on by the after() callbacks end the output
+            flushPending();
+        }
+        originalWriter.flush();
+    }
+
+    private void flushPending() throws IOException {
+        try {
+            pipeline.flushPending();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeCached() throws IOException {
+        TransformationCache.Key key = cache.key(pipeline.getSteps(), buffer);
+        if (key == null) {
+            writeLocal(buffer.toString());
+            return;
+        }
+        String output = cache.get(key);
+        if (output == null) {
+            capture = new StringBuilder(buffer.length());
+            try {
+                writeLocal(buffer.toString());
+                output = capture.toString();
+            } finally {
+                capture = null;
+            }
+            cache.put(key, output);
+        }
+        originalWriter.write(pipeline.resolvePlaceholders(output));
+    }
+
+    /**
+     * In streaming mode the complete tokens written so far are transformed and
+     * flushed, in buffered mode the output stays buffered until
+     * {@link #finish()} so that a partial document is never transformed.
+     */
     @Override
     public void flush() throws IOException {
-        writeLocal(buffer.toString());
-        buffer.setLength(0);
-        originalWriter.flush();
+        if (scanner != null) {
+            writeComplete(1);
+            originalWriter.flush();
+        }
     }
 
     @Override
     public void close() throws IOException {
+        finish();
+        closed = true;
         originalWriter.close();
     }
 
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.transformer.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.commons.html.HtmlElement;
+import org.apache.sling.commons.html.HtmlElementType;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class NonceTransformerTest {
+
+    private static final Pattern CSP_NONCE = Pattern.compile("'nonce-([0-9a-f]+)'");
+
+    private final NonceTransformer transformer = new NonceTransformer();
+
+    /** state of a request */
+    private static class Request {
+        final SlingHttpServletResponse response = mock(SlingHttpServletResponse.class);
+        final TransformationContextImpl context;
+        final String nonce;
+
+        Request(NonceTransformer transformer) {
+            context = new TransformationContextImpl(null, response,
+                    Collections.singletonList(transformer));
+            context.before();
+            ArgumentCaptor<String> csp = ArgumentCaptor.forClass(String.class);
+            verify(response).setHeader(eq("Content-Security-Policy"), csp.capture());
+            Matcher matcher = CSP_NONCE.matcher(csp.getValue());
+            assertTrue(csp.getValue(), matcher.find());
+            nonce = matcher.group(1);
+        }
+
+        String scriptNonce(NonceTransformer transformer) {
+            HtmlElement script = element(HtmlElementType.START_TAG, "script");
+            ArgumentCaptor<String> value = ArgumentCaptor.forClass(String.class);
+            transformer.step(script, context);
+            verify(script).setAttribute(eq("nonce"), value.capture());
+            return value.getValue();
+        }
+    }
+
+    private static HtmlElement element(HtmlElementType type, String value) {
+        HtmlElement element = mock(HtmlElement.class);
+        when(element.getType()).thenReturn(type);
+        when(element.getValue()).thenReturn(value);
+        return element;
+    }
+
+    @Test
+    public void testScriptsGetAPlaceholder() {
+        Request request = new Request(transformer);
+        String token = request.scriptNonce(transformer);
+
+        assertFalse("Expecting a placeholder instead of the nonce", token.contains(request.nonce));
+        String html = "<script nonce=\"" + token + "\">";
+        assertEquals("<script nonce=\"" + request.nonce + "\">", request.context.resolvePlaceholders(html));
+    }
+
+    @Test
+    public void testPlaceholderIsSharedByRequests() {
+        Request first = new Request(transformer);
+        Request second = new Request(transformer);
+        String token = first.scriptNonce(transformer);
+
+        assertEquals("Expecting cacheable output", token, second.scriptNonce(transformer));
+        assertNotEquals(first.nonce, second.nonce);
+        String html = "<script nonce=\"" + token + "\"></script><p>" + token + "</p>";
+        assertEquals("<script nonce=\"" + second.nonce + "\"></script><p>" + second.nonce + "</p>",
+                second.context.resolvePlaceholders(html));
+    }
+
+    @Test
+    public void testOtherElementsAreUnchanged() {
+        Request request = new Request(transformer);
+        HtmlElement div = element(HtmlElementType.START_TAG, "div");
+        transformer.step(div, request.context);
+        verify(div, never()).setAttribute(anyString(), anyString());
+        assertEquals("<div>", request.context.resolvePlaceholders("<div>"));
+    }
+}
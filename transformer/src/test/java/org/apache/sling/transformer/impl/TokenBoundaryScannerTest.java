@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.transformer.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TokenBoundaryScannerTest {
+
+    private TokenBoundaryScanner scanner;
+
+    private StringBuilder buffer;
+
+    @Before
+    public void setUp() {
+        scanner = new TokenBoundaryScanner();
+        buffer = new StringBuilder();
+    }
+
+    private int append(String html) {
+        buffer.append(html);
+        return scanner.scan(buffer);
+    }
+
+    @Test
+    public void testTrailingTextIsHeldBack() {
+        assertEquals(3, append("<p>hi"));
+        assertEquals("<p>hi</p>".length(), append("</p>"));
+    }
+
+    @Test
+    public void testIncompleteTag() {
+        assertEquals(2, append("hi<a hr"));
+        assertEquals("hi<a href=\"x\">".length(), append("ef=\"x\">"));
+    }
+
+    @Test
+    public void testScriptIsHeldBackUntilItsEndTag() {
+        String head = "<p>hi</p>";
+        assertEquals(head.length(), append(head + "<script>if (a<b) x='<div>';"));
+        assertEquals(head.length(), append("</scr"));
+        assertEquals(buffer.length() + "ipt>".length(), append("ipt>"));
+    }
+
+    @Test
+    public void testEndTagOfAnotherElementDoesNotEndScript() {
+        assertEquals(0, append("<script>x = '</scripts></div>';"));
+        String html = "<SCRIPT type=\"text/javascript\">y</Script>";
+        assertEquals(buffer.length() + html.length(), append(html));
+    }
+
+    @Test
+    public void testStyleIsHeldBackUntilItsEndTag() {
+        assertEquals(4, append("text<style>a > b { color: red }"));
+        assertEquals(buffer.length() + "</style>".length(), append("</style>"));
+    }
+
+    @Test
+    public void testSelfClosingScript() {
+        String html = "text<script src='a.js'/>";
+        assertEquals(html.length(), append(html + "more"));
+    }
+
+    @Test
+    public void testComments() {
+        assertEquals(1, append("a<!"));
+        assertEquals(1, append("-- <p> </p> -"));
+        String comment = "a<!-- <p> </p> -->";
+        assertEquals(comment.length(), append("->b"));
+    }
+
+    @Test
+    public void testScriptInComment() {
+        String comment = "<!-- <script> -->";
+        assertEquals(comment.length(), append(comment + "<p"));
+    }
+
+    @Test
+    public void testQuotedGreaterThanInAttributes() {
+        assertEquals(0, append("<a title=\"x>y\" href='>"));
+        String tag = "<a title=\"x>y\" href='>'>";
+        assertEquals(tag.length(), append("'>link"));
+    }
+
+    @Test
+    public void testQuotedGreaterThanInScriptStartTag() {
+        assertEquals(0, append("<script data-x='>'>var a = '<b>';"));
+        assertEquals(buffer.length() + "</script>".length(), append("</script>"));
+    }
+
+    @Test
+    public void testConsumed() {
+        int boundary = append("<p>hi</p><script>a<b");
+        assertEquals(9, boundary);
+        buffer.delete(0, boundary);
+        scanner.consumed(boundary);
+        assertEquals(0, append("</script"));
+        assertEquals(buffer.length() + 1, append(">"));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.transformer.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.sling.transformer.TransformationStep;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransformationCacheTest {
+
+    private TransformationCache cache;
+
+    private List<TransformationStep> steps;
+
+    @Before
+    public void setUp() {
+        cache = new TransformationCache(64 * 1024);
+        steps = Arrays.asList(mock(TransformationStep.class), mock(TransformationStep.class));
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        TransformationCache.Key key = cache.key(steps, "<p>page</p>");
+        assertNull(cache.get(key));
+        cache.put(key, "<p>transformed</p>");
+
+        assertEquals("<p>transformed</p>", cache.get(cache.key(steps, new StringBuilder("<p>page</p>"))));
+        assertNull("Expecting a miss for other input", cache.get(cache.key(steps, "<p>other</p>")));
+        assertNull("Expecting a miss for other steps",
+                cache.get(cache.key(Collections.singletonList(steps.get(0)), "<p>page</p>")));
+    }
+
+    @Test
+    public void testLargeOutputsAreNotCached() {
+        char[] large = new char[64 * 1024 / TransformationCache.MAX_ENTRY_FRACTION];
+        assertNull(cache.key(steps, new String(large)));
+
+        TransformationCache.Key key = cache.key(steps, "<p>page</p>");
+        cache.put(key, new String(large));
+        assertNull(cache.get(key));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        String output = new String(new char[1024]);
+        TransformationCache.Key first = cache.key(steps, "first");
+        cache.put(first, output);
+        for (int index = 0; index < 100; ++index) {
+            cache.put(cache.key(steps, "page " + index), output);
+            assertNotNull("Expecting recently used entries to be kept", cache.get(first));
+        }
+        assertNotNull(cache.get(cache.key(steps, "page 99")));
+        assertNull("Expecting least recently used entries to be evicted", cache.get(cache.key(steps, "page 0")));
+        long entrySize = 2 * output.length() + TransformationCache.ENTRY_OVERHEAD;
+        assertEquals(64 * 1024 / entrySize * entrySize, cache.size());
+    }
+
+    @Test
+    public void testReplacedEntriesAreNotCountedTwice() {
+        TransformationCache.Key key = cache.key(steps, "<p>page</p>");
+        cache.put(key, "first");
+        cache.put(key, "second");
+        assertEquals(2 * "second".length() + TransformationCache.ENTRY_OVERHEAD, cache.size());
+    }
+}
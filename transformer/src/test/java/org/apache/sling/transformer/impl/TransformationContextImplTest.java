@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.transformer.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.sling.commons.html.HtmlElement;
+import org.apache.sling.transformer.TransformationContext;
+import org.apache.sling.transformer.TransformationStep;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransformationContextImplTest {
+
+    /** passes elements on, and records the ones it has seen */
+    private static class RecordingStep implements TransformationStep {
+
+        private final String name;
+
+        private final List<String> seen = new ArrayList<>();
+
+        RecordingStep(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void before(TransformationContext context) {
+            context.doNextStep(element(name + "-before"));
+        }
+
+        @Override
+        public void step(HtmlElement element, TransformationContext context) {
+            seen.add(element.getValue());
+            context.doNextStep(element);
+        }
+
+        @Override
+        public void after(TransformationContext context) {
+            context.doNextStep(element(name + "-after"));
+        }
+    }
+
+    private RecordingStep first;
+
+    private RecordingStep second;
+
+    private TransformationContextImpl context;
+
+    private List<String> output;
+
+    private static HtmlElement element(String value) {
+        HtmlElement element = mock(HtmlElement.class);
+        when(element.getValue()).thenReturn(value);
+        return element;
+    }
+
+    @Before
+    public void setUp() {
+        first = new RecordingStep("first");
+        second = new RecordingStep("second");
+        context = new TransformationContextImpl(null, null, Arrays.asList(first, second));
+        output = new ArrayList<>();
+    }
+
+    @Test
+    public void testCallbackElementsArePushedThroughTheFollowingSteps() {
+        context.before();
+        context.setDownstream(element -> output.add(element.getValue()));
+        context.flushPending();
+        context.process(element("content"));
+        context.after();
+        assertEquals("Expecting after() elements to be held", 3, output.size());
+        context.flushPending();
+
+        assertEquals(Arrays.asList("content"), first.seen);
+        assertEquals(Arrays.asList("first-before", "content", "first-after"), second.seen);
+        assertEquals(Arrays.asList("first-before", "second-before", "content", "first-after", "second-after"),
+                output);
+    }
+
+    @Test
+    public void testCallbackElementsAreHeldUntilFlushed() {
+        context.before();
+        context.setDownstream(element -> output.add(element.getValue()));
+        assertEquals(0, output.size());
+        context.flushPending();
+        context.flushPending();
+        assertEquals(Arrays.asList("first-before", "second-before"), output);
+    }
+}
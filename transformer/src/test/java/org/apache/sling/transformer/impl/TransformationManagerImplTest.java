@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.transformer.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.transformer.TransformationConstants;
+import org.apache.sling.transformer.TransformationStep;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Constants;
+
+public class TransformationManagerImplTest {
+
+    private TransformationManagerImpl manager;
+
+    private long nextServiceId;
+
+    @Before
+    public void setUp() {
+        manager = new TransformationManagerImpl();
+    }
+
+    private Map<String, Object> properties(Long ranking, Object... keyValues) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(Constants.SERVICE_ID, ++nextServiceId);
+        if (ranking != null) {
+            properties.put(Constants.SERVICE_RANKING, ranking);
+        }
+        for (int index = 0; index < keyValues.length; index += 2) {
+            properties.put((String) keyValues[index], keyValues[index + 1]);
+        }
+        return properties;
+    }
+
+    private static SlingHttpServletRequest request(String uri) {
+        SlingHttpServletRequest request = mock(SlingHttpServletRequest.class);
+        when(request.getRequestURI()).thenReturn(uri);
+        return request;
+    }
+
+    @Test
+    public void testRouteOrderMatchesBaseline() {
+        // the ordering of the TreeMap which the routing table replaced
+        Map<Map<String, Object>, TransformationStep> baseline = new TreeMap<>((map1, map2) -> {
+            Long value1 = (Long) map1.getOrDefault(Constants.SERVICE_RANKING, (Long) 0L);
+            Long value2 = (Long) map2.getOrDefault(Constants.SERVICE_RANKING, (Long) 0L);
+            if (value1 - value2 == 0) {
+                value1 = (Long) map1.get(Constants.SERVICE_ID);
+                value2 = (Long) map2.get(Constants.SERVICE_ID);
+                return value2.compareTo(value1);
+            }
+            return value1.compareTo(value2);
+        });
+        List<Map<String, Object>> bound = new ArrayList<>();
+        for (Long ranking : new Long[] { 0L, 10L, null, -5L, 10L, 0L, 100L, -5L }) {
+            bound.add(properties(ranking));
+        }
+        Collections.shuffle(bound, new Random(42));
+        for (Map<String, Object> properties : bound) {
+            TransformationStep step = mock(TransformationStep.class);
+            baseline.put(properties, step);
+            manager.bindTransformationStep(properties, step);
+        }
+        assertEquals(new ArrayList<>(baseline.values()), manager.getSteps(request("/content/page.html")));
+    }
+
+    @Test
+    public void testPredicates() {
+        TransformationStep paths = mock(TransformationStep.class);
+        TransformationStep extensions = mock(TransformationStep.class);
+        manager.bindTransformationStep(properties(0L, TransformationConstants.PATHS, "/content/.*"), paths);
+        manager.bindTransformationStep(properties(1L, TransformationConstants.EXTENSIONS, ".html"), extensions);
+
+        assertEquals(Arrays.asList(paths, extensions), manager.getSteps(request("/content/page.html")));
+        assertEquals(Collections.singletonList(paths), manager.getSteps(request("/content/data.json")));
+        assertEquals(Collections.singletonList(extensions), manager.getSteps(request("/apps/page.html")));
+    }
+
+    @Test
+    public void testInvalidPatternIsNotUsed() {
+        TransformationStep invalid = mock(TransformationStep.class);
+        TransformationStep valid = mock(TransformationStep.class);
+        manager.bindTransformationStep(properties(0L, TransformationConstants.PATHS, "/content/(["), invalid);
+        manager.bindTransformationStep(properties(1L), valid);
+
+        assertEquals(Collections.singletonList(valid), manager.getSteps(request("/content/([")));
+    }
+
+    @Test
+    public void testUpdateAndUnbind() {
+        TransformationStep step = mock(TransformationStep.class);
+        Map<String, Object> properties = properties(0L, TransformationConstants.PATHS, "/content/.*",
+                TransformationConstants.CACHEABLE, "true");
+        manager.bindTransformationStep(properties, step);
+        assertTrue(manager.isCacheable(manager.getSteps(request("/content/page.html"))));
+
+        Map<String, Object> updated = new HashMap<>(properties);
+        updated.put(TransformationConstants.PATHS, "/apps/.*");
+        updated.remove(TransformationConstants.CACHEABLE);
+        manager.updateTransformationStep(updated, step);
+        assertEquals(Collections.emptyList(), manager.getSteps(request("/content/page.html")));
+        assertFalse(manager.isCacheable(manager.getSteps(request("/apps/page.html"))));
+
+        manager.unbindTransformationStep(updated);
+        assertEquals(Collections.emptyList(), manager.getSteps(request("/apps/page.html")));
+    }
+
+    @Test
+    public void testConcurrentBindAndUnbindDuringLookup() throws Exception {
+        TransformationStep first = mock(TransformationStep.class);
+        TransformationStep last = mock(TransformationStep.class);
+        TransformationStep dynamic = mock(TransformationStep.class);
+        manager.bindTransformationStep(properties(-10L), first);
+        manager.bindTransformationStep(properties(10L), last);
+        Map<String, Object> dynamicProperties = properties(0L);
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread binder = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    manager.bindTransformationStep(dynamicProperties, dynamic);
+                    manager.unbindTransformationStep(dynamicProperties);
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        binder.start();
+        try {
+            SlingHttpServletRequest request = request("/content/page.html");
+            List<TransformationStep> without = Arrays.asList(first, last);
+            List<TransformationStep> with = Arrays.asList(first, dynamic, last);
+            for (int index = 0; index < 20_000; ++index) {
+                List<TransformationStep> steps = manager.getSteps(request);
+                assertTrue("Unexpected steps " + steps, steps.equals(without) || steps.equals(with));
+            }
+        } finally {
+            done.set(true);
+            binder.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+}
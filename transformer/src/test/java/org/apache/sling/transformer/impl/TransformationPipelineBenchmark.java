@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.transformer.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.sling.commons.html.Html;
+import org.apache.sling.commons.html.HtmlElement;
+import org.apache.sling.commons.html.HtmlElementType;
+import org.apache.sling.commons.html.util.HtmlElements;
+import org.apache.sling.transformer.TransformationContext;
+import org.apache.sling.transformer.TransformationStep;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the push pipeline of {@link TransformationContextImpl} with the
+ * stream based {@link TransformationStepWrapper} chain.
+ * 
+ * Each invocation transforms a page of {@value #PAGE_KB} KB and counts as one
+ * operation per KB, so with the GC profiler enabled (as in {@link #main}) the
+ * gc.alloc.rate.norm metric reports the bytes allocated per KB of html.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(TransformationPipelineBenchmark.PAGE_KB)
+public class TransformationPipelineBenchmark {
+
+    static final int PAGE_KB = 64;
+
+    private static final String BLOCK = "<div class=\"teaser\" id=\"teaser-%d\">\n"
+            + "  <h2><a href=\"/content/page-%d.html\" title='Page %d'>Teaser %d</a></h2>\n"
+            + "  <!-- teaser image -->\n"
+            + "  <img src=\"/content/dam/image-%d.jpg\" alt=\"\" width=320 height=200>\n"
+            + "  <p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor "
+            + "incididunt ut labore et dolore magna aliqua. <em>Ut enim</em> ad minim veniam.</p>\n"
+            + "  <script>window.teasers = (window.teasers || 0) + 1;</script>\n"
+            + "</div>\n";
+
+    @Param({ "1", "5", "10" })
+    private int steps;
+
+    private String page;
+
+    private List<TransformationStep> transformationSteps;
+
+    private StringBuilder output;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder("<!DOCTYPE html>\n<html><head><title>Benchmark</title></head><body>\n");
+        String end = "</body></html>\n";
+        int size = PAGE_KB * 1024;
+        for (int index = 0;; ++index) {
+            String block = String.format(BLOCK, index, index, index, index, index);
+            if (sb.length() + block.length() + end.length() > size) {
+                break;
+            }
+            sb.append(block);
+        }
+        while (sb.length() + end.length() < size) {
+            sb.append(' ');
+        }
+        page = sb.append(end).toString();
+
+        transformationSteps = new ArrayList<>();
+        for (int index = 0; index < steps; ++index) {
+            transformationSteps.add(index % 2 == 0 ? new AttributeStep() : new PassThroughStep());
+        }
+        output = new StringBuilder(size * 2);
+    }
+
+    @Benchmark
+    public int push() {
+        output.setLength(0);
+        TransformationContextImpl context = new TransformationContextImpl(null, null, transformationSteps);
+        context.setDownstream(element -> output.append(HtmlElements.TO_HTML.apply(element)));
+        Html.stream(page).forEachOrdered(context::process);
+        return output.length();
+    }
+
+    @Benchmark
+    public int stream() {
+        output.setLength(0);
+        TransformationContextImpl context = new TransformationContextImpl(null, null, transformationSteps);
+        Stream<HtmlElement> stream = Html.stream(page);
+        for (TransformationStep step : transformationSteps) {
+            stream = stream.flatMap(new TransformationStepWrapper(step, context));
+        }
+        stream.map(HtmlElements.TO_HTML).forEachOrdered(output::append);
+        return output.length();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TransformationPipelineBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+
+    private static class AttributeStep implements TransformationStep {
+
+        @Override
+        public void step(HtmlElement element, TransformationContext context) {
+            if (element.getType() == HtmlElementType.START_TAG && element.getValue().equals("a")) {
+                element.setAttribute("rel", "noopener");
+            }
+            context.doNextStep(element);
+        }
+    }
+
+    private static class PassThroughStep implements TransformationStep {
+
+        @Override
+        public void step(HtmlElement element, TransformationContext context) {
+            context.doNextStep(element);
+        }
+    }
+
+}